@@ -0,0 +1,47 @@
+package analyzer;
+
+import java.util.Properties;
+import java.util.Set;
+
+import model.LogEntry;
+
+/**
+ * Analyzer that can look at one entry at a time, so that it can take part in a fused pass
+ * (see {@link FusedAnalysisPass}) in which every entry of a batch is handed to all analyzers
+ * while it is in cache, instead of each analyzer walking the batch on its own.
+ */
+public interface EntryAnalyzer extends LogAnalyzer {
+    
+    /**
+     * Reads the settings of the analyzer. Called once before the first entry of a fused pass.
+     * 
+     * @param properties Configuration properties.
+     */
+    void configure(Properties properties);
+    
+    /**
+     * Gets the fields of an entry that the analyzer reads.
+     * 
+     * @return The fields.
+     */
+    Set<EntryField> getRequiredFields();
+    
+    /**
+     * Gets the levels of the entries the analyzer is interested in. Entries with other levels
+     * are not passed to it. Only valid after {@link #configure(Properties)}.
+     * 
+     * @return The levels, compared case-sensitively, or null for all entries.
+     */
+    default Set<String> getRequiredLevels() {
+        return null;
+    }
+    
+    /**
+     * Analyzes a single entry. Entries are passed in the same order as with
+     * {@link #analyze(java.util.List, Properties)}, which remains the end of each file or chunk
+     * through {@link #finish(Properties)}.
+     * 
+     * @param entry The log entry.
+     */
+    void analyzeEntry(LogEntry entry);
+}
@@ -0,0 +1,12 @@
+package analyzer;
+
+/**
+ * Fields of a log entry that an analyzer can declare it reads (see {@link EntryAnalyzer}).
+ */
+public enum EntryField {
+    TIMESTAMP,
+    LEVEL,
+    SOURCE,
+    MESSAGE,
+    FILE_NAME
+}
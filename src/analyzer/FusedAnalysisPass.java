@@ -0,0 +1,127 @@
+package analyzer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import model.LogEntry;
+
+/**
+ * Runs a set of analyzers over batches of entries in a single pass (log.analysis.fused=true).
+ * 
+ * Analyzers implementing {@link EntryAnalyzer} are combined into one loop over the batch: each
+ * entry is looked up once by its level and handed to exactly the analyzers that declared an
+ * interest in that level, so an entry is touched once while it is hot in cache and an analyzer
+ * restricted to a few levels never sees the others. The dispatch table per level is built on
+ * first sight of the level. Other analyzers are still called with the whole batch.
+ * 
+ * A pass belongs to one set of analyzers and one thread.
+ */
+public class FusedAnalysisPass {
+    
+    private static final EntryAnalyzer[] NONE = new EntryAnalyzer[0];
+    
+    private final Properties config;
+    private final List<EntryAnalyzer> entryAnalyzers;
+    private final List<LogAnalyzer> batchAnalyzers;
+    private final Map<String, EntryAnalyzer[]> targetsByLevel;
+    private final Set<EntryField> requiredFields;
+    
+    /**
+     * Constructor for creating a fused pass over a set of analyzers.
+     * 
+     * @param analyzers The analyzers.
+     * @param config Configuration properties.
+     */
+    public FusedAnalysisPass(Collection<LogAnalyzer> analyzers, Properties config) {
+        this.config = config;
+        this.entryAnalyzers = new ArrayList<>();
+        this.batchAnalyzers = new ArrayList<>();
+        this.targetsByLevel = new HashMap<>();
+        this.requiredFields = EnumSet.noneOf(EntryField.class);
+        
+        for (LogAnalyzer analyzer : analyzers) {
+            if (analyzer instanceof EntryAnalyzer) {
+                EntryAnalyzer entryAnalyzer = (EntryAnalyzer) analyzer;
+                entryAnalyzer.configure(config);
+                entryAnalyzers.add(entryAnalyzer);
+                requiredFields.addAll(entryAnalyzer.getRequiredFields());
+            } else {
+                batchAnalyzers.add(analyzer);
+            }
+        }
+    }
+    
+    /**
+     * Tells whether analyzers are to be run in a fused pass.
+     * 
+     * @param config Configuration properties.
+     * @return True if log.analysis.fused is set.
+     */
+    public static boolean isEnabled(Properties config) {
+        return Boolean.parseBoolean(config.getProperty("log.analysis.fused", "false").trim());
+    }
+    
+    /**
+     * Analyzes a batch of entries.
+     * 
+     * @param logEntries The log entries to analyze.
+     */
+    public void analyze(List<LogEntry> logEntries) {
+        if (!entryAnalyzers.isEmpty()) {
+            for (LogEntry entry : logEntries) {
+                for (EntryAnalyzer analyzer : targetsFor(entry.getLevel())) {
+                    analyzer.analyzeEntry(entry);
+                }
+            }
+        }
+        
+        for (LogAnalyzer analyzer : batchAnalyzers) {
+            analyzer.analyze(logEntries, config);
+        }
+    }
+    
+    /**
+     * Gets the fields read by the analyzers of the fused loop.
+     * 
+     * @return The fields.
+     */
+    public Set<EntryField> getRequiredFields() {
+        return requiredFields;
+    }
+    
+    /**
+     * Describes the pass, for diagnostics.
+     * 
+     * @return The number of fused analyzers, the fields they read and the analyzers called per batch.
+     */
+    public String describe() {
+        List<String> batchNames = new ArrayList<>();
+        for (LogAnalyzer analyzer : batchAnalyzers) {
+            batchNames.add(analyzer.getName());
+        }
+        return entryAnalyzers.size() + " fused analyzers reading " + requiredFields
+               + (batchNames.isEmpty() ? "" : ", per batch: " + batchNames);
+    }
+    
+    private EntryAnalyzer[] targetsFor(String level) {
+        EntryAnalyzer[] targets = targetsByLevel.get(level);
+        if (targets == null) {
+            List<EntryAnalyzer> interested = new ArrayList<>();
+            for (EntryAnalyzer analyzer : entryAnalyzers) {
+                Set<String> levels = analyzer.getRequiredLevels();
+                if (levels == null || levels.contains(level)) {
+                    interested.add(analyzer);
+                }
+            }
+            targets = interested.isEmpty() ? NONE : interested.toArray(NONE);
+            targetsByLevel.put(level, targets);
+        }
+        return targets;
+    }
+}
@@ -20,13 +20,24 @@ public interface LogAnalyzer {
     String getName();
     
     /**
-     * Processes a list of log entries and performs the analysis.
+     * Processes a batch of log entries and performs the analysis.
+     * Input is streamed, so this is called repeatedly with consecutive batches of the same file
+     * or chunk, followed by a single call to {@link #finish(Properties)}. Implementations must
+     * not keep a reference to the list, which is reused for the next batch.
      * 
      * @param logEntries The log entries to analyze.
      * @param properties Configuration properties.
      */
     void analyze(List<LogEntry> logEntries, Properties properties);
     
+    /**
+     * Called once after the last batch of a file or chunk has been analyzed.
+     * 
+     * @param properties Configuration properties.
+     */
+    default void finish(Properties properties) {
+    }
+    
     /**
      * Returns the analysis results as a JSON object.
      * 
@@ -41,4 +52,22 @@ public interface LogAnalyzer {
      * @param other Another instance of the same analyzer.
      */
     void mergeResults(LogAnalyzer other);
+    
+    /**
+     * Captures the mergeable state of the analyzer, so that a later run can restore it and merge
+     * only the results of new data into it (see logprocessor.CheckpointStore).
+     * 
+     * @return The state as JSON, or null if the analyzer does not support snapshots.
+     */
+    default JSONObject snapshotState() {
+        return null;
+    }
+    
+    /**
+     * Restores a state captured by {@link #snapshotState()} into a new instance.
+     * 
+     * @param state The stored state.
+     */
+    default void restoreState(JSONObject state) {
+    }
 }
\ No newline at end of file
@@ -2,12 +2,19 @@ package analyzer.factory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 import java.util.function.Supplier;
 
+import analyzer.EntryAnalyzer;
 import analyzer.LogAnalyzer;
 import analyzer.impl.AnomalyDetectionAnalyzer;
 import analyzer.impl.CommonSourceAnalyzer;
+import analyzer.impl.DistinctCountAnalyzer;
+import analyzer.impl.IndexingAnalyzer;
 import analyzer.impl.LevelCountAnalyzer;
+import analyzer.impl.LevelHistogramAnalyzer;
+import analyzer.impl.TemplateMiningAnalyzer;
+import analyzer.impl.TopMessagesAnalyzer;
 
 /**
  * Factory for creating LogAnalyzer instances.
@@ -22,6 +29,11 @@ public class LogAnalyzerFactory {
         registerAnalyzer("COUNT_LEVELS", LevelCountAnalyzer::new);
         registerAnalyzer("FIND_COMMON_SOURCE", CommonSourceAnalyzer::new);
         registerAnalyzer("DETECT_ANOMALIES", AnomalyDetectionAnalyzer::new);
+        registerAnalyzer("DISTINCT_COUNTS", DistinctCountAnalyzer::new);
+        registerAnalyzer("LEVEL_HISTOGRAM", LevelHistogramAnalyzer::new);
+        registerAnalyzer("MESSAGE_TEMPLATES", TemplateMiningAnalyzer::new);
+        registerAnalyzer("BUILD_INDEX", IndexingAnalyzer::new);
+        registerAnalyzer("TOP_MESSAGES", TopMessagesAnalyzer::new);
     }
     
     /**
@@ -50,4 +62,20 @@ public class LogAnalyzerFactory {
         
         return supplier.get();
     }
+    
+    /**
+     * Creates an analyzer of the specified type with its settings read from the configuration,
+     * so that it can be merged into before it has analyzed any entries.
+     * 
+     * @param type The type of analyzer to create.
+     * @param config Configuration properties.
+     * @return A new instance of the requested analyzer, or null if the type is unknown.
+     */
+    public static LogAnalyzer createAnalyzer(String type, Properties config) {
+        LogAnalyzer analyzer = createAnalyzer(type);
+        if (analyzer instanceof EntryAnalyzer) {
+            ((EntryAnalyzer) analyzer).configure(config);
+        }
+        return analyzer;
+    }
 }
\ No newline at end of file
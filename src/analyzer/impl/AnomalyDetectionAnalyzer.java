@@ -1,18 +1,22 @@
 package analyzer.impl;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.stream.Collectors;
 
+import analyzer.EntryAnalyzer;
+import analyzer.EntryField;
 import analyzer.LogAnalyzer;
 import model.FileAwareLogEntry;
 import model.LogEntry;
@@ -22,19 +26,48 @@ import org.json.JSONObject;
 /**
  * Analyzes log entries to detect anomalies based on the frequency of certain log levels
  * within a specified time window.
+ * 
+ * The timestamps of entries with a target level are collected per file into a compact sorted
+ * {@link Timeline}, and detection runs when the results are requested, in a single pass with
+ * two pointers. A file split into chunks that were analyzed by different instances is
+ * therefore checked as one timeline after merging, so windows spanning a chunk boundary are
+ * detected exactly as if the file had been read by a single worker.
+ * 
+ * With log.analysis.anomalies.scope=global (or both), bursts are also detected across all
+ * files, e.g. an error storm spread over several servers of which none reaches the threshold
+ * on its own. For this, target entries are only counted per time bucket of
+ * log.analysis.anomalies.bucket.seconds in a {@link BucketHistogram}; the histograms of all
+ * workers are added up when merging and the window check runs once on the merged counts.
+ * Global anomalies are reported under the name "global".
+ * 
+ * An instance is confined to the worker that owns it while it analyzes; only merging and
+ * reading results synchronize on the collected timelines.
  */
-public class AnomalyDetectionAnalyzer implements LogAnalyzer {
+public class AnomalyDetectionAnalyzer implements EntryAnalyzer {
     
-    private final Map<String, Set<String>> fileAnomalies;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    
+    private final Map<String, Timeline> fileTimelines;
+    private final BucketHistogram globalCounts;
     private List<String> targetLevels;
     private int timeWindowSeconds;
     private int threshold;
+    private int reorderWindow;
+    private boolean perFile;
+    private boolean global;
+    private int bucketSeconds;
+    private boolean configured;
+    private int targetCount;
     
     /**
-     * Constructor initializing the file anomalies map.
+     * Constructor initializing the file timelines map.
      */
     public AnomalyDetectionAnalyzer() {
-        fileAnomalies = Collections.synchronizedMap(new HashMap<>());
+        fileTimelines = new HashMap<>();
+        globalCounts = new BucketHistogram();
+        reorderWindow = 1000;
+        perFile = true;
+        bucketSeconds = 1;
     }
     
     @Override
@@ -44,14 +77,76 @@ public class AnomalyDetectionAnalyzer implements LogAnalyzer {
     
     @Override
     public void analyze(List<LogEntry> logEntries, Properties properties) {
-        if (logEntries.isEmpty()) {
+        if (!configured) {
+            configure(properties);
+        }
+        
+        // Collect the timestamps of target entries by file
+        for (LogEntry entry : logEntries) {
+            if (targetLevels.contains(entry.getLevel())) {
+                collect(entry);
+            }
+        }
+    }
+    
+    @Override
+    public Set<EntryField> getRequiredFields() {
+        return EnumSet.of(EntryField.TIMESTAMP, EntryField.LEVEL, EntryField.FILE_NAME);
+    }
+    
+    /**
+     * Only entries with one of the target levels are of interest.
+     * 
+     * @return The target levels.
+     */
+    @Override
+    public Set<String> getRequiredLevels() {
+        return new HashSet<>(targetLevels);
+    }
+    
+    /**
+     * Collects the timestamp of a single entry if it has a target level.
+     * {@link #configure(Properties)} must have been called before.
+     * 
+     * @param entry The log entry.
+     */
+    @Override
+    public void analyzeEntry(LogEntry entry) {
+        if (targetLevels.contains(entry.getLevel())) {
+            collect(entry);
+        }
+    }
+    
+    private void collect(LogEntry entry) {
+        long millis = toMillis(entry.getTimestamp());
+        if (perFile) {
+            fileTimelines.computeIfAbsent(getFileName(entry), k -> new Timeline(reorderWindow)).add(millis);
+        }
+        if (global) {
+            globalCounts.add(Math.floorDiv(millis, bucketSeconds * 1000L), 1);
+        }
+        targetCount++;
+    }
+    
+    @Override
+    public void finish(Properties properties) {
+        if (!configured) {
             System.out.println("AnomalyDetectionAnalyzer: No entries to analyze");
             return;
         }
         
-        System.out.println("AnomalyDetectionAnalyzer: Starting analysis of " + logEntries.size() + " entries");
-        
-        // Parse configuration
+        System.out.println("AnomalyDetectionAnalyzer: Found " + targetCount + 
+                          " entries matching target levels: " + targetLevels);
+        System.out.println("AnomalyDetectionAnalyzer: Analysis complete");
+    }
+    
+    /**
+     * Reads the anomaly detection settings.
+     * 
+     * @param properties Configuration properties.
+     */
+    @Override
+    public void configure(Properties properties) {
         String levelsStr = properties.getProperty("log.analysis.anomalies.levels", "ERROR");
         targetLevels = Arrays.asList(levelsStr.split(","))
                               .stream()
@@ -60,111 +155,93 @@ public class AnomalyDetectionAnalyzer implements LogAnalyzer {
         
         timeWindowSeconds = Integer.parseInt(properties.getProperty("log.analysis.anomalies.window", "30"));
         threshold = Integer.parseInt(properties.getProperty("log.analysis.anomalies.threshold", "2"));
+        reorderWindow = Integer.parseInt(properties.getProperty("log.analysis.anomalies.reorder.window", "1000").trim());
+        setScope(properties.getProperty("log.analysis.anomalies.scope", "file").trim());
+        bucketSeconds = Math.max(1, Integer.parseInt(properties.getProperty("log.analysis.anomalies.bucket.seconds", "1").trim()));
+        configured = true;
         
         System.out.println("AnomalyDetectionAnalyzer: Config - levels=" + targetLevels + 
                            ", window=" + timeWindowSeconds + "s, threshold=" + threshold);
-        
-        // Group entries by file
-        Map<String, List<LogEntry>> entriesByFile = groupEntriesByFile(logEntries);
-        
-        // Process each file's entries
-        for (Map.Entry<String, List<LogEntry>> fileEntries : entriesByFile.entrySet()) {
-            String fileName = fileEntries.getKey();
-            List<LogEntry> entries = fileEntries.getValue();
-            
-            // Filter and sort entries for this file
-            List<LogEntry> targetEntries = entries.stream()
-                                                .filter(e -> targetLevels.contains(e.getLevel()))
-                                                .sorted((e1, e2) -> e1.getTimestamp().compareTo(e2.getTimestamp()))
-                                                .collect(Collectors.toList());
-            
-            System.out.println("AnomalyDetectionAnalyzer: Found " + targetEntries.size() + 
-                              " entries matching target levels: " + targetLevels + " in file: " + fileName);
-            
-            // Detect anomalies for this file
-            if (!targetEntries.isEmpty()) {
-                detectSimpleAnomalies(fileName, targetEntries);
-            }
-        }
-        
-        System.out.println("AnomalyDetectionAnalyzer: Analysis complete");
     }
     
     /**
-     * Groups log entries by the file they came from.
+     * Selects where anomalies are detected.
      * 
-     * @param entries List of log entries
-     * @return Map of file names to lists of entries from that file
+     * @param scope "file", "global" or "both".
      */
-    private Map<String, List<LogEntry>> groupEntriesByFile(List<LogEntry> entries) {
-        Map<String, List<LogEntry>> entriesByFile = new HashMap<>();
-        
-        for (LogEntry entry : entries) {
-            String fileName;
-            
-            if (entry instanceof FileAwareLogEntry) {
-                fileName = ((FileAwareLogEntry) entry).getFileName();
-            } else {
-                // Fallback if entries aren't FileAwareLogEntry instances
-                fileName = "unknown.log";
-            }
-            
-            // Add entry to the appropriate file group
-            if (!entriesByFile.containsKey(fileName)) {
-                entriesByFile.put(fileName, new ArrayList<>());
-            }
-            entriesByFile.get(fileName).add(entry);
+    private void setScope(String scope) {
+        perFile = !scope.equalsIgnoreCase("global");
+        global = scope.equalsIgnoreCase("global") || scope.equalsIgnoreCase("both");
+    }
+    
+    private String getScope() {
+        return perFile && global ? "both" : global ? "global" : "file";
+    }
+    
+    /**
+     * Gets the name of the file a log entry came from.
+     * 
+     * @param entry The log entry.
+     * @return The file name, or "unknown.log" if the entry is not file-aware.
+     */
+    private static String getFileName(LogEntry entry) {
+        if (entry instanceof FileAwareLogEntry) {
+            return ((FileAwareLogEntry) entry).getFileName();
         }
         
-        return entriesByFile;
+        // Fallback if entries aren't FileAwareLogEntry instances
+        return "unknown.log";
     }
     
     /**
-     * Detects anomalies using a simple counting approach within time windows.
+     * Detects anomalies in the timeline of a file, as the start of every window in which at
+     * least the threshold number of target entries occur, without overlapping windows.
      * 
      * @param fileName Name of the log file being analyzed
-     * @param entries Log entries to analyze
+     * @param timeline The timestamps of the target entries of the file
+     * @return The timestamps at which anomalies start, in epoch milliseconds and time order
      */
-    private void detectSimpleAnomalies(String fileName, List<LogEntry> entries) {
-        if (entries.isEmpty()) {
+    private long[] detectAnomalies(String fileName, Timeline timeline) {
+        if (timeline.size() == 0) {
             System.out.println("No entries to analyze for anomalies in file: " + fileName);
-            return;
+            return new long[0];
         }
         
-        // Create a set for anomaly timestamps for this file
-        Set<String> anomalyTimes = Collections.synchronizedSet(
-            fileAnomalies.computeIfAbsent(fileName, k -> new TreeSet<>())
-        );
+        Timeline.LongList counts = new Timeline.LongList();
+        long[] anomalyTimes = timeline.detect(timeWindowSeconds * 1000L, threshold, counts);
         
-        // Simple approach: just count consecutive entries within the time window
-        for (int i = 0; i < entries.size(); i++) {
-            LogEntry current = entries.get(i);
-            LocalDateTime windowEnd = current.getTimestamp().plusSeconds(timeWindowSeconds);
-            
-            int count = 1; // Count the current entry
-            
-            // Count entries within the time window from the current entry
-            for (int j = i + 1; j < entries.size() && 
-                 !entries.get(j).getTimestamp().isAfter(windowEnd); j++) {
-                count++;
-            }
-            
-            // If count exceeds threshold, record an anomaly
-            if (count >= threshold) {
-                System.out.println("Found anomaly in file " + fileName + " at " + current.getFormattedTimestamp() + 
-                                   " with " + count + " entries in " + timeWindowSeconds + "s window");
-                anomalyTimes.add(current.getFormattedTimestamp());
-                
-                // Move past this window to avoid overlapping anomalies
-                while (i < entries.size() && 
-                       !entries.get(i).getTimestamp().isAfter(windowEnd)) {
-                    i++;
-                }
-                i--; // Adjust for the loop increment
-            }
+        for (int i = 0; i < anomalyTimes.length; i++) {
+            System.out.println("Found anomaly in file " + fileName + " at " + format(anomalyTimes[i]) + 
+                               " with " + counts.get(i) + " entries in " + timeWindowSeconds + "s window");
+        }
+        
+        System.out.println("Total anomalies detected for " + fileName + ": " + anomalyTimes.length);
+        return anomalyTimes;
+    }
+    
+    /**
+     * Detects anomalies across all files on the merged bucket counts.
+     * 
+     * @return The anomalies and their count, or null if there are none
+     */
+    private JSONObject detectGlobalAnomalies() {
+        long bucketMillis = bucketSeconds * 1000L;
+        Timeline.LongList counts = new Timeline.LongList();
+        long[] anomalyBuckets = globalCounts.detect(timeWindowSeconds / bucketSeconds, threshold, counts);
+        
+        JSONArray anomaliesJsonArray = new JSONArray();
+        for (int i = 0; i < anomalyBuckets.length; i++) {
+            String formatted = format(anomalyBuckets[i] * bucketMillis);
+            System.out.println("Found global anomaly at " + formatted + " with " + counts.get(i) + 
+                               " entries in " + timeWindowSeconds + "s window");
+            anomaliesJsonArray.put(formatted);
         }
         
-        System.out.println("Total anomalies detected for " + fileName + ": " + anomalyTimes.size());
+        System.out.println("Total global anomalies detected: " + anomalyBuckets.length);
+        if (anomalyBuckets.length == 0) {
+            return null;
+        }
+        return new JSONObject().put("anomalies", anomaliesJsonArray).put("anomalies_count", anomalyBuckets.length);
     }
     
     @Override
@@ -172,32 +249,47 @@ public class AnomalyDetectionAnalyzer implements LogAnalyzer {
         System.out.println("AnomalyDetectionAnalyzer: Getting results");
         JSONArray anomaliesArray = new JSONArray();
         
-        synchronized (fileAnomalies) {
-            for (Map.Entry<String, Set<String>> entry : fileAnomalies.entrySet()) {
+        synchronized (fileTimelines) {
+            for (Map.Entry<String, Timeline> entry : fileTimelines.entrySet()) {
                 String fileName = entry.getKey();
-                Set<String> anomalyTimes = entry.getValue();
+                long[] anomalyTimes = detectAnomalies(fileName, entry.getValue());
                 
-                if (!anomalyTimes.isEmpty()) {
+                if (anomalyTimes.length > 0) {
                     JSONObject fileObj = new JSONObject();
                     JSONObject anomalyObj = new JSONObject();
                     
                     JSONArray anomaliesJsonArray = new JSONArray();
-                    for (String time : anomalyTimes) {
-                        anomaliesJsonArray.put(time);
+                    for (long time : anomalyTimes) {
+                        anomaliesJsonArray.put(format(time));
                     }
                     
                     anomalyObj.put("anomalies", anomaliesJsonArray);
-                    anomalyObj.put("anomalies_count", anomalyTimes.size());
+                    anomalyObj.put("anomalies_count", anomalyTimes.length);
                     
                     fileObj.put(fileName, anomalyObj);
                     anomaliesArray.put(fileObj);
                 }
             }
+            
+            if (global) {
+                JSONObject globalAnomalies = detectGlobalAnomalies();
+                if (globalAnomalies != null) {
+                    anomaliesArray.put(new JSONObject().put("global", globalAnomalies));
+                }
+            }
         }
         
         return new JSONObject().put(getName(), anomaliesArray.length() > 0 ? anomaliesArray : new JSONArray());
     }
     
+    private static long toMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+    
+    private static String format(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC).format(TIMESTAMP_FORMAT);
+    }
+    
     @Override
     public void mergeResults(LogAnalyzer other) {
         if (!(other instanceof AnomalyDetectionAnalyzer)) {
@@ -206,22 +298,97 @@ public class AnomalyDetectionAnalyzer implements LogAnalyzer {
         
         AnomalyDetectionAnalyzer otherAnalyzer = (AnomalyDetectionAnalyzer) other;
         
-        synchronized (fileAnomalies) {
-            synchronized (otherAnalyzer.fileAnomalies) {
-                for (Map.Entry<String, Set<String>> entry : otherAnalyzer.fileAnomalies.entrySet()) {
-                    String fileName = entry.getKey();
-                    Set<String> anomalyTimes = entry.getValue();
-                    
-                    Set<String> existingAnomalies = fileAnomalies.computeIfAbsent(fileName, 
-                                                      k -> Collections.synchronizedSet(new HashSet<>()));
-                    
-                    synchronized (existingAnomalies) {
-                        synchronized (anomalyTimes) {
-                            existingAnomalies.addAll(anomalyTimes);
-                        }
-                    }
+        synchronized (fileTimelines) {
+            // The other instance is finished, only this one can be merged into concurrently;
+            // the timelines of chunks of a file are merged as sorted runs, the bucket counts added
+            for (Map.Entry<String, Timeline> entry : otherAnalyzer.fileTimelines.entrySet()) {
+                fileTimelines.computeIfAbsent(entry.getKey(), k -> new Timeline(reorderWindow))
+                             .addAll(entry.getValue());
+            }
+            globalCounts.addAll(otherAnalyzer.globalCounts);
+        }
+    }
+    
+    /**
+     * Captures the collected timestamps, as epoch milliseconds, the global bucket counts and the
+     * settings they were collected with.
+     * 
+     * @return The state as JSON.
+     */
+    @Override
+    public JSONObject snapshotState() {
+        JSONObject state = new JSONObject();
+        
+        synchronized (fileTimelines) {
+            if (configured) {
+                state.put("levels", new JSONArray(targetLevels));
+                state.put("window", timeWindowSeconds);
+                state.put("threshold", threshold);
+                state.put("scope", getScope());
+                state.put("bucket", bucketSeconds);
+            }
+            
+            JSONObject files = new JSONObject();
+            for (Map.Entry<String, Timeline> entry : fileTimelines.entrySet()) {
+                Timeline timeline = entry.getValue();
+                JSONArray timestamps = new JSONArray();
+                for (int i = 0; i < timeline.size(); i++) {
+                    timestamps.put(timeline.get(i));
+                }
+                files.put(entry.getKey(), timestamps);
+            }
+            state.put("files", files);
+            
+            if (global) {
+                Timeline.LongList buckets = new Timeline.LongList();
+                Timeline.LongList counts = new Timeline.LongList();
+                globalCounts.collect(buckets, counts);
+                state.put("global", new JSONObject().put("buckets", new JSONArray(buckets.toArray()))
+                                                    .put("counts", new JSONArray(counts.toArray())));
+            }
+        }
+        
+        return state;
+    }
+    
+    /**
+     * Restores timestamps and settings captured by {@link #snapshotState()}. Timestamps
+     * stored as ISO date-time strings by earlier versions are accepted as well.
+     * 
+     * @param state The stored state.
+     */
+    @Override
+    public void restoreState(JSONObject state) {
+        synchronized (fileTimelines) {
+            if (state.has("levels")) {
+                targetLevels = new ArrayList<>();
+                for (Object level : state.getJSONArray("levels")) {
+                    targetLevels.add(level.toString());
+                }
+                timeWindowSeconds = state.getInt("window");
+                threshold = state.getInt("threshold");
+                setScope(state.optString("scope", "file"));
+                bucketSeconds = state.optInt("bucket", 1);
+                configured = true;
+            }
+            
+            JSONObject files = state.getJSONObject("files");
+            for (String fileName : files.keySet()) {
+                Timeline timeline = fileTimelines.computeIfAbsent(fileName, k -> new Timeline(reorderWindow));
+                for (Object timestamp : files.getJSONArray(fileName)) {
+                    timeline.add(timestamp instanceof Number ? ((Number) timestamp).longValue()
+                                                             : toMillis(LocalDateTime.parse(timestamp.toString())));
+                }
+            }
+            
+            JSONObject globalState = state.optJSONObject("global");
+            if (globalState != null) {
+                JSONArray buckets = globalState.getJSONArray("buckets");
+                JSONArray counts = globalState.getJSONArray("counts");
+                for (int i = 0; i < buckets.length(); i++) {
+                    globalCounts.add(buckets.getLong(i), counts.getLong(i));
                 }
             }
         }
     }
-}
\ No newline at end of file
+}
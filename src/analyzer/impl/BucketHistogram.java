@@ -0,0 +1,186 @@
+package analyzer.impl;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts of events per time bucket, e.g. per second, across any time span.
+ *
+ * The counts are kept in pages of consecutive buckets, so a burst of events costs one array
+ * slot per bucket however many events it has, and a gap of days between events costs nothing.
+ * Histograms built by different workers are merged by adding their pages, which is cheap and
+ * independent of the number of events.
+ */
+class BucketHistogram {
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private final TreeMap<Long, long[]> pages;
+    private long[] lastPage;
+    private long lastPageIndex;
+
+    /**
+     * Constructor for creating an empty histogram.
+     */
+    BucketHistogram() {
+        pages = new TreeMap<>();
+        lastPageIndex = Long.MIN_VALUE;
+    }
+
+    /**
+     * Adds events to a bucket.
+     *
+     * @param bucket The bucket number, e.g. epoch seconds for buckets of one second.
+     * @param count The number of events.
+     */
+    void add(long bucket, long count) {
+        long pageIndex = bucket >> PAGE_BITS;
+
+        // Consecutive events usually fall into the same page
+        if (pageIndex != lastPageIndex) {
+            lastPage = pages.computeIfAbsent(pageIndex, k -> new long[PAGE_SIZE]);
+            lastPageIndex = pageIndex;
+        }
+        lastPage[(int) (bucket & (PAGE_SIZE - 1))] += count;
+    }
+
+    /**
+     * Adds all counts of another histogram.
+     *
+     * @param other The other histogram.
+     */
+    void addAll(BucketHistogram other) {
+        for (Map.Entry<Long, long[]> entry : other.pages.entrySet()) {
+            long[] page = pages.get(entry.getKey());
+            if (page == null) {
+                pages.put(entry.getKey(), entry.getValue().clone());
+            } else {
+                long[] counts = entry.getValue();
+                for (int i = 0; i < PAGE_SIZE; i++) {
+                    page[i] += counts[i];
+                }
+            }
+        }
+        lastPageIndex = Long.MIN_VALUE;
+    }
+
+    /**
+     * Gets the buckets that have events, in time order.
+     *
+     * @param buckets Receives the bucket numbers.
+     * @param counts Receives the number of events of each bucket.
+     */
+    void collect(Timeline.LongList buckets, Timeline.LongList counts) {
+        for (Map.Entry<Long, long[]> entry : pages.entrySet()) {
+            long first = entry.getKey() << PAGE_BITS;
+            long[] page = entry.getValue();
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                if (page[i] != 0) {
+                    buckets.add(first + i);
+                    counts.add(page[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the first bucket with events.
+     *
+     * @return The bucket number, or Long.MAX_VALUE if the histogram is empty.
+     */
+    long firstBucket() {
+        for (Map.Entry<Long, long[]> entry : pages.entrySet()) {
+            long[] page = entry.getValue();
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                if (page[i] != 0) {
+                    return (entry.getKey() << PAGE_BITS) + i;
+                }
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Gets the last bucket with events.
+     *
+     * @return The bucket number, or Long.MIN_VALUE if the histogram is empty.
+     */
+    long lastBucket() {
+        for (Map.Entry<Long, long[]> entry : pages.descendingMap().entrySet()) {
+            long[] page = entry.getValue();
+            for (int i = PAGE_SIZE - 1; i >= 0; i--) {
+                if (page[i] != 0) {
+                    return (entry.getKey() << PAGE_BITS) + i;
+                }
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Adds the counts to a dense array of slots, each covering bucketsPerSlot consecutive
+     * buckets starting at the first bucket. Buckets outside the slots are skipped.
+     *
+     * @param first The first bucket of slot 0.
+     * @param bucketsPerSlot The number of buckets per slot.
+     * @param slots Receives the counts.
+     */
+    void addTo(long first, long bucketsPerSlot, long[] slots) {
+        for (Map.Entry<Long, long[]> entry : pages.entrySet()) {
+            long pageFirst = entry.getKey() << PAGE_BITS;
+            long[] page = entry.getValue();
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                if (page[i] != 0) {
+                    long slot = Math.floorDiv(pageFirst + i - first, bucketsPerSlot);
+                    if (slot >= 0 && slot < slots.length) {
+                        slots[(int) slot] += page[i];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds anomalies like {@link Timeline#detect(long, int, Timeline.LongList)}, with the
+     * buckets in place of the timestamps: a window starts at a bucket with events and includes
+     * the following windowBuckets buckets. Runs in one pass with two pointers over the buckets
+     * that have events.
+     *
+     * @param windowBuckets The length of the window in buckets.
+     * @param threshold The minimum number of events in a window.
+     * @param counts Receives the number of events in the window of each anomaly.
+     * @return The buckets at which anomalies start, in time order.
+     */
+    long[] detect(long windowBuckets, long threshold, Timeline.LongList counts) {
+        Timeline.LongList buckets = new Timeline.LongList();
+        Timeline.LongList bucketCounts = new Timeline.LongList();
+        collect(buckets, bucketCounts);
+
+        Timeline.LongList starts = new Timeline.LongList();
+        int end = 0;
+        long windowCount = 0;
+        int i = 0;
+        while (i < buckets.size()) {
+            long windowEnd = buckets.get(i) + windowBuckets;
+
+            // The window end only moves forward; windowCount holds the events of buckets i..end-1
+            while (end < buckets.size() && buckets.get(end) <= windowEnd) {
+                windowCount += bucketCounts.get(end);
+                end++;
+            }
+
+            if (windowCount >= threshold) {
+                starts.add(buckets.get(i));
+                counts.add(windowCount);
+                i = end;
+                windowCount = 0;
+            } else {
+                windowCount -= bucketCounts.get(i);
+                i++;
+            }
+        }
+
+        return starts.toArray();
+    }
+}
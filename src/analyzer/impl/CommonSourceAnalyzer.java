@@ -1,35 +1,59 @@
 package analyzer.impl;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Properties;
-import java.util.TreeMap;
+import java.util.Set;
 
+import analyzer.EntryAnalyzer;
+import analyzer.EntryField;
 import analyzer.LogAnalyzer;
+import analyzer.sketch.BottomKSample;
+import analyzer.sketch.CountMinSketch;
+import analyzer.sketch.Hashing;
+import analyzer.sketch.SpaceSaving;
 import model.LogEntry;
 import org.json.JSONObject;
 
 /**
  * Analyzes log entries to find the most common and least common sources.
+ * 
+ * By default every source is counted exactly. With log.analysis.sources.mode=approximate the
+ * memory stays fixed however many distinct sources there are: a {@link SpaceSaving} summary
+ * tracks the most common sources, a {@link CountMinSketch} estimates the count of any source
+ * within log.analysis.sources.epsilon times the number of entries, and a {@link BottomKSample}
+ * of the distinct sources supplies the candidates for the least common ones. All three are
+ * merged across workers, and the top log.analysis.sources.top sources of each end are reported
+ * with their estimated counts and the error bound.
+ * 
+ * An instance is confined to the worker that owns it while it analyzes; only merging and
+ * reading results synchronize on the counts.
  */
-public class CommonSourceAnalyzer implements LogAnalyzer {
+public class CommonSourceAnalyzer implements EntryAnalyzer {
     
-    private final Map<String, Integer> sourceCounts;
+    private final CounterMap sourceCounts;
     private String mostCommonSource;
-    private int mostCommonSourceCount;
+    private long mostCommonSourceCount;
     private String leastCommonSource;
-    private int leastCommonSourceCount;
+    private long leastCommonSourceCount;
+    
+    private boolean configured;
+    private boolean approximate;
+    private int topCount;
+    private SpaceSaving heavyHitters;
+    private CountMinSketch sketch;
+    private BottomKSample rareCandidates;
     
     /**
      * Constructor initializing the source counts map.
      */
     public CommonSourceAnalyzer() {
-        sourceCounts = Collections.synchronizedMap(new HashMap<>());
+        sourceCounts = new CounterMap();
         mostCommonSourceCount = -1;
-        leastCommonSourceCount = Integer.MAX_VALUE;
+        leastCommonSourceCount = Long.MAX_VALUE;
+        topCount = 10;
     }
     
     @Override
@@ -39,16 +63,67 @@ public class CommonSourceAnalyzer implements LogAnalyzer {
     
     @Override
     public void analyze(List<LogEntry> logEntries, Properties properties) {
-        System.out.println("CommonSourceAnalyzer: Analyzing " + logEntries.size() + " entries");
+        if (!configured) {
+            configure(properties);
+        }
         
         for (LogEntry entry : logEntries) {
+            analyzeEntry(entry);
+        }
+    }
+    
+    /**
+     * Reads the counting mode and, for approximate counting, sizes the sketches.
+     * 
+     * @param properties Configuration properties.
+     */
+    @Override
+    public void configure(Properties properties) {
+        approximate = "approximate".equalsIgnoreCase(properties.getProperty("log.analysis.sources.mode", "exact").trim());
+        topCount = Math.max(1, Integer.parseInt(properties.getProperty("log.analysis.sources.top", "10").trim()));
+        
+        // Sketches restored from a checkpoint are kept
+        if (approximate && sketch == null) {
+            double epsilon = Double.parseDouble(properties.getProperty("log.analysis.sources.epsilon", "0.001").trim());
+            double delta = Double.parseDouble(properties.getProperty("log.analysis.sources.delta", "0.01").trim());
+            heavyHitters = new SpaceSaving(Integer.parseInt(properties.getProperty("log.analysis.sources.capacity", "1000").trim()));
+            sketch = CountMinSketch.forError(epsilon, delta);
+            rareCandidates = new BottomKSample(Integer.parseInt(properties.getProperty("log.analysis.sources.sample", "1000").trim()));
+        }
+        configured = true;
+    }
+    
+    @Override
+    public Set<EntryField> getRequiredFields() {
+        return EnumSet.of(EntryField.SOURCE);
+    }
+    
+    @Override
+    public void analyzeEntry(LogEntry entry) {
+        if (approximate) {
             String source = entry.getSource();
-            synchronized (sourceCounts) {
-                sourceCounts.put(source, sourceCounts.getOrDefault(source, 0) + 1);
+            long hash = Hashing.hash64(source);
+            heavyHitters.add(hash, source, 1);
+            sketch.add(hash, 1);
+            rareCandidates.add(hash, source);
+        } else {
+            sourceCounts.increment(entry.getSource());
+        }
+    }
+    
+    @Override
+    public void finish(Properties properties) {
+        if (approximate) {
+            List<SpaceSaving.Estimate> top = heavyHitters.top(1);
+            System.out.println("CommonSourceAnalyzer: About " + rareCandidates.estimateDistinct() + " sources in "
+                               + sketch.getTotal() + " entries, counts within " + sketch.getErrorBound());
+            if (!top.isEmpty()) {
+                System.out.println("CommonSourceAnalyzer: Most common: " + top.get(0).getKey() + " (~" + top.get(0).getCount() + ")");
             }
+            return;
         }
         
-        // Find most and least common sources
+        // Find most and least common sources once all batches are counted
         updateCommonSources();
         
         System.out.println("CommonSourceAnalyzer: Sources after analysis: " + sourceCounts);
@@ -61,9 +136,12 @@ public class CommonSourceAnalyzer implements LogAnalyzer {
      */
     private void updateCommonSources() {
         synchronized (sourceCounts) {
-            for (Map.Entry<String, Integer> entry : sourceCounts.entrySet()) {
-                String source = entry.getKey();
-                int count = entry.getValue();
+            // Start over, counts only grow so a previous minimum may no longer be the minimum
+            mostCommonSourceCount = -1;
+            leastCommonSourceCount = Long.MAX_VALUE;
+            
+            for (String source : sourceCounts.keys()) {
+                long count = sourceCounts.get(source);
                 
                 if (count > mostCommonSourceCount) {
                     mostCommonSource = source;
@@ -80,12 +158,19 @@ public class CommonSourceAnalyzer implements LogAnalyzer {
     
     @Override
     public JSONObject getResults() {
+        if (approximate) {
+            return getApproximateResults();
+        }
+        
         JSONObject result = new JSONObject();
         
         synchronized (sourceCounts) {
+            // Merges and restores only add counts, the extremes are found once here
+            updateCommonSources();
+            
             // Create arrays for sources and counts in the same order
-            List<String> sourcesList = new ArrayList<>(sourceCounts.keySet());
-            List<Integer> countsList = new ArrayList<>();
+            List<String> sourcesList = new ArrayList<>(sourceCounts.keys());
+            List<Long> countsList = new ArrayList<>();
             
             for (String source : sourcesList) {
                 countsList.add(sourceCounts.get(source));
@@ -111,6 +196,62 @@ public class CommonSourceAnalyzer implements LogAnalyzer {
         return result;
     }
     
+    /**
+     * Builds the results from the sketches: the tracked sources with the largest counts, and
+     * the sampled sources with the smallest estimated counts. A count is the smaller of the
+     * Space-Saving and Count-Min estimates, both of which never undercount.
+     * 
+     * @return The results as JSON.
+     */
+    private JSONObject getApproximateResults() {
+        JSONObject result = new JSONObject();
+        
+        synchronized (sourceCounts) {
+            List<String> sourcesList = new ArrayList<>();
+            List<Long> countsList = new ArrayList<>();
+            for (SpaceSaving.Estimate estimate : heavyHitters.top(topCount)) {
+                sourcesList.add(estimate.getKey());
+                countsList.add(Math.min(estimate.getCount(), sketch.estimate(Hashing.hash64(estimate.getKey()))));
+            }
+            
+            List<String> candidates = rareCandidates.getKeys();
+            List<Long> hashes = rareCandidates.getHashes();
+            List<long[]> rare = new ArrayList<>();
+            for (int i = 0; i < candidates.size(); i++) {
+                rare.add(new long[] {sketch.estimate(hashes.get(i)), i});
+            }
+            rare.sort(Comparator.comparingLong((long[] candidate) -> candidate[0]));
+            
+            List<String> rareSources = new ArrayList<>();
+            List<Long> rareCounts = new ArrayList<>();
+            for (long[] candidate : rare.subList(0, Math.min(topCount, rare.size()))) {
+                rareSources.add(candidates.get((int) candidate[1]));
+                rareCounts.add(candidate[0]);
+            }
+            
+            result.put("sources", sourcesList.toString());
+            result.put("source_counts", countsList.toString());
+            result.put("rare_sources", rareSources.toString());
+            result.put("rare_source_counts", rareCounts.toString());
+            result.put("distinct_sources_estimate", rareCandidates.estimateDistinct());
+            result.put("count_error_bound", Math.max(sketch.getErrorBound(), heavyHitters.getTotal() / heavyHitters.getCapacity()));
+            
+            if (sourcesList.isEmpty()) {
+                result.put("most_common_source", "");
+                result.put("most_common_source_count", 0);
+                result.put("least_common_source", "");
+                result.put("least_common_source_count", 0);
+            } else {
+                result.put("most_common_source", sourcesList.get(0));
+                result.put("most_common_source_count", countsList.get(0));
+                result.put("least_common_source", rareSources.get(0));
+                result.put("least_common_source_count", rareCounts.get(0));
+            }
+        }
+        
+        return result;
+    }
+    
     @Override
     public void mergeResults(LogAnalyzer other) {
         if (!(other instanceof CommonSourceAnalyzer)) {
@@ -119,17 +260,80 @@ public class CommonSourceAnalyzer implements LogAnalyzer {
         
         CommonSourceAnalyzer otherAnalyzer = (CommonSourceAnalyzer) other;
         
+        // The other instance is finished, only this one can be merged into concurrently
+        synchronized (sourceCounts) {
+            if (otherAnalyzer.approximate) {
+                heavyHitters.merge(otherAnalyzer.heavyHitters);
+                sketch.merge(otherAnalyzer.sketch);
+                rareCandidates.merge(otherAnalyzer.rareCandidates);
+            }
+            addExactCounts(otherAnalyzer.sourceCounts);
+        }
+    }
+    
+    /**
+     * Adds exact counts, to the sketches in approximate mode.
+     */
+    private void addExactCounts(CounterMap counts) {
+        if (!approximate) {
+            sourceCounts.addAll(counts);
+            return;
+        }
+        for (String source : counts.keys()) {
+            long hash = Hashing.hash64(source);
+            heavyHitters.add(hash, source, counts.get(source));
+            sketch.add(hash, counts.get(source));
+            rareCandidates.add(hash, source);
+        }
+    }
+    
+    /**
+     * Takes over a counting mode, with empty sketches of the given sketches' dimensions.
+     */
+    private void adoptMode(boolean approximate, int topCount, SpaceSaving heavyHitters,
+                           CountMinSketch sketch, BottomKSample rareCandidates) {
+        this.approximate = approximate;
+        this.topCount = topCount;
+        if (approximate) {
+            this.heavyHitters = new SpaceSaving(heavyHitters.getCapacity());
+            this.sketch = sketch.emptyCopy();
+            this.rareCandidates = new BottomKSample(rareCandidates.getSize());
+        }
+        configured = true;
+    }
+    
+    @Override
+    public JSONObject snapshotState() {
         synchronized (sourceCounts) {
-            synchronized (otherAnalyzer.sourceCounts) {
-                for (Map.Entry<String, Integer> entry : otherAnalyzer.sourceCounts.entrySet()) {
-                    String source = entry.getKey();
-                    int count = entry.getValue();
-                    sourceCounts.put(source, sourceCounts.getOrDefault(source, 0) + count);
+            JSONObject state = new JSONObject().put("source_counts", sourceCounts.toJson());
+            if (approximate) {
+                state.put("top", topCount);
+                state.put("heavy_hitters", heavyHitters.toJson());
+                state.put("sketch", sketch.toJson());
+                state.put("rare_candidates", rareCandidates.toJson());
+            }
+            return state;
+        }
+    }
+    
+    @Override
+    public void restoreState(JSONObject state) {
+        synchronized (sourceCounts) {
+            if (state.has("sketch")) {
+                SpaceSaving restoredHitters = SpaceSaving.fromJson(state.getJSONObject("heavy_hitters"));
+                CountMinSketch restoredSketch = CountMinSketch.fromJson(state.getJSONObject("sketch"));
+                BottomKSample restoredCandidates = BottomKSample.fromJson(state.getJSONObject("rare_candidates"));
+                if (!approximate) {
+                    adoptMode(true, state.getInt("top"), restoredHitters, restoredSketch, restoredCandidates);
                 }
+                heavyHitters.merge(restoredHitters);
+                sketch.merge(restoredSketch);
+                rareCandidates.merge(restoredCandidates);
             }
             
-            // Update most common and least common sources after merging
-            updateCommonSources();
+            CounterMap restoredCounts = new CounterMap();
+            restoredCounts.addJson(state.getJSONObject("source_counts"));
+            addExactCounts(restoredCounts);
         }
     }
 }
\ No newline at end of file
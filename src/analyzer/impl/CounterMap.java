@@ -0,0 +1,139 @@
+package analyzer.impl;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONObject;
+
+/**
+ * Counts occurrences of keys with mutable counters, so that counting an entry is a single
+ * lookup without boxing a new Integer.
+ * 
+ * Not thread-safe: a counter map belongs to one analyzer instance, which is confined to one
+ * worker while it analyzes and synchronizes only when results are merged or read.
+ */
+class CounterMap {
+    
+    private final Map<String, long[]> counts;
+    
+    /**
+     * Constructor for creating an empty counter map.
+     */
+    CounterMap() {
+        counts = new HashMap<>();
+    }
+    
+    /**
+     * Adds one occurrence of a key.
+     * 
+     * @param key The key.
+     */
+    void increment(String key) {
+        long[] count = counts.get(key);
+        if (count == null) {
+            counts.put(key, new long[] {1});
+        } else {
+            count[0]++;
+        }
+    }
+    
+    /**
+     * Adds occurrences of a key.
+     * 
+     * @param key The key.
+     * @param amount The number of occurrences.
+     */
+    void add(String key, long amount) {
+        long[] count = counts.get(key);
+        if (count == null) {
+            counts.put(key, new long[] {amount});
+        } else {
+            count[0] += amount;
+        }
+    }
+    
+    /**
+     * Adds all counts of another map.
+     * 
+     * @param other The other map.
+     */
+    void addAll(CounterMap other) {
+        for (Map.Entry<String, long[]> entry : other.counts.entrySet()) {
+            add(entry.getKey(), entry.getValue()[0]);
+        }
+    }
+    
+    /**
+     * Gets the count of a key.
+     * 
+     * @param key The key.
+     * @return The count, 0 if the key was never counted.
+     */
+    long get(String key) {
+        long[] count = counts.get(key);
+        return count == null ? 0 : count[0];
+    }
+    
+    /**
+     * Gets the counted keys.
+     * 
+     * @return The keys.
+     */
+    Set<String> keys() {
+        return counts.keySet();
+    }
+    
+    /**
+     * Tells whether nothing was counted.
+     * 
+     * @return True if there are no keys.
+     */
+    boolean isEmpty() {
+        return counts.isEmpty();
+    }
+    
+    /**
+     * Converts the counts to JSON.
+     * 
+     * @return The counts by key.
+     */
+    JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            json.put(entry.getKey(), entry.getValue()[0]);
+        }
+        return json;
+    }
+    
+    /**
+     * Adds counts read from JSON written by {@link #toJson()}.
+     * 
+     * @param json The counts by key.
+     */
+    void addJson(JSONObject json) {
+        for (String key : json.keySet()) {
+            add(key, json.getLong(key));
+        }
+    }
+    
+    /**
+     * Formats the counts like a map, e.g. {info=44, error=19}.
+     * 
+     * @return The counts.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        Iterator<Map.Entry<String, long[]>> iterator = counts.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, long[]> entry = iterator.next();
+            builder.append(entry.getKey()).append('=').append(entry.getValue()[0]);
+            if (iterator.hasNext()) {
+                builder.append(", ");
+            }
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,251 @@
+package analyzer.impl;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import analyzer.EntryAnalyzer;
+import analyzer.EntryField;
+import analyzer.LogAnalyzer;
+import analyzer.sketch.Hashing;
+import analyzer.sketch.HyperLogLog;
+import model.FileAwareLogEntry;
+import model.LogEntry;
+import org.json.JSONObject;
+
+/**
+ * Estimates the number of distinct sources, messages and (level, source) pairs, per file and
+ * across all files, and the number of distinct messages of each level.
+ * 
+ * Every count is a {@link HyperLogLog} sketch of 2^log.analysis.distinct.precision bytes, so
+ * memory does not grow with the number of distinct values. Only the sketches of each file are
+ * updated per entry; the counts across all files are the union of the file sketches, formed
+ * when the results are read. Merging takes the maximum of each register, which gives exactly
+ * the sketch of both inputs together, also for chunks of the same file.
+ * 
+ * An instance is confined to the worker that owns it while it analyzes; only merging and
+ * reading results synchronize on the sketches.
+ */
+public class DistinctCountAnalyzer implements EntryAnalyzer {
+    
+    private final Map<String, FileSketches> fileSketches;
+    private final Map<String, HyperLogLog> levelMessages;
+    private int precision;
+    private boolean configured;
+    private String lastFileName;
+    private FileSketches lastFile;
+    
+    /**
+     * Constructor initializing the sketch maps.
+     */
+    public DistinctCountAnalyzer() {
+        fileSketches = new HashMap<>();
+        levelMessages = new HashMap<>();
+        precision = 12;
+    }
+    
+    @Override
+    public String getName() {
+        return "DISTINCT_COUNTS";
+    }
+    
+    @Override
+    public void analyze(List<LogEntry> logEntries, Properties properties) {
+        if (!configured) {
+            configure(properties);
+        }
+        
+        for (LogEntry entry : logEntries) {
+            analyzeEntry(entry);
+        }
+    }
+    
+    /**
+     * Reads the sketch precision.
+     * 
+     * @param properties Configuration properties.
+     */
+    @Override
+    public void configure(Properties properties) {
+        // Sketches restored from a checkpoint keep their precision, otherwise they could not be merged
+        if (fileSketches.isEmpty() && levelMessages.isEmpty()) {
+            precision = Integer.parseInt(properties.getProperty("log.analysis.distinct.precision", "12").trim());
+        }
+        configured = true;
+    }
+    
+    @Override
+    public Set<EntryField> getRequiredFields() {
+        return EnumSet.of(EntryField.LEVEL, EntryField.SOURCE, EntryField.MESSAGE, EntryField.FILE_NAME);
+    }
+    
+    @Override
+    public void analyzeEntry(LogEntry entry) {
+        String fileName = entry instanceof FileAwareLogEntry ? ((FileAwareLogEntry) entry).getFileName() : "unknown.log";
+        
+        // Entries arrive in batches of one file, so the lookup is usually skipped
+        if (!fileName.equals(lastFileName)) {
+            lastFile = fileSketches.computeIfAbsent(fileName, k -> new FileSketches(precision));
+            lastFileName = fileName;
+        }
+        
+        String level = entry.getLevel();
+        long sourceHash = Hashing.hash64(entry.getSource());
+        long messageHash = Hashing.hash64(entry.getMessage());
+        
+        lastFile.sources.add(sourceHash);
+        lastFile.messages.add(messageHash);
+        lastFile.levelSources.add(Hashing.mix(Hashing.hash64(level) * 0x9e3779b97f4a7c15L + sourceHash));
+        levelMessages.computeIfAbsent(level.toLowerCase(), k -> new HyperLogLog(precision)).add(messageHash);
+    }
+    
+    @Override
+    public void finish(Properties properties) {
+        System.out.println("DistinctCountAnalyzer: Sketched " + fileSketches.keySet() + " at precision " + precision);
+    }
+    
+    @Override
+    public JSONObject getResults() {
+        JSONObject result = new JSONObject();
+        
+        synchronized (fileSketches) {
+            FileSketches total = new FileSketches(precision);
+            JSONObject files = new JSONObject();
+            
+            for (Map.Entry<String, FileSketches> entry : new TreeMap<>(fileSketches).entrySet()) {
+                total.merge(entry.getValue());
+                files.put(entry.getKey(), entry.getValue().toResults());
+            }
+            
+            JSONObject messagesByLevel = new JSONObject();
+            for (Map.Entry<String, HyperLogLog> entry : levelMessages.entrySet()) {
+                messagesByLevel.put(entry.getKey(), entry.getValue().estimate());
+            }
+            
+            result.put("sources", total.sources.estimate());
+            result.put("messages", total.messages.estimate());
+            result.put("level_sources", total.levelSources.estimate());
+            result.put("messages_by_level", messagesByLevel);
+            result.put("files", files);
+            
+            System.out.println("DistinctCountAnalyzer: About " + total.sources.estimate() + " sources and "
+                               + total.messages.estimate() + " messages in " + fileSketches.size() + " files");
+        }
+        
+        return result;
+    }
+    
+    @Override
+    public void mergeResults(LogAnalyzer other) {
+        if (!(other instanceof DistinctCountAnalyzer)) {
+            return;
+        }
+        
+        DistinctCountAnalyzer otherAnalyzer = (DistinctCountAnalyzer) other;
+        
+        synchronized (fileSketches) {
+            for (Map.Entry<String, FileSketches> entry : otherAnalyzer.fileSketches.entrySet()) {
+                fileSketches.computeIfAbsent(entry.getKey(), k -> new FileSketches(precision)).merge(entry.getValue());
+            }
+            for (Map.Entry<String, HyperLogLog> entry : otherAnalyzer.levelMessages.entrySet()) {
+                levelMessages.computeIfAbsent(entry.getKey(), k -> new HyperLogLog(precision)).merge(entry.getValue());
+            }
+            lastFileName = null;
+        }
+    }
+    
+    /**
+     * Captures the sketches, with their registers Base64 encoded.
+     * 
+     * @return The state as JSON.
+     */
+    @Override
+    public JSONObject snapshotState() {
+        synchronized (fileSketches) {
+            JSONObject files = new JSONObject();
+            for (Map.Entry<String, FileSketches> entry : fileSketches.entrySet()) {
+                files.put(entry.getKey(), entry.getValue().toJson());
+            }
+            
+            JSONObject levels = new JSONObject();
+            for (Map.Entry<String, HyperLogLog> entry : levelMessages.entrySet()) {
+                levels.put(entry.getKey(), entry.getValue().encode());
+            }
+            
+            return new JSONObject().put("precision", precision).put("files", files).put("messages_by_level", levels);
+        }
+    }
+    
+    /**
+     * Restores sketches captured by {@link #snapshotState()}.
+     * 
+     * @param state The stored state.
+     */
+    @Override
+    public void restoreState(JSONObject state) {
+        synchronized (fileSketches) {
+            precision = state.getInt("precision");
+            configured = true;
+            
+            JSONObject files = state.getJSONObject("files");
+            for (String fileName : files.keySet()) {
+                fileSketches.computeIfAbsent(fileName, k -> new FileSketches(precision))
+                            .merge(FileSketches.fromJson(files.getJSONObject(fileName)));
+            }
+            
+            JSONObject levels = state.getJSONObject("messages_by_level");
+            for (String level : levels.keySet()) {
+                levelMessages.computeIfAbsent(level, k -> new HyperLogLog(precision))
+                             .merge(HyperLogLog.decode(levels.getString(level)));
+            }
+            lastFileName = null;
+        }
+    }
+    
+    /**
+     * The sketches of one file.
+     */
+    private static class FileSketches {
+        private final HyperLogLog sources;
+        private final HyperLogLog messages;
+        private final HyperLogLog levelSources;
+        
+        FileSketches(int precision) {
+            this(new HyperLogLog(precision), new HyperLogLog(precision), new HyperLogLog(precision));
+        }
+        
+        private FileSketches(HyperLogLog sources, HyperLogLog messages, HyperLogLog levelSources) {
+            this.sources = sources;
+            this.messages = messages;
+            this.levelSources = levelSources;
+        }
+        
+        void merge(FileSketches other) {
+            sources.merge(other.sources);
+            messages.merge(other.messages);
+            levelSources.merge(other.levelSources);
+        }
+        
+        JSONObject toResults() {
+            return new JSONObject().put("sources", sources.estimate())
+                                   .put("messages", messages.estimate())
+                                   .put("level_sources", levelSources.estimate());
+        }
+        
+        JSONObject toJson() {
+            return new JSONObject().put("sources", sources.encode())
+                                   .put("messages", messages.encode())
+                                   .put("level_sources", levelSources.encode());
+        }
+        
+        static FileSketches fromJson(JSONObject json) {
+            return new FileSketches(HyperLogLog.decode(json.getString("sources")),
+                                    HyperLogLog.decode(json.getString("messages")),
+                                    HyperLogLog.decode(json.getString("level_sources")));
+        }
+    }
+}
\ No newline at end of file
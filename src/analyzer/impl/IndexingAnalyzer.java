@@ -0,0 +1,262 @@
+package analyzer.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import analyzer.EntryAnalyzer;
+import analyzer.EntryField;
+import analyzer.LogAnalyzer;
+import index.IndexBuilder;
+import index.IndexMerger;
+import index.IndexSegment;
+import model.FileAwareLogEntry;
+import model.LogEntry;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Builds an inverted index of the words of the messages and the levels and sources of the
+ * records during the normal pass, to be searched with "--query" (see index.IndexQuery).
+ * 
+ * Each worker buffers the postings of the records it reads and writes them to a segment
+ * in log.index.directory whenever log.index.buffer.postings postings are buffered and when
+ * its file or chunk is done. Merging instances only collects their segments; when the
+ * results are read, the segments are merged into index.idx and deleted. A checkpointed run
+ * merges the segments of the new data into the existing index. Distributed workers write their
+ * segments to their own log.index.directory, which must therefore be the coordinator's index
+ * directory shared at the same path, like the log directory; a task whose segments the
+ * coordinator cannot find fails.
+ * 
+ * Records of rotated or compressed groups read as one stream have no offset in a single
+ * file and are not indexed.
+ */
+public class IndexingAnalyzer implements EntryAnalyzer {
+    
+    private static final String INDEX_FILE = "index.idx";
+    
+    /**
+     * Key set in a state received from a distributed worker, whose segments must all exist.
+     */
+    public static final String TRANSFERRED = "transferred";
+    
+    private final List<Path> segments;
+    private Path directory;
+    private long bufferPostings;
+    private boolean includeIndex;
+    private boolean configured;
+    private IndexBuilder builder;
+    private long records;
+    private long skipped;
+    
+    /**
+     * Constructor initializing the segment list with the default settings.
+     */
+    public IndexingAnalyzer() {
+        segments = new ArrayList<>();
+        directory = Paths.get("log_index").toAbsolutePath();
+        bufferPostings = 1000000;
+    }
+    
+    @Override
+    public String getName() {
+        return "BUILD_INDEX";
+    }
+    
+    @Override
+    public void analyze(List<LogEntry> logEntries, Properties properties) {
+        if (!configured) {
+            configure(properties);
+        }
+        
+        for (LogEntry entry : logEntries) {
+            analyzeEntry(entry);
+        }
+    }
+    
+    /**
+     * Reads the index directory and the number of postings buffered per segment.
+     * 
+     * @param properties Configuration properties.
+     */
+    @Override
+    public void configure(Properties properties) {
+        directory = Paths.get(properties.getProperty("log.index.directory", "log_index").trim()).toAbsolutePath();
+        bufferPostings = Math.max(1, Long.parseLong(properties.getProperty("log.index.buffer.postings", "1000000").trim()));
+        configured = true;
+    }
+    
+    @Override
+    public Set<EntryField> getRequiredFields() {
+        return EnumSet.of(EntryField.LEVEL, EntryField.SOURCE, EntryField.MESSAGE, EntryField.FILE_NAME);
+    }
+    
+    @Override
+    public void analyzeEntry(LogEntry entry) {
+        long offset = entry instanceof FileAwareLogEntry ? ((FileAwareLogEntry) entry).getOffset() : -1;
+        if (offset < 0 || offset > IndexSegment.MAX_OFFSET) {
+            skipped++;
+            return;
+        }
+        
+        if (builder == null) {
+            builder = new IndexBuilder(directory);
+        }
+        builder.add(((FileAwareLogEntry) entry).getFileName(), offset, entry.getLevel(), entry.getSource(), entry.getMessage());
+        records++;
+        
+        if (builder.getBufferedPostings() >= bufferPostings) {
+            flush();
+        }
+    }
+    
+    /**
+     * Writes the buffered postings of this instance to a new segment.
+     */
+    private void flush() {
+        if (builder == null) {
+            return;
+        }
+        
+        try {
+            Path segment = builder.flush();
+            if (segment != null) {
+                synchronized (segments) {
+                    segments.add(segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public void finish(Properties properties) {
+        flush();
+        System.out.println("IndexingAnalyzer: Indexed " + records + " records"
+                           + (skipped > 0 ? ", " + skipped + " records without a file offset skipped" : ""));
+    }
+    
+    /**
+     * Merges the segments written so far into the index and returns its size.
+     * 
+     * @return The index file and its numbers of terms, postings and files.
+     */
+    @Override
+    public JSONObject getResults() {
+        JSONObject result = new JSONObject();
+        flush();
+        
+        synchronized (segments) {
+            Path indexFile = directory.resolve(INDEX_FILE);
+            List<Path> inputs = new ArrayList<>(segments);
+            if (includeIndex && Files.exists(indexFile)) {
+                inputs.add(0, indexFile);
+            }
+            
+            try {
+                Files.createDirectories(directory);
+                long[] stats = IndexMerger.merge(inputs, indexFile);
+                for (Path segment : segments) {
+                    Files.deleteIfExists(segment);
+                }
+                segments.clear();
+                // Later reads, e.g. while following the logs, add to the index written now
+                includeIndex = true;
+                
+                result.put("index", indexFile.toString());
+                result.put("terms", stats[0]);
+                result.put("postings", stats[1]);
+                result.put("files", stats[2]);
+            } catch (IOException e) {
+                System.out.println("Error writing index " + indexFile + ": " + e.getMessage());
+                result.put("error", e.getMessage());
+            }
+        }
+        
+        return result;
+    }
+    
+    @Override
+    public void mergeResults(LogAnalyzer other) {
+        if (!(other instanceof IndexingAnalyzer)) {
+            return;
+        }
+        
+        IndexingAnalyzer otherAnalyzer = (IndexingAnalyzer) other;
+        
+        // The other instance is finished, but may not have written its last postings yet
+        otherAnalyzer.flush();
+        
+        synchronized (segments) {
+            synchronized (otherAnalyzer.segments) {
+                segments.addAll(otherAnalyzer.segments);
+                otherAnalyzer.segments.clear();
+            }
+            includeIndex |= otherAnalyzer.includeIndex;
+            records += otherAnalyzer.records;
+            skipped += otherAnalyzer.skipped;
+        }
+    }
+    
+    /**
+     * Captures the directory and the segments not yet merged into the index.
+     * 
+     * @return The state as JSON.
+     */
+    @Override
+    public JSONObject snapshotState() {
+        flush();
+        
+        synchronized (segments) {
+            JSONArray paths = new JSONArray();
+            for (Path segment : segments) {
+                paths.put(segment.toString());
+            }
+            return new JSONObject().put("directory", directory.toString())
+                                   .put("buffer_postings", bufferPostings)
+                                   .put("include_index", includeIndex)
+                                   .put("segments", paths);
+        }
+    }
+    
+    /**
+     * Restores segments captured by {@link #snapshotState()}. Segments of a checkpoint that no
+     * longer exist were merged into the index when the results of the run that saved them were
+     * read, so the index is merged with the segments of the new data. The segments of a state
+     * marked {@link #TRANSFERRED} were just written by a worker and must exist.
+     * 
+     * @param state The stored state.
+     * @throws IllegalStateException If a segment of a transferred state does not exist.
+     */
+    @Override
+    public void restoreState(JSONObject state) {
+        boolean transferred = state.optBoolean(TRANSFERRED, false);
+        
+        synchronized (segments) {
+            directory = Paths.get(state.getString("directory"));
+            bufferPostings = state.getLong("buffer_postings");
+            includeIndex = state.getBoolean("include_index");
+            configured = true;
+            
+            for (Object item : state.getJSONArray("segments")) {
+                Path segment = Paths.get((String) item);
+                if (Files.exists(segment)) {
+                    segments.add(segment);
+                } else if (transferred) {
+                    throw new IllegalStateException("Index segment " + segment + " of a worker does not exist here,"
+                                                    + " log.index.directory must be shared with the workers");
+                } else {
+                    includeIndex = true;
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,11 +1,12 @@
 package analyzer.impl;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
+import analyzer.EntryAnalyzer;
+import analyzer.EntryField;
 import analyzer.LogAnalyzer;
 import model.LogEntry;
 import org.json.JSONObject;
@@ -15,18 +16,19 @@ import org.json.JSONObject;
  * This analyzer counts how many times each log level (INFO, WARNING, ERROR, etc.) appears
  * across all processed log files.
  * 
- * Thread-safety is ensured by using synchronized collections and blocks to handle
- * concurrent access from multiple threads during parallel log processing.
+ * An instance is confined to the worker that owns it while it analyzes, so counting takes
+ * no locks; only merging into an instance and reading its results synchronize on the counts,
+ * since merges into the global analyzer can come from several threads.
  */
-public class LevelCountAnalyzer implements LogAnalyzer {
+public class LevelCountAnalyzer implements EntryAnalyzer {
     
-    private final Map<String, Integer> levelCounts;
+    private final CounterMap levelCounts;
     
     /**
      * Constructor initializing the level counts map.
      */
     public LevelCountAnalyzer() {
-        levelCounts = Collections.synchronizedMap(new HashMap<>());
+        levelCounts = new CounterMap();
     }
     
     /**
@@ -50,15 +52,47 @@ public class LevelCountAnalyzer implements LogAnalyzer {
      */
     @Override
     public void analyze(List<LogEntry> logEntries, Properties properties) {
-        System.out.println("LevelCountAnalyzer: Analyzing " + logEntries.size() + " entries");
-        
         for (LogEntry entry : logEntries) {
-            String level = entry.getLevel().toLowerCase();
-            synchronized (levelCounts) {
-                levelCounts.put(level, levelCounts.getOrDefault(level, 0) + 1);
-            }
+            analyzeEntry(entry);
         }
-        
+    }
+    
+    /**
+     * This analyzer has no settings.
+     * 
+     * @param properties Configuration properties (not used in this analyzer).
+     */
+    @Override
+    public void configure(Properties properties) {
+    }
+    
+    /**
+     * Only the level of an entry is read, for entries of every level.
+     * 
+     * @return The level field.
+     */
+    @Override
+    public Set<EntryField> getRequiredFields() {
+        return EnumSet.of(EntryField.LEVEL);
+    }
+    
+    /**
+     * Counts the level of a single entry, in lowercase.
+     * 
+     * @param entry The log entry.
+     */
+    @Override
+    public void analyzeEntry(LogEntry entry) {
+        levelCounts.increment(entry.getLevel().toLowerCase());
+    }
+    
+    /**
+     * Reports the counts once all batches of a file have been analyzed.
+     * 
+     * @param properties Configuration properties (not used in this analyzer).
+     */
+    @Override
+    public void finish(Properties properties) {
         System.out.println("LevelCountAnalyzer: Counts after analysis: " + levelCounts);
     }
     
@@ -73,11 +107,11 @@ public class LevelCountAnalyzer implements LogAnalyzer {
     public JSONObject getResults() {
         JSONObject result = new JSONObject();
         
-        System.out.println("LevelCountAnalyzer: Getting results, counts: " + levelCounts);
-        
         synchronized (levelCounts) {
-            for (Map.Entry<String, Integer> entry : levelCounts.entrySet()) {
-                result.put(entry.getKey(), entry.getValue());
+            System.out.println("LevelCountAnalyzer: Getting results, counts: " + levelCounts);
+            
+            for (String level : levelCounts.keys()) {
+                result.put(level, levelCounts.get(level));
             }
         }
         
@@ -99,20 +133,39 @@ public class LevelCountAnalyzer implements LogAnalyzer {
         
         LevelCountAnalyzer otherAnalyzer = (LevelCountAnalyzer) other;
         
-        System.out.println("LevelCountAnalyzer: Merging results");
-        System.out.println("  - Current counts: " + levelCounts);
-        System.out.println("  - Other counts: " + otherAnalyzer.levelCounts);
-        
+        // The other instance is finished, only this one can be merged into concurrently
         synchronized (levelCounts) {
-            synchronized (otherAnalyzer.levelCounts) {
-                for (Map.Entry<String, Integer> entry : otherAnalyzer.levelCounts.entrySet()) {
-                    String level = entry.getKey();
-                    int count = entry.getValue();
-                    levelCounts.put(level, levelCounts.getOrDefault(level, 0) + count);
-                }
-            }
+            System.out.println("LevelCountAnalyzer: Merging results");
+            System.out.println("  - Current counts: " + levelCounts);
+            System.out.println("  - Other counts: " + otherAnalyzer.levelCounts);
+            
+            levelCounts.addAll(otherAnalyzer.levelCounts);
+            
+            System.out.println("LevelCountAnalyzer: Counts after merge: " + levelCounts);
+        }
+    }
+    
+    /**
+     * Captures the level counts.
+     * 
+     * @return The counts by level.
+     */
+    @Override
+    public JSONObject snapshotState() {
+        synchronized (levelCounts) {
+            return new JSONObject().put("level_counts", levelCounts.toJson());
+        }
+    }
+    
+    /**
+     * Restores level counts captured by {@link #snapshotState()}.
+     * 
+     * @param state The stored state.
+     */
+    @Override
+    public void restoreState(JSONObject state) {
+        synchronized (levelCounts) {
+            levelCounts.addJson(state.getJSONObject("level_counts"));
         }
-        
-        System.out.println("LevelCountAnalyzer: Counts after merge: " + levelCounts);
     }
 }
\ No newline at end of file
@@ -0,0 +1,234 @@
+package analyzer.impl;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import analyzer.EntryAnalyzer;
+import analyzer.EntryField;
+import analyzer.LogAnalyzer;
+import model.LogEntry;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Counts log entries per level and time interval, e.g. errors per minute.
+ * 
+ * The counts of each level are kept in a {@link BucketHistogram}, i.e. dense arrays of
+ * primitive counts indexed by the number of intervals since the epoch, and are merged by
+ * adding the arrays. The report holds one aligned series per level, from the first to the
+ * last interval with entries. A series longer than log.analysis.histogram.max.buckets is
+ * reported with a multiple of the interval, so that a wide time range does not blow up
+ * the report.
+ * 
+ * An instance is confined to the worker that owns it while it analyzes; only merging and
+ * reading results synchronize on the histograms.
+ */
+public class LevelHistogramAnalyzer implements EntryAnalyzer {
+    
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    
+    private final Map<String, BucketHistogram> levelHistograms;
+    private long intervalSeconds;
+    private int maxBuckets;
+    private boolean configured;
+    private String lastLevel;
+    private BucketHistogram lastHistogram;
+    
+    /**
+     * Constructor initializing the histograms map.
+     */
+    public LevelHistogramAnalyzer() {
+        levelHistograms = new HashMap<>();
+        intervalSeconds = 60;
+        maxBuckets = 10000;
+    }
+    
+    @Override
+    public String getName() {
+        return "LEVEL_HISTOGRAM";
+    }
+    
+    @Override
+    public void analyze(List<LogEntry> logEntries, Properties properties) {
+        if (!configured) {
+            configure(properties);
+        }
+        
+        for (LogEntry entry : logEntries) {
+            analyzeEntry(entry);
+        }
+    }
+    
+    /**
+     * Reads the interval and the maximum length of the reported series.
+     * 
+     * @param properties Configuration properties.
+     */
+    @Override
+    public void configure(Properties properties) {
+        // Histograms restored from a checkpoint keep their interval, otherwise they could not be merged
+        if (levelHistograms.isEmpty()) {
+            intervalSeconds = parseInterval(properties.getProperty("log.analysis.histogram.interval", "1m").trim());
+        }
+        maxBuckets = Math.max(1, Integer.parseInt(properties.getProperty("log.analysis.histogram.max.buckets", "10000").trim()));
+        configured = true;
+    }
+    
+    /**
+     * Parses an interval such as "30s", "5m", "1h" or "1d"; a plain number is in seconds.
+     * 
+     * @param interval The interval.
+     * @return The interval in seconds.
+     */
+    static long parseInterval(String interval) {
+        long unit;
+        switch (Character.toLowerCase(interval.charAt(interval.length() - 1))) {
+            case 's':
+                unit = 1;
+                break;
+            case 'm':
+                unit = 60;
+                break;
+            case 'h':
+                unit = 3600;
+                break;
+            case 'd':
+                unit = 86400;
+                break;
+            default:
+                return Math.max(1, Long.parseLong(interval));
+        }
+        return Math.max(1, Long.parseLong(interval.substring(0, interval.length() - 1).trim()) * unit);
+    }
+    
+    @Override
+    public Set<EntryField> getRequiredFields() {
+        return EnumSet.of(EntryField.TIMESTAMP, EntryField.LEVEL);
+    }
+    
+    @Override
+    public void analyzeEntry(LogEntry entry) {
+        String level = entry.getLevel();
+        
+        // Levels repeat from entry to entry, so the lookup is usually skipped
+        if (!level.equals(lastLevel)) {
+            lastHistogram = levelHistograms.computeIfAbsent(level.toLowerCase(), k -> new BucketHistogram());
+            lastLevel = level;
+        }
+        lastHistogram.add(Math.floorDiv(entry.getTimestamp().toEpochSecond(ZoneOffset.UTC), intervalSeconds), 1);
+    }
+    
+    @Override
+    public void finish(Properties properties) {
+        System.out.println("LevelHistogramAnalyzer: Counted levels " + levelHistograms.keySet() + " per " + intervalSeconds + "s");
+    }
+    
+    @Override
+    public JSONObject getResults() {
+        JSONObject result = new JSONObject();
+        
+        synchronized (levelHistograms) {
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            for (BucketHistogram histogram : levelHistograms.values()) {
+                first = Math.min(first, histogram.firstBucket());
+                last = Math.max(last, histogram.lastBucket());
+            }
+            
+            if (first > last) {
+                result.put("interval_seconds", intervalSeconds);
+                result.put("start", "");
+                result.put("levels", new JSONObject());
+                return result;
+            }
+            
+            // Coarsen the reported interval until the series fit
+            long span = last - first + 1;
+            long bucketsPerSlot = Math.max(1, (span + maxBuckets - 1) / maxBuckets);
+            long start = Math.floorDiv(first, bucketsPerSlot) * bucketsPerSlot;
+            int slots = (int) ((last - start) / bucketsPerSlot + 1);
+            
+            JSONObject levels = new JSONObject();
+            for (Map.Entry<String, BucketHistogram> entry : new TreeMap<>(levelHistograms).entrySet()) {
+                long[] counts = new long[slots];
+                entry.getValue().addTo(start, bucketsPerSlot, counts);
+                levels.put(entry.getKey(), new JSONArray(counts));
+            }
+            
+            long startSeconds = start * intervalSeconds;
+            result.put("interval_seconds", intervalSeconds * bucketsPerSlot);
+            result.put("start", LocalDateTime.ofEpochSecond(startSeconds, 0, ZoneOffset.UTC).format(TIMESTAMP_FORMAT));
+            result.put("levels", levels);
+        }
+        
+        return result;
+    }
+    
+    @Override
+    public void mergeResults(LogAnalyzer other) {
+        if (!(other instanceof LevelHistogramAnalyzer)) {
+            return;
+        }
+        
+        LevelHistogramAnalyzer otherAnalyzer = (LevelHistogramAnalyzer) other;
+        
+        synchronized (levelHistograms) {
+            for (Map.Entry<String, BucketHistogram> entry : otherAnalyzer.levelHistograms.entrySet()) {
+                levelHistograms.computeIfAbsent(entry.getKey(), k -> new BucketHistogram()).addAll(entry.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Captures the interval and the non-empty buckets of each level.
+     * 
+     * @return The state as JSON.
+     */
+    @Override
+    public JSONObject snapshotState() {
+        synchronized (levelHistograms) {
+            JSONObject levels = new JSONObject();
+            for (Map.Entry<String, BucketHistogram> entry : levelHistograms.entrySet()) {
+                Timeline.LongList buckets = new Timeline.LongList();
+                Timeline.LongList counts = new Timeline.LongList();
+                entry.getValue().collect(buckets, counts);
+                levels.put(entry.getKey(), new JSONObject().put("buckets", new JSONArray(buckets.toArray()))
+                                                           .put("counts", new JSONArray(counts.toArray())));
+            }
+            return new JSONObject().put("interval", intervalSeconds).put("max_buckets", maxBuckets).put("levels", levels);
+        }
+    }
+    
+    /**
+     * Restores histograms captured by {@link #snapshotState()}.
+     * 
+     * @param state The stored state.
+     */
+    @Override
+    public void restoreState(JSONObject state) {
+        synchronized (levelHistograms) {
+            intervalSeconds = state.getLong("interval");
+            maxBuckets = state.getInt("max_buckets");
+            configured = true;
+            
+            JSONObject levels = state.getJSONObject("levels");
+            for (String level : levels.keySet()) {
+                BucketHistogram histogram = levelHistograms.computeIfAbsent(level, k -> new BucketHistogram());
+                JSONArray buckets = levels.getJSONObject(level).getJSONArray("buckets");
+                JSONArray counts = levels.getJSONObject(level).getJSONArray("counts");
+                for (int i = 0; i < buckets.length(); i++) {
+                    histogram.add(buckets.getLong(i), counts.getLong(i));
+                }
+            }
+            lastLevel = null;
+        }
+    }
+}
\ No newline at end of file
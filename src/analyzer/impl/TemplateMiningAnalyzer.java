@@ -0,0 +1,199 @@
+package analyzer.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import analyzer.EntryAnalyzer;
+import analyzer.EntryField;
+import analyzer.LogAnalyzer;
+import model.LogEntry;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Clusters log messages into templates such as "Database connection failed: timeout after <*>",
+ * with the number of messages per template, level and source.
+ * 
+ * Messages are clustered online with a Drain-style {@link TemplateTree} as they are analyzed.
+ * Logs repeat the same messages over and over, so the template of each recently seen message
+ * is cached in a small LRU map and a repeated message skips tokenizing and the tree search.
+ * The trees of different workers are merged by adding the templates of one to the other,
+ * which joins equal and similar templates and adds up their counts.
+ * 
+ * An instance is confined to the worker that owns it while it analyzes; only merging and
+ * reading results synchronize on the tree.
+ */
+public class TemplateMiningAnalyzer implements EntryAnalyzer {
+    
+    private final TemplateTree tree;
+    private Map<String, TemplateTree.Template> recentMessages;
+    private int topCount;
+    private boolean configured;
+    
+    /**
+     * Constructor initializing the template tree with the default settings.
+     */
+    public TemplateMiningAnalyzer() {
+        tree = new TemplateTree(4, 0.5, 100);
+        recentMessages = createCache(10000);
+        topCount = 50;
+    }
+    
+    @Override
+    public String getName() {
+        return "MESSAGE_TEMPLATES";
+    }
+    
+    @Override
+    public void analyze(List<LogEntry> logEntries, Properties properties) {
+        if (!configured) {
+            configure(properties);
+        }
+        
+        for (LogEntry entry : logEntries) {
+            analyzeEntry(entry);
+        }
+    }
+    
+    /**
+     * Reads the tree settings, the cache size and the number of templates reported.
+     * 
+     * @param properties Configuration properties.
+     */
+    @Override
+    public void configure(Properties properties) {
+        // Templates restored from a checkpoint keep the settings they were placed with
+        tree.configure(Integer.parseInt(properties.getProperty("log.analysis.templates.depth", "4").trim()),
+                       Double.parseDouble(properties.getProperty("log.analysis.templates.similarity", "0.5").trim()),
+                       Integer.parseInt(properties.getProperty("log.analysis.templates.max.children", "100").trim()));
+        recentMessages = createCache(Integer.parseInt(properties.getProperty("log.analysis.templates.cache.size", "10000").trim()));
+        topCount = Integer.parseInt(properties.getProperty("log.analysis.templates.top", "50").trim());
+        configured = true;
+    }
+    
+    private static Map<String, TemplateTree.Template> createCache(int size) {
+        return new LinkedHashMap<String, TemplateTree.Template>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TemplateTree.Template> eldest) {
+                return size() > size;
+            }
+        };
+    }
+    
+    @Override
+    public Set<EntryField> getRequiredFields() {
+        return EnumSet.of(EntryField.LEVEL, EntryField.SOURCE, EntryField.MESSAGE);
+    }
+    
+    @Override
+    public void analyzeEntry(LogEntry entry) {
+        String message = entry.getMessage();
+        
+        // A template only grows more general, so a cached template still matches its message
+        TemplateTree.Template template = recentMessages.get(message);
+        if (template == null) {
+            template = tree.add(TemplateTree.tokenize(message));
+            recentMessages.put(message, template);
+        }
+        template.count(entry.getLevel().toLowerCase(), entry.getSource());
+    }
+    
+    @Override
+    public void finish(Properties properties) {
+        System.out.println("TemplateMiningAnalyzer: " + tree.getTemplates().size() + " templates after analysis");
+    }
+    
+    /**
+     * Returns the templates matching the most messages, with their counts per level and source.
+     * 
+     * @return The number of templates and the top templates.
+     */
+    @Override
+    public JSONObject getResults() {
+        JSONObject result = new JSONObject();
+        
+        synchronized (tree) {
+            List<TemplateTree.Template> templates = new ArrayList<>(tree.getTemplates());
+            // Ties are ordered by text, so the report does not depend on the order files were merged in
+            templates.sort(Comparator.comparingLong(TemplateTree.Template::getCount).reversed()
+                                     .thenComparing(TemplateTree.Template::getText));
+            
+            JSONArray top = new JSONArray();
+            for (TemplateTree.Template template : templates.subList(0, Math.min(topCount, templates.size()))) {
+                top.put(new JSONObject().put("template", template.getText())
+                                        .put("count", template.getCount())
+                                        .put("levels", template.getLevelCounts().toJson())
+                                        .put("sources", template.getSourceCounts().toJson()));
+            }
+            
+            result.put("template_count", templates.size());
+            result.put("templates", top);
+        }
+        
+        return result;
+    }
+    
+    @Override
+    public void mergeResults(LogAnalyzer other) {
+        if (!(other instanceof TemplateMiningAnalyzer)) {
+            return;
+        }
+        
+        TemplateMiningAnalyzer otherAnalyzer = (TemplateMiningAnalyzer) other;
+        
+        synchronized (tree) {
+            tree.addAll(otherAnalyzer.tree);
+        }
+    }
+    
+    /**
+     * Captures the tree settings and the templates with their counts.
+     * 
+     * @return The state as JSON.
+     */
+    @Override
+    public JSONObject snapshotState() {
+        synchronized (tree) {
+            JSONArray templates = new JSONArray();
+            for (TemplateTree.Template template : tree.getTemplates()) {
+                templates.put(new JSONObject().put("template", template.getText())
+                                              .put("levels", template.getLevelCounts().toJson())
+                                              .put("sources", template.getSourceCounts().toJson()));
+            }
+            
+            return new JSONObject().put("depth", tree.getDepth())
+                                   .put("similarity", tree.getSimilarity())
+                                   .put("max_children", tree.getMaxChildren())
+                                   .put("top", topCount)
+                                   .put("templates", templates);
+        }
+    }
+    
+    /**
+     * Restores templates captured by {@link #snapshotState()}, joining them with the
+     * templates of this instance.
+     * 
+     * @param state The stored state.
+     */
+    @Override
+    public void restoreState(JSONObject state) {
+        synchronized (tree) {
+            tree.configure(state.getInt("depth"), state.getDouble("similarity"), state.getInt("max_children"));
+            topCount = state.getInt("top");
+            configured = true;
+            
+            // Wildcards contain no digit, so the template text tokenizes back to the template
+            for (Object item : state.getJSONArray("templates")) {
+                JSONObject json = (JSONObject) item;
+                tree.add(TemplateTree.tokenize(json.getString("template")))
+                    .addCounts(json.getJSONObject("levels"), json.getJSONObject("sources"));
+            }
+        }
+    }
+}
\ No newline at end of file
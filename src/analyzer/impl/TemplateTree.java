@@ -0,0 +1,256 @@
+package analyzer.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+/**
+ * Fixed-depth prefix tree clustering log messages into templates, after the Drain algorithm
+ * (He et al., "Drain: An Online Log Parsing Approach with Fixed Depth Tree").
+ *
+ * A message is split into tokens at whitespace, and tokens containing a digit (numbers,
+ * durations, IDs, IP addresses) are masked as {@link #WILDCARD}. The tree is keyed first by
+ * the number of tokens and then by the first depth tokens, so a message is only compared with
+ * the few templates in its leaf. It joins the most similar template if at least the similarity
+ * threshold of its tokens are equal to the template's, and the tokens that differ become
+ * wildcards; otherwise it starts a new template. A node with maxChildren children sends further
+ * tokens to its wildcard child, which bounds the width of the tree.
+ */
+class TemplateTree {
+
+    static final String WILDCARD = "<*>";
+
+    private int depth;
+    private double similarity;
+    private int maxChildren;
+    private final Map<Integer, Node> lengthNodes;
+    private final List<Template> templates;
+
+    /**
+     * Constructor for creating an empty tree.
+     *
+     * @param depth The number of leading tokens the tree is keyed by.
+     * @param similarity The minimum fraction of equal tokens for a message to join a template.
+     * @param maxChildren The maximum number of children of a node.
+     */
+    TemplateTree(int depth, double similarity, int maxChildren) {
+        this.lengthNodes = new HashMap<>();
+        this.templates = new ArrayList<>();
+        configure(depth, similarity, maxChildren);
+    }
+
+    /**
+     * Changes the settings; only allowed while the tree is empty, as the templates already
+     * in the tree were placed with the old settings.
+     *
+     * @param depth The number of leading tokens the tree is keyed by.
+     * @param similarity The minimum fraction of equal tokens for a message to join a template.
+     * @param maxChildren The maximum number of children of a node.
+     * @return Whether the settings were changed.
+     */
+    boolean configure(int depth, double similarity, int maxChildren) {
+        if (!templates.isEmpty()) {
+            return false;
+        }
+        this.depth = Math.max(0, depth);
+        this.similarity = similarity;
+        this.maxChildren = Math.max(1, maxChildren);
+        return true;
+    }
+
+    /**
+     * Splits a message into tokens, masking tokens with a digit.
+     *
+     * @param message The message.
+     * @return The tokens.
+     */
+    static String[] tokenize(String message) {
+        List<String> tokens = new ArrayList<>();
+        int length = message.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(message.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            boolean digit = false;
+            while (i < length && !Character.isWhitespace(message.charAt(i))) {
+                digit |= Character.isDigit(message.charAt(i));
+                i++;
+            }
+            if (i > start) {
+                tokens.add(digit ? WILDCARD : message.substring(start, i));
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * Finds the template of a tokenized message, generalizing it or creating a new template
+     * as needed. The counts of the template are not changed.
+     *
+     * @param tokens The tokens of the message, or of another template.
+     * @return The template.
+     */
+    Template add(String[] tokens) {
+        Node node = lengthNodes.computeIfAbsent(tokens.length, k -> new Node());
+        for (int i = 0; i < Math.min(depth, tokens.length); i++) {
+            node = node.child(tokens[i], maxChildren);
+        }
+
+        Template best = null;
+        double bestSimilarity = -1;
+        for (Template template : node.templates) {
+            double current = template.similarity(tokens);
+            if (current > bestSimilarity) {
+                best = template;
+                bestSimilarity = current;
+            }
+        }
+
+        if (best != null && bestSimilarity >= similarity) {
+            best.generalize(tokens);
+            return best;
+        }
+
+        Template template = new Template(tokens.clone());
+        node.templates.add(template);
+        templates.add(template);
+        return template;
+    }
+
+    /**
+     * Adds the templates of another tree, with their counts.
+     *
+     * @param other The other tree.
+     */
+    void addAll(TemplateTree other) {
+        for (Template template : other.templates) {
+            add(template.tokens).addCounts(template);
+        }
+    }
+
+    /**
+     * Gets all templates, in the order they were created.
+     *
+     * @return The templates.
+     */
+    List<Template> getTemplates() {
+        return templates;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    double getSimilarity() {
+        return similarity;
+    }
+
+    int getMaxChildren() {
+        return maxChildren;
+    }
+
+    /**
+     * A node of the tree; only leaves hold templates.
+     */
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final List<Template> templates = new ArrayList<>();
+
+        Node child(String token, int maxChildren) {
+            Node child = children.get(token);
+            if (child == null) {
+                String key = children.size() < maxChildren - 1 || WILDCARD.equals(token) ? token : WILDCARD;
+                child = children.computeIfAbsent(key, k -> new Node());
+            }
+            return child;
+        }
+    }
+
+    /**
+     * A template with the number of messages it matched, per level and source.
+     */
+    static class Template {
+        private final String[] tokens;
+        private final CounterMap levelCounts;
+        private final CounterMap sourceCounts;
+        private long count;
+
+        Template(String[] tokens) {
+            this.tokens = tokens;
+            this.levelCounts = new CounterMap();
+            this.sourceCounts = new CounterMap();
+        }
+
+        /**
+         * Counts a message matching the template.
+         *
+         * @param level The level of the message.
+         * @param source The source of the message.
+         */
+        void count(String level, String source) {
+            count++;
+            levelCounts.increment(level);
+            sourceCounts.increment(source);
+        }
+
+        /**
+         * Adds counts read from JSON, as written by {@link CounterMap#toJson()}.
+         *
+         * @param levels The counts per level.
+         * @param sources The counts per source.
+         */
+        void addCounts(JSONObject levels, JSONObject sources) {
+            for (String level : levels.keySet()) {
+                count += levels.getLong(level);
+            }
+            levelCounts.addJson(levels);
+            sourceCounts.addJson(sources);
+        }
+
+        void addCounts(Template other) {
+            count += other.count;
+            levelCounts.addAll(other.levelCounts);
+            sourceCounts.addAll(other.sourceCounts);
+        }
+
+        double similarity(String[] other) {
+            int equal = 0;
+            for (int i = 0; i < tokens.length; i++) {
+                // A wildcard only counts as equal to a masked token, not to the words it replaced
+                if (tokens[i].equals(other[i])) {
+                    equal++;
+                }
+            }
+            return tokens.length == 0 ? 1 : (double) equal / tokens.length;
+        }
+
+        void generalize(String[] other) {
+            for (int i = 0; i < tokens.length; i++) {
+                if (!tokens[i].equals(other[i])) {
+                    tokens[i] = WILDCARD;
+                }
+            }
+        }
+
+        String getText() {
+            return String.join(" ", tokens);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        CounterMap getLevelCounts() {
+            return levelCounts;
+        }
+
+        CounterMap getSourceCounts() {
+            return sourceCounts;
+        }
+    }
+}
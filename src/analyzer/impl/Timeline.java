@@ -0,0 +1,199 @@
+package analyzer.impl;
+
+import java.util.Arrays;
+
+/**
+ * Sorted timestamps (epoch milliseconds) of the target entries of one file, stored as a
+ * growable array of primitives.
+ *
+ * Log files are written in time order, so a timestamp is normally appended at the end. One
+ * that is slightly out of order is inserted at its place among the last reorderWindow
+ * timestamps, which act as a bounded reorder buffer; a timestamp older than that marks the
+ * timeline as unsorted, and it is sorted once before it is read. The timelines of chunks of
+ * the same file are combined by merging the sorted runs.
+ */
+class Timeline {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int reorderWindow;
+    private long[] times;
+    private int size;
+    private boolean unsorted;
+
+    /**
+     * Constructor for creating an empty timeline.
+     *
+     * @param reorderWindow The number of most recent timestamps among which an out-of-order
+     *                      timestamp is inserted in place.
+     */
+    Timeline(int reorderWindow) {
+        this.reorderWindow = Math.max(0, reorderWindow);
+        this.times = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds a timestamp.
+     *
+     * @param time The timestamp in epoch milliseconds.
+     */
+    void add(long time) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+        }
+
+        if (unsorted || size == 0 || time >= times[size - 1]) {
+            times[size++] = time;
+            return;
+        }
+
+        // Out of order: insert among the recent timestamps, or give up on keeping the order
+        int windowStart = Math.max(0, size - reorderWindow);
+        if (windowStart == size || (windowStart > 0 && time < times[windowStart])) {
+            times[size++] = time;
+            unsorted = true;
+            return;
+        }
+
+        int position = upperBound(windowStart, size, time);
+        System.arraycopy(times, position, times, position + 1, size - position);
+        times[position] = time;
+        size++;
+    }
+
+    /**
+     * Adds all timestamps of another timeline, merging the two sorted runs.
+     *
+     * @param other The other timeline.
+     */
+    void addAll(Timeline other) {
+        sort();
+        other.sort();
+
+        long[] merged = new long[Math.max(INITIAL_CAPACITY, size + other.size)];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < size && j < other.size) {
+            merged[k++] = times[i] <= other.times[j] ? times[i++] : other.times[j++];
+        }
+        while (i < size) {
+            merged[k++] = times[i++];
+        }
+        while (j < other.size) {
+            merged[k++] = other.times[j++];
+        }
+
+        times = merged;
+        size = k;
+    }
+
+    /**
+     * Gets the number of timestamps.
+     *
+     * @return The size.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets a timestamp in time order.
+     *
+     * @param index The index.
+     * @return The timestamp in epoch milliseconds.
+     */
+    long get(int index) {
+        sort();
+        return times[index];
+    }
+
+    /**
+     * Finds the start of every window of windowMillis in which at least threshold timestamps
+     * occur, in one pass with two pointers. A window starts at a timestamp and includes all
+     * timestamps up to windowMillis after it; after an anomaly the search continues with the
+     * first timestamp outside its window, so anomalies do not overlap.
+     *
+     * @param windowMillis The length of the window.
+     * @param threshold The minimum number of timestamps in a window.
+     * @param counts Receives the number of timestamps in the window of each anomaly.
+     * @return The start timestamps of the anomalies, in time order.
+     */
+    long[] detect(long windowMillis, int threshold, LongList counts) {
+        sort();
+        LongList starts = new LongList();
+
+        int end = 0;
+        int i = 0;
+        while (i < size) {
+            long windowEnd = times[i] + windowMillis;
+
+            // The window end only moves forward, so each timestamp is passed once
+            if (end < i + 1) {
+                end = i + 1;
+            }
+            while (end < size && times[end] <= windowEnd) {
+                end++;
+            }
+
+            int count = end - i;
+            if (count >= threshold) {
+                starts.add(times[i]);
+                counts.add(count);
+                i = end;
+            } else {
+                i++;
+            }
+        }
+
+        return starts.toArray();
+    }
+
+    private void sort() {
+        if (unsorted) {
+            Arrays.sort(times, 0, size);
+            unsorted = false;
+        }
+    }
+
+    private int upperBound(int from, int to, long time) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] <= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Growable list of primitive longs.
+     */
+    static class LongList {
+        private long[] values = new long[8];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package analyzer.impl;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import analyzer.EntryAnalyzer;
+import analyzer.EntryField;
+import analyzer.LogAnalyzer;
+import analyzer.sketch.Hashing;
+import analyzer.sketch.SpaceSaving;
+import model.FileAwareLogEntry;
+import model.LogEntry;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Finds the most frequent messages of each level, e.g. the ERROR message that is spamming,
+ * and with log.analysis.top.messages.per.file=true also of each level per file.
+ * 
+ * The messages of each level are counted in a {@link SpaceSaving} summary of
+ * log.analysis.top.messages.capacity counters, so memory stays fixed however many distinct
+ * messages there are. Counters are looked up by the hash of the message and only the messages
+ * holding a counter are kept. A message occurring more often than total / capacity times is
+ * always found, and its count is reported with the most it may exceed the true count by; as
+ * long as a level has no more distinct messages than counters, the counts are exact. Summaries
+ * are merged across workers and chunks of the same file.
+ * 
+ * An instance is confined to the worker that owns it while it analyzes; only merging and
+ * reading results synchronize on the summaries.
+ */
+public class TopMessagesAnalyzer implements EntryAnalyzer {
+    
+    private final Map<String, SpaceSaving> levelMessages;
+    private final Map<String, Map<String, SpaceSaving>> fileLevelMessages;
+    private int topCount;
+    private int capacity;
+    private boolean perFile;
+    private boolean configured;
+    private String lastLevel;
+    private SpaceSaving lastSummary;
+    private String lastFileName;
+    private Map<String, SpaceSaving> lastFile;
+    
+    /**
+     * Constructor initializing the summary maps.
+     */
+    public TopMessagesAnalyzer() {
+        levelMessages = new HashMap<>();
+        fileLevelMessages = new HashMap<>();
+        topCount = 10;
+        capacity = 1000;
+    }
+    
+    @Override
+    public String getName() {
+        return "TOP_MESSAGES";
+    }
+    
+    @Override
+    public void analyze(List<LogEntry> logEntries, Properties properties) {
+        if (!configured) {
+            configure(properties);
+        }
+        
+        for (LogEntry entry : logEntries) {
+            analyzeEntry(entry);
+        }
+    }
+    
+    /**
+     * Reads the number of messages reported, the number of counters and whether files are
+     * reported separately.
+     * 
+     * @param properties Configuration properties.
+     */
+    @Override
+    public void configure(Properties properties) {
+        topCount = Math.max(1, Integer.parseInt(properties.getProperty("log.analysis.top.messages.count", "10").trim()));
+        capacity = Math.max(topCount, Integer.parseInt(properties.getProperty("log.analysis.top.messages.capacity", "1000").trim()));
+        perFile = Boolean.parseBoolean(properties.getProperty("log.analysis.top.messages.per.file", "false").trim());
+        configured = true;
+    }
+    
+    @Override
+    public Set<EntryField> getRequiredFields() {
+        return perFile ? EnumSet.of(EntryField.LEVEL, EntryField.MESSAGE, EntryField.FILE_NAME)
+                       : EnumSet.of(EntryField.LEVEL, EntryField.MESSAGE);
+    }
+    
+    @Override
+    public void analyzeEntry(LogEntry entry) {
+        String level = entry.getLevel();
+        String message = entry.getMessage();
+        long hash = Hashing.hash64(message);
+        
+        // Levels repeat from entry to entry, so the lookup is usually skipped
+        if (!level.equals(lastLevel)) {
+            lastSummary = levelMessages.computeIfAbsent(level.toLowerCase(), k -> new SpaceSaving(capacity));
+            lastLevel = level;
+        }
+        lastSummary.add(hash, message, 1);
+        
+        if (perFile) {
+            String fileName = entry instanceof FileAwareLogEntry ? ((FileAwareLogEntry) entry).getFileName() : "unknown.log";
+            if (!fileName.equals(lastFileName)) {
+                lastFile = fileLevelMessages.computeIfAbsent(fileName, k -> new HashMap<>());
+                lastFileName = fileName;
+            }
+            lastFile.computeIfAbsent(level.toLowerCase(), k -> new SpaceSaving(capacity)).add(hash, message, 1);
+        }
+    }
+    
+    @Override
+    public void finish(Properties properties) {
+        for (Map.Entry<String, SpaceSaving> entry : levelMessages.entrySet()) {
+            List<SpaceSaving.Estimate> top = entry.getValue().top(1);
+            if (!top.isEmpty()) {
+                System.out.println("TopMessagesAnalyzer: Most frequent " + entry.getKey() + " message: "
+                                   + top.get(0).getKey() + " (" + top.get(0).getCount() + ")");
+            }
+        }
+    }
+    
+    /**
+     * Returns the most frequent messages of each level, and of each level per file if enabled.
+     * 
+     * @return The messages with their counts and the most the counts may exceed the true counts by.
+     */
+    @Override
+    public JSONObject getResults() {
+        JSONObject result = new JSONObject();
+        
+        synchronized (levelMessages) {
+            result.put("levels", toJson(levelMessages));
+            
+            if (perFile) {
+                JSONObject files = new JSONObject();
+                for (Map.Entry<String, Map<String, SpaceSaving>> entry : new TreeMap<>(fileLevelMessages).entrySet()) {
+                    files.put(entry.getKey(), toJson(entry.getValue()));
+                }
+                result.put("files", files);
+            }
+        }
+        
+        return result;
+    }
+    
+    private JSONObject toJson(Map<String, SpaceSaving> summaries) {
+        JSONObject levels = new JSONObject();
+        for (Map.Entry<String, SpaceSaving> entry : new TreeMap<>(summaries).entrySet()) {
+            JSONArray messages = new JSONArray();
+            for (SpaceSaving.Estimate estimate : entry.getValue().top(topCount)) {
+                messages.put(new JSONObject().put("message", estimate.getKey())
+                                             .put("count", estimate.getCount())
+                                             .put("error", estimate.getError()));
+            }
+            levels.put(entry.getKey(), messages);
+        }
+        return levels;
+    }
+    
+    @Override
+    public void mergeResults(LogAnalyzer other) {
+        if (!(other instanceof TopMessagesAnalyzer)) {
+            return;
+        }
+        
+        TopMessagesAnalyzer otherAnalyzer = (TopMessagesAnalyzer) other;
+        
+        synchronized (levelMessages) {
+            mergeSummaries(levelMessages, otherAnalyzer.levelMessages);
+            for (Map.Entry<String, Map<String, SpaceSaving>> entry : otherAnalyzer.fileLevelMessages.entrySet()) {
+                mergeSummaries(fileLevelMessages.computeIfAbsent(entry.getKey(), k -> new HashMap<>()), entry.getValue());
+            }
+        }
+    }
+    
+    private void mergeSummaries(Map<String, SpaceSaving> target, Map<String, SpaceSaving> source) {
+        for (Map.Entry<String, SpaceSaving> entry : source.entrySet()) {
+            target.computeIfAbsent(entry.getKey(), k -> new SpaceSaving(entry.getValue().getCapacity())).merge(entry.getValue());
+        }
+    }
+    
+    /**
+     * Captures the settings and the counters of every summary.
+     * 
+     * @return The state as JSON.
+     */
+    @Override
+    public JSONObject snapshotState() {
+        synchronized (levelMessages) {
+            JSONObject files = new JSONObject();
+            for (Map.Entry<String, Map<String, SpaceSaving>> entry : fileLevelMessages.entrySet()) {
+                files.put(entry.getKey(), summariesToJson(entry.getValue()));
+            }
+            
+            return new JSONObject().put("top", topCount)
+                                   .put("capacity", capacity)
+                                   .put("per_file", perFile)
+                                   .put("levels", summariesToJson(levelMessages))
+                                   .put("files", files);
+        }
+    }
+    
+    private static JSONObject summariesToJson(Map<String, SpaceSaving> summaries) {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, SpaceSaving> entry : summaries.entrySet()) {
+            json.put(entry.getKey(), entry.getValue().toJson());
+        }
+        return json;
+    }
+    
+    /**
+     * Restores summaries captured by {@link #snapshotState()}, merging them with the
+     * summaries of this instance.
+     * 
+     * @param state The stored state.
+     */
+    @Override
+    public void restoreState(JSONObject state) {
+        synchronized (levelMessages) {
+            topCount = state.getInt("top");
+            capacity = state.getInt("capacity");
+            perFile = state.getBoolean("per_file");
+            configured = true;
+            
+            restoreSummaries(levelMessages, state.getJSONObject("levels"));
+            JSONObject files = state.getJSONObject("files");
+            for (String fileName : files.keySet()) {
+                restoreSummaries(fileLevelMessages.computeIfAbsent(fileName, k -> new HashMap<>()), files.getJSONObject(fileName));
+            }
+            lastLevel = null;
+            lastFileName = null;
+        }
+    }
+    
+    private void restoreSummaries(Map<String, SpaceSaving> target, JSONObject json) {
+        for (String level : json.keySet()) {
+            SpaceSaving restored = SpaceSaving.fromJson(json.getJSONObject(level));
+            target.computeIfAbsent(level, k -> new SpaceSaving(restored.getCapacity())).merge(restored);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,127 @@
+package analyzer.sketch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Bottom-k sample: a uniform sample of the distinct keys of a stream in fixed memory.
+ *
+ * The sample holds the k keys with the smallest hashes. A key's hash does not depend on how
+ * often it occurs, so rare keys are as likely to be sampled as frequent ones, which makes the
+ * sample a source of candidates for the least frequent keys. Samples are merged by keeping the
+ * k smallest hashes of both, and the k-th smallest hash gives an estimate of the number of
+ * distinct keys.
+ */
+public class BottomKSample {
+
+    private final int size;
+    private final TreeMap<Long, String> sample;
+
+    /**
+     * Constructor for creating an empty sample.
+     *
+     * @param size The number of keys kept.
+     */
+    public BottomKSample(int size) {
+        this.size = Math.max(1, size);
+        this.sample = new TreeMap<>(Long::compareUnsigned);
+    }
+
+    /**
+     * Offers a key to the sample.
+     *
+     * @param hash The 64-bit hash of the key (see {@link Hashing#hash64(String)}).
+     * @param key The key.
+     */
+    public void add(long hash, String key) {
+        if (sample.size() == size && Long.compareUnsigned(hash, sample.lastKey()) >= 0) {
+            return;
+        }
+        if (sample.putIfAbsent(hash, key) == null && sample.size() > size) {
+            sample.pollLastEntry();
+        }
+    }
+
+    /**
+     * Adds the keys of another sample.
+     *
+     * @param other The other sample.
+     */
+    public void merge(BottomKSample other) {
+        for (Map.Entry<Long, String> entry : other.sample.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Gets the sampled keys.
+     *
+     * @return The keys, in hash order.
+     */
+    public List<String> getKeys() {
+        return new ArrayList<>(sample.values());
+    }
+
+    /**
+     * Gets the sampled hashes.
+     *
+     * @return The hashes, in the order of {@link #getKeys()}.
+     */
+    public List<Long> getHashes() {
+        return new ArrayList<>(sample.keySet());
+    }
+
+    /**
+     * Gets the number of keys kept.
+     *
+     * @return The sample size.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Estimates the number of distinct keys offered; exact while the sample is not full.
+     *
+     * @return The estimate.
+     */
+    public long estimateDistinct() {
+        if (sample.size() < size) {
+            return sample.size();
+        }
+        // The k-th smallest of n uniform hashes lies near k / n of the hash range
+        double fraction = (sample.lastKey() >>> 11) / (double) (1L << 53);
+        return fraction > 0 ? Math.round((size - 1) / fraction) : sample.size();
+    }
+
+    /**
+     * Converts the sample to JSON.
+     *
+     * @return The size, hashes and keys.
+     */
+    public JSONObject toJson() {
+        return new JSONObject().put("size", size).put("hashes", new JSONArray(sample.keySet()))
+                               .put("keys", new JSONArray(sample.values()));
+    }
+
+    /**
+     * Reads a sample written by {@link #toJson()}.
+     *
+     * @param json The JSON.
+     * @return The sample.
+     */
+    public static BottomKSample fromJson(JSONObject json) {
+        BottomKSample sample = new BottomKSample(json.getInt("size"));
+        JSONArray hashes = json.getJSONArray("hashes");
+        JSONArray keys = json.getJSONArray("keys");
+        for (int i = 0; i < hashes.length(); i++) {
+            sample.add(hashes.getLong(i), keys.getString(i));
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,145 @@
+package analyzer.sketch;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Count-Min sketch: estimates the number of occurrences of any key in fixed memory.
+ *
+ * An estimate is never below the true count, and with probability 1 - delta it exceeds it by
+ * at most epsilon times the total of all counts; the sketch has ceil(e / epsilon) columns and
+ * ceil(ln(1 / delta)) rows. Sketches with the same dimensions are merged by adding them.
+ */
+public class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final long[] table;
+    private long total;
+
+    /**
+     * Constructor for creating an empty sketch.
+     *
+     * @param width The number of columns.
+     * @param depth The number of rows.
+     */
+    public CountMinSketch(int width, int depth) {
+        this.width = Math.max(1, width);
+        this.depth = Math.max(1, depth);
+        this.table = new long[this.width * this.depth];
+    }
+
+    /**
+     * Creates a sketch for the given error bounds.
+     *
+     * @param epsilon The maximum overestimate, relative to the total count.
+     * @param delta The probability of exceeding it.
+     * @return The sketch.
+     */
+    public static CountMinSketch forError(double epsilon, double delta) {
+        return new CountMinSketch((int) Math.ceil(Math.E / epsilon), (int) Math.ceil(Math.log(1 / delta)));
+    }
+
+    /**
+     * Adds occurrences of a key.
+     *
+     * @param hash The 64-bit hash of the key (see {@link Hashing#hash64(String)}).
+     * @param count The number of occurrences.
+     */
+    public void add(long hash, long count) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int row = 0; row < depth; row++) {
+            table[row * width + column(h1, h2, row)] += count;
+        }
+        total += count;
+    }
+
+    /**
+     * Estimates the number of occurrences of a key.
+     *
+     * @param hash The 64-bit hash of the key.
+     * @return The estimate, at least the true count.
+     */
+    public long estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, table[row * width + column(h1, h2, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Adds another sketch with the same dimensions.
+     *
+     * @param other The other sketch.
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge sketches of different dimensions");
+        }
+        for (int i = 0; i < table.length; i++) {
+            table[i] += other.table[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * Creates an empty sketch with the same dimensions, which can be merged with this one.
+     *
+     * @return The empty sketch.
+     */
+    public CountMinSketch emptyCopy() {
+        return new CountMinSketch(width, depth);
+    }
+
+    /**
+     * Gets the total of all counts added.
+     *
+     * @return The total.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the maximum overestimate of the sketch at its current total (with probability 1 - delta).
+     *
+     * @return The error bound.
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E / width * total);
+    }
+
+    /**
+     * Converts the sketch to JSON.
+     *
+     * @return The dimensions and counts.
+     */
+    public JSONObject toJson() {
+        return new JSONObject().put("width", width).put("depth", depth).put("total", total).put("table", new JSONArray(table));
+    }
+
+    /**
+     * Reads a sketch written by {@link #toJson()}.
+     *
+     * @param json The JSON.
+     * @return The sketch.
+     */
+    public static CountMinSketch fromJson(JSONObject json) {
+        CountMinSketch sketch = new CountMinSketch(json.getInt("width"), json.getInt("depth"));
+        JSONArray table = json.getJSONArray("table");
+        for (int i = 0; i < sketch.table.length; i++) {
+            sketch.table[i] = table.getLong(i);
+        }
+        sketch.total = json.getLong("total");
+        return sketch;
+    }
+
+    private int column(int h1, int h2, int row) {
+        // Double hashing gives independent enough columns per row from one 64-bit hash
+        return Math.floorMod(h1 + row * h2, width);
+    }
+}
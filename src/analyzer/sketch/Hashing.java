@@ -0,0 +1,42 @@
+package analyzer.sketch;
+
+/**
+ * 64-bit string hashing for the sketches. String.hashCode has too few bits and too many
+ * collisions for millions of keys, so FNV-1a over the characters is followed by the
+ * finalization step of MurmurHash3, which spreads the bits evenly.
+ */
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * Hashes a string to 64 bits.
+     *
+     * @param key The string.
+     * @return The hash.
+     */
+    public static long hash64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Spreads the bits of a value (the MurmurHash3 64-bit finalizer).
+     *
+     * @param value The value.
+     * @return The mixed value.
+     */
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,138 @@
+package analyzer.sketch;
+
+import java.util.Base64;
+
+/**
+ * HyperLogLog sketch: estimates the number of distinct keys in 2^precision bytes.
+ *
+ * The first precision bits of a key's 64-bit hash pick a register, which keeps the largest
+ * position of the first one bit seen in the remaining bits. The standard error of the
+ * estimate is about 1.04 / sqrt(2^precision), e.g. 1.6% for precision 12 (4 KB). Small
+ * cardinalities are estimated by linear counting over the empty registers, and with 64-bit
+ * hashes no correction for large cardinalities is needed. Sketches of the same precision are
+ * merged by taking the maximum of each register, so merging is exact: the result is the
+ * sketch of the union of both streams.
+ */
+public class HyperLogLog {
+
+    /** The smallest supported precision. */
+    public static final int MIN_PRECISION = 4;
+
+    /** The largest supported precision. */
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * Constructor for creating an empty sketch.
+     *
+     * @param precision The number of hash bits selecting a register, between
+     *                  {@link #MIN_PRECISION} and {@link #MAX_PRECISION}.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between " + MIN_PRECISION
+                                               + " and " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param hash The 64-bit hash of the key (see {@link Hashing#hash64(String)}).
+     */
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // The sentinel bit caps the rank when all remaining bits are zero
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Adds the keys of another sketch of the same precision.
+     *
+     * @param other The other sketch.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog sketches of different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Estimates the number of distinct keys added.
+     *
+     * @return The estimate.
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int empty = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                empty++;
+            }
+        }
+
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && empty > 0) {
+            estimate = m * Math.log((double) m / empty);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Gets the precision.
+     *
+     * @return The number of hash bits selecting a register.
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Converts the registers to a string.
+     *
+     * @return The registers, Base64 encoded.
+     */
+    public String encode() {
+        return Base64.getEncoder().encodeToString(registers);
+    }
+
+    /**
+     * Reads a sketch written by {@link #encode()}.
+     *
+     * @param encoded The encoded registers.
+     * @return The sketch.
+     */
+    public static HyperLogLog decode(String encoded) {
+        byte[] registers = Base64.getDecoder().decode(encoded);
+        HyperLogLog sketch = new HyperLogLog(Integer.numberOfTrailingZeros(registers.length));
+        System.arraycopy(registers, 0, sketch.registers, 0, registers.length);
+        return sketch;
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package analyzer.sketch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Space-Saving summary: finds the most frequent keys of a stream with a fixed number of counters.
+ *
+ * While there are free counters every new key gets one; after that a new key takes over the
+ * counter with the smallest count and inherits that count as its possible overestimate. Every
+ * key occurring more than total / capacity times is therefore tracked, and a tracked count
+ * exceeds the true count by at most its error, which is at most total / capacity. The counters
+ * are kept in a min-heap indexed by key, so an update takes O(log capacity).
+ *
+ * Counters are looked up by the 64-bit {@link Hashing#hash64(String)} of their key, and the key
+ * itself is only kept by the counter, so a stream of long, mostly distinct keys such as log
+ * messages holds no more than capacity of them.
+ *
+ * Summaries are merged as described by Agarwal et al. ("Mergeable summaries"): the counts of a
+ * key are added, a key missing from a full summary is counted with that summary's minimum, and
+ * the largest counters are kept.
+ */
+public class SpaceSaving {
+
+    private static final Comparator<Counter> LARGEST_FIRST =
+        Comparator.comparingLong((Counter counter) -> counter.count).reversed().thenComparing(counter -> counter.key);
+
+    private final int capacity;
+    private final Map<Long, Counter> counters;
+    private Counter[] heap;
+    private int size;
+    private long total;
+
+    /**
+     * Constructor for creating an empty summary.
+     *
+     * @param capacity The number of counters.
+     */
+    public SpaceSaving(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.counters = new HashMap<>();
+        this.heap = new Counter[Math.min(this.capacity, 16)];
+    }
+
+    /**
+     * Adds occurrences of a key.
+     *
+     * @param key The key.
+     * @param count The number of occurrences.
+     */
+    public void add(String key, long count) {
+        add(Hashing.hash64(key), key, count);
+    }
+
+    /**
+     * Adds occurrences of a key whose hash the caller has already computed.
+     *
+     * @param hash The hash of the key, {@link Hashing#hash64(String)}.
+     * @param key The key.
+     * @param count The number of occurrences.
+     */
+    public void add(long hash, String key, long count) {
+        total += count;
+
+        Counter counter = counters.get(hash);
+        if (counter != null) {
+            counter.count += count;
+            siftDown(counter.index);
+            return;
+        }
+
+        if (size < capacity) {
+            counter = new Counter(hash, key, count, 0);
+            counters.put(hash, counter);
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, Math.min(capacity, size * 2));
+            }
+            heap[size] = counter;
+            counter.index = size++;
+            siftUp(counter.index);
+            return;
+        }
+
+        // Take over the smallest counter
+        Counter smallest = heap[0];
+        counters.remove(smallest.hash);
+        smallest.hash = hash;
+        smallest.key = key;
+        smallest.error = smallest.count;
+        smallest.count += count;
+        counters.put(hash, smallest);
+        siftDown(0);
+    }
+
+    /**
+     * Merges another summary into this one.
+     *
+     * @param other The other summary.
+     */
+    public void merge(SpaceSaving other) {
+        long ownMinimum = size == capacity ? heap[0].count : 0;
+        long otherMinimum = other.size == other.capacity ? other.heap[0].count : 0;
+
+        Set<Long> hashes = new HashSet<>(counters.keySet());
+        hashes.addAll(other.counters.keySet());
+
+        List<Counter> merged = new ArrayList<>(hashes.size());
+        for (Long hash : hashes) {
+            Counter own = counters.get(hash);
+            Counter theirs = other.counters.get(hash);
+            long count = (own != null ? own.count : ownMinimum) + (theirs != null ? theirs.count : otherMinimum);
+            long error = (own != null ? own.error : ownMinimum) + (theirs != null ? theirs.error : otherMinimum);
+            merged.add(new Counter(hash, own != null ? own.key : theirs.key, count, error));
+        }
+
+        // Ties are broken by key, so the kept counters do not depend on the order of merging
+        merged.sort(LARGEST_FIRST);
+        long mergedTotal = total + other.total;
+        rebuild(merged.subList(0, Math.min(capacity, merged.size())));
+        total = mergedTotal;
+    }
+
+    /**
+     * Gets the tracked keys with the largest counts, ties in key order.
+     *
+     * @param limit The maximum number of keys.
+     * @return The keys with their counts and errors, largest count first.
+     */
+    public List<Estimate> top(int limit) {
+        List<Counter> sorted = new ArrayList<>(counters.values());
+        sorted.sort(LARGEST_FIRST);
+
+        List<Estimate> result = new ArrayList<>();
+        for (Counter counter : sorted.subList(0, Math.min(limit, sorted.size()))) {
+            result.add(new Estimate(counter.key, counter.count, counter.error));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the total of all counts added.
+     *
+     * @return The total.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the number of counters.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Converts the summary to JSON.
+     *
+     * @return The capacity, total and counters.
+     */
+    public JSONObject toJson() {
+        JSONArray keys = new JSONArray();
+        JSONArray counts = new JSONArray();
+        JSONArray errors = new JSONArray();
+        for (int i = 0; i < size; i++) {
+            keys.put(heap[i].key);
+            counts.put(heap[i].count);
+            errors.put(heap[i].error);
+        }
+        return new JSONObject().put("capacity", capacity).put("total", total)
+                               .put("keys", keys).put("counts", counts).put("errors", errors);
+    }
+
+    /**
+     * Reads a summary written by {@link #toJson()}.
+     *
+     * @param json The JSON.
+     * @return The summary.
+     */
+    public static SpaceSaving fromJson(JSONObject json) {
+        SpaceSaving summary = new SpaceSaving(json.getInt("capacity"));
+        JSONArray keys = json.getJSONArray("keys");
+        JSONArray counts = json.getJSONArray("counts");
+        JSONArray errors = json.getJSONArray("errors");
+
+        List<Counter> restored = new ArrayList<>();
+        for (int i = 0; i < keys.length(); i++) {
+            restored.add(new Counter(Hashing.hash64(keys.getString(i)), keys.getString(i), counts.getLong(i), errors.getLong(i)));
+        }
+        summary.rebuild(restored);
+        summary.total = json.getLong("total");
+        return summary;
+    }
+
+    private void rebuild(List<Counter> kept) {
+        counters.clear();
+        heap = new Counter[Math.max(Math.min(capacity, 16), kept.size())];
+        size = 0;
+        for (Counter counter : kept) {
+            counters.put(counter.hash, counter);
+            heap[size] = counter;
+            counter.index = size++;
+            siftUp(counter.index);
+        }
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            heap[index] = heap[parent];
+            heap[index].index = index;
+            index = parent;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            heap[index] = heap[child];
+            heap[index].index = index;
+            index = child;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    /**
+     * The count of a key, which may exceed the true count by up to the error.
+     */
+    public static class Estimate {
+        private final String key;
+        private final long count;
+        private final long error;
+
+        Estimate(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+
+    private static class Counter {
+        private long hash;
+        private String key;
+        private long count;
+        private long error;
+        private int index;
+
+        Counter(long hash, String key, long count, long error) {
+            this.hash = hash;
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
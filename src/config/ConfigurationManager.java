@@ -29,6 +29,65 @@ public class ConfigurationManager {
         defaultProperties.setProperty("log.analysis.anomalies.levels", "ERROR");
         defaultProperties.setProperty("log.analysis.anomalies.window", "30");
         defaultProperties.setProperty("log.analysis.anomalies.threshold", "2");
+        defaultProperties.setProperty("log.analysis.anomalies.reorder.window", "1000");
+        defaultProperties.setProperty("log.analysis.anomalies.scope", "file");
+        defaultProperties.setProperty("log.analysis.anomalies.bucket.seconds", "1");
+        defaultProperties.setProperty("log.analysis.sources.mode", "exact");
+        defaultProperties.setProperty("log.analysis.sources.top", "10");
+        defaultProperties.setProperty("log.analysis.sources.capacity", "1000");
+        defaultProperties.setProperty("log.analysis.sources.epsilon", "0.001");
+        defaultProperties.setProperty("log.analysis.sources.delta", "0.01");
+        defaultProperties.setProperty("log.analysis.sources.sample", "1000");
+        defaultProperties.setProperty("log.analysis.distinct.precision", "12");
+        defaultProperties.setProperty("log.analysis.histogram.interval", "1m");
+        defaultProperties.setProperty("log.analysis.histogram.max.buckets", "10000");
+        defaultProperties.setProperty("log.analysis.templates.depth", "4");
+        defaultProperties.setProperty("log.analysis.templates.similarity", "0.5");
+        defaultProperties.setProperty("log.analysis.templates.max.children", "100");
+        defaultProperties.setProperty("log.analysis.templates.cache.size", "10000");
+        defaultProperties.setProperty("log.analysis.templates.top", "50");
+        defaultProperties.setProperty("log.analysis.top.messages.count", "10");
+        defaultProperties.setProperty("log.analysis.top.messages.capacity", "1000");
+        defaultProperties.setProperty("log.analysis.top.messages.per.file", "false");
+        defaultProperties.setProperty("log.index.directory", "log_index");
+        defaultProperties.setProperty("log.index.buffer.postings", "1000000");
+        defaultProperties.setProperty("log.index.query.limit", "100");
+        defaultProperties.setProperty("log.analysis.fused", "false");
+        defaultProperties.setProperty("log.reader.mode", "stream");
+        defaultProperties.setProperty("log.format.default", "bracket");
+        defaultProperties.setProperty("log.format.select", "");
+        defaultProperties.setProperty("log.multiline.max.lines", "200");
+        defaultProperties.setProperty("log.multiline.max.chars", "65536");
+        defaultProperties.setProperty("log.chunk.size", "67108864");
+        defaultProperties.setProperty("log.batch.size", "1000");
+        defaultProperties.setProperty("log.decompress.readahead", "2");
+        defaultProperties.setProperty("log.decompress.queue.blocks", "16");
+        defaultProperties.setProperty("log.discovery.recursive", "true");
+        defaultProperties.setProperty("log.discovery.include", "");
+        defaultProperties.setProperty("log.discovery.exclude", "");
+        defaultProperties.setProperty("log.discovery.min.size", "0");
+        defaultProperties.setProperty("log.discovery.max.age.minutes", "0");
+        defaultProperties.setProperty("log.follow", "false");
+        defaultProperties.setProperty("log.follow.report.interval", "60");
+        defaultProperties.setProperty("log.follow.from.start", "true");
+        defaultProperties.setProperty("log.checkpoint.enabled", "false");
+        defaultProperties.setProperty("log.checkpoint.file", "log_checkpoint.json");
+        defaultProperties.setProperty("thread.mode", "fixed");
+        defaultProperties.setProperty("thread.cpu.limit", "0");
+        defaultProperties.setProperty("thread.io.limit", "256");
+        defaultProperties.setProperty("log.pipeline.readers", "2");
+        defaultProperties.setProperty("log.pipeline.parsers", "0");
+        defaultProperties.setProperty("log.pipeline.analyzers", "1");
+        defaultProperties.setProperty("log.pipeline.ring.batches", "8");
+        defaultProperties.setProperty("log.pipeline.stats.interval", "5");
+        defaultProperties.setProperty("distributed.workers.local", "2");
+        defaultProperties.setProperty("distributed.workers", "");
+        defaultProperties.setProperty("distributed.worker.connections", "2");
+        defaultProperties.setProperty("distributed.task.retries", "3");
+        defaultProperties.setProperty("distributed.reconnect.attempts", "3");
+        defaultProperties.setProperty("distributed.task.timeout", "600");
+        defaultProperties.setProperty("distributed.worker.port", "7070");
+        defaultProperties.setProperty("distributed.secret", "");
     }
     
     /**
@@ -0,0 +1,190 @@
+package index;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the postings of the records one worker reads and writes them out as index segments.
+ *
+ * The terms of a record are the lowercased words of its message (runs of letters, digits and
+ * underscores), "level:" followed by its level and "source:" followed by its source. Postings
+ * are buffered in memory until the configured number is reached and then written as a
+ * segment, so a worker reading a huge file holds a bounded amount of postings at a time.
+ *
+ * A builder belongs to one worker and is not thread-safe.
+ */
+public class IndexBuilder {
+
+    private final Path directory;
+    private final Map<String, Integer> fileNumbers;
+    private final List<String> files;
+    private final Map<String, PostingBuffer> postings;
+    private final List<String> terms;
+    private long bufferedPostings;
+
+    /**
+     * Constructor for creating an empty builder.
+     *
+     * @param directory The directory segments are written to.
+     */
+    public IndexBuilder(Path directory) {
+        this.directory = directory;
+        this.fileNumbers = new HashMap<>();
+        this.files = new ArrayList<>();
+        this.postings = new HashMap<>();
+        this.terms = new ArrayList<>();
+    }
+
+    /**
+     * Splits text into lowercased words of letters, digits and underscores.
+     *
+     * @param text The text.
+     * @param words Receives the words.
+     */
+    public static void words(String text, List<String> words) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isWordChar(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && isWordChar(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * Gets the term under which a level is indexed.
+     *
+     * @param level The level.
+     * @return The term.
+     */
+    public static String levelTerm(String level) {
+        return "level:" + level.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the term under which a source is indexed.
+     *
+     * @param source The source.
+     * @return The term.
+     */
+    public static String sourceTerm(String source) {
+        return "source:" + source.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adds a record.
+     *
+     * @param fileName The name of the file, relative to log.directory.
+     * @param offset The byte offset at which the record starts.
+     * @param level The level of the record.
+     * @param source The source of the record.
+     * @param message The message of the record.
+     */
+    public void add(String fileName, long offset, String level, String source, String message) {
+        Integer file = fileNumbers.get(fileName);
+        if (file == null) {
+            file = files.size();
+            fileNumbers.put(fileName, file);
+            files.add(fileName);
+        }
+        long posting = IndexSegment.posting(file, offset);
+
+        terms.clear();
+        words(message, terms);
+        terms.add(levelTerm(level));
+        terms.add(sourceTerm(source));
+        for (String term : terms) {
+            PostingBuffer buffer = postings.get(term);
+            if (buffer == null) {
+                buffer = new PostingBuffer();
+                postings.put(term, buffer);
+            }
+            // A word repeated within the record is only indexed once
+            if (buffer.add(posting)) {
+                bufferedPostings++;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of postings buffered since the last segment was written.
+     *
+     * @return The number of postings.
+     */
+    public long getBufferedPostings() {
+        return bufferedPostings;
+    }
+
+    /**
+     * Writes the buffered postings as a new segment and empties the buffer.
+     *
+     * @return The segment file, or null if nothing was buffered.
+     * @throws IOException If the segment cannot be written.
+     */
+    public Path flush() throws IOException {
+        if (postings.isEmpty()) {
+            return null;
+        }
+
+        Files.createDirectories(directory);
+        Path segment = Files.createTempFile(directory, "segment-", ".seg");
+
+        List<Map.Entry<String, long[]>> sorted = new ArrayList<>(postings.size());
+        for (Map.Entry<String, PostingBuffer> entry : new TreeMap<>(postings).entrySet()) {
+            sorted.add(new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue().toSortedArray()));
+        }
+        IndexSegment.write(segment, files, sorted);
+
+        postings.clear();
+        fileNumbers.clear();
+        files.clear();
+        bufferedPostings = 0;
+        return segment;
+    }
+
+    /**
+     * Growable array of the postings of one term.
+     */
+    private static class PostingBuffer {
+        private long[] values = new long[4];
+        private int size;
+
+        boolean add(long posting) {
+            if (size > 0 && values[size - 1] == posting) {
+                return false;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = posting;
+            return true;
+        }
+
+        long[] toSortedArray() {
+            // Records of a file arrive in order, but chunks and files may interleave
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return IndexMerger.unique(sorted, sorted.length);
+        }
+    }
+}
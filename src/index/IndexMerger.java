@@ -0,0 +1,142 @@
+package index;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Merges index segments into one index file.
+ *
+ * The file tables of the segments are joined into one table and the file numbers of their
+ * postings are renumbered accordingly. Terms are merged in sorted order and only the postings
+ * of one term are held in memory at a time, so merging takes memory in proportion to the
+ * dictionaries and the largest postings list, not to the whole index. Postings present in
+ * several segments, e.g. of records read again after a checkpoint, are kept once.
+ */
+public class IndexMerger {
+
+    private IndexMerger() {
+    }
+
+    /**
+     * Merges index files. The output may be one of the inputs.
+     *
+     * @param inputs The index files to merge.
+     * @param output The merged index file.
+     * @return The number of terms, postings and files of the merged index.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static long[] merge(List<Path> inputs, Path output) throws IOException {
+        List<IndexSegment> segments = new ArrayList<>();
+        try {
+            for (Path input : inputs) {
+                segments.add(IndexSegment.open(input));
+            }
+
+            // Global file table in name order, so that the index does not depend on the order of the inputs
+            TreeMap<String, Integer> fileNumbers = new TreeMap<>();
+            for (IndexSegment segment : segments) {
+                for (String file : segment.getFiles()) {
+                    fileNumbers.put(file, 0);
+                }
+            }
+            int number = 0;
+            for (Map.Entry<String, Integer> entry : fileNumbers.entrySet()) {
+                entry.setValue(number++);
+            }
+
+            // For each segment the global number of each of its files
+            int[][] fileMaps = new int[segments.size()][];
+            for (int s = 0; s < segments.size(); s++) {
+                List<String> files = segments.get(s).getFiles();
+                fileMaps[s] = new int[files.size()];
+                for (int f = 0; f < files.size(); f++) {
+                    fileMaps[s][f] = fileNumbers.get(files.get(f));
+                }
+            }
+
+            TreeSet<String> terms = new TreeSet<>();
+            for (IndexSegment segment : segments) {
+                for (String term : segment.getTerms()) {
+                    terms.add(term);
+                }
+            }
+
+            // Postings are merged term by term while the output is written
+            Iterable<Map.Entry<String, long[]>> merged = () -> new Iterator<Map.Entry<String, long[]>>() {
+                private final Iterator<String> termIterator = terms.iterator();
+
+                @Override
+                public boolean hasNext() {
+                    return termIterator.hasNext();
+                }
+
+                @Override
+                public Map.Entry<String, long[]> next() {
+                    String term = termIterator.next();
+                    try {
+                        return new AbstractMap.SimpleEntry<>(term, mergePostings(segments, fileMaps, term));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+
+            long postings;
+            try {
+                postings = IndexSegment.write(output, new ArrayList<>(fileNumbers.keySet()), merged);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            return new long[] {terms.size(), postings, fileNumbers.size()};
+        } finally {
+            for (IndexSegment segment : segments) {
+                segment.close();
+            }
+        }
+    }
+
+    private static long[] mergePostings(List<IndexSegment> segments, int[][] fileMaps, String term) throws IOException {
+        int total = 0;
+        for (IndexSegment segment : segments) {
+            total += segment.getPostingCount(term);
+        }
+
+        long[] merged = new long[total];
+        int size = 0;
+        for (int s = 0; s < segments.size(); s++) {
+            for (long posting : segments.get(s).read(term)) {
+                merged[size++] = IndexSegment.posting(fileMaps[s][IndexSegment.file(posting)], IndexSegment.offset(posting));
+            }
+        }
+
+        Arrays.sort(merged, 0, size);
+        return unique(merged, size);
+    }
+
+    /**
+     * Removes duplicates from the start of a sorted array.
+     *
+     * @param sorted The sorted array, which is modified.
+     * @param size The number of values to consider.
+     * @return The distinct values.
+     */
+    static long[] unique(long[] sorted, int size) {
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || sorted[i] != sorted[distinct - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+    }
+}
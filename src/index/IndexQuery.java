@@ -0,0 +1,423 @@
+package index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Answers term and boolean queries against the index written by the BUILD_INDEX analyzer
+ * and prints the matching records, read by seeking straight to their offsets.
+ *
+ * A query is a list of terms, implicitly joined with AND, in which AND, OR, NOT (or a leading
+ * '-'), and parentheses may be used, e.g.
+ *
+ * <pre>
+ * level:error database timeout
+ * (source:auth OR source:session) -level:info
+ * </pre>
+ *
+ * Words are matched case-insensitively against the words of the messages, and level:x and
+ * source:x against the level and source of the records. A word with punctuation, such as
+ * "conn-pool", matches records containing all of its words.
+ */
+public class IndexQuery {
+
+    private static final String LEVEL_PREFIX = "level:";
+    private static final String SOURCE_PREFIX = "source:";
+
+    private final Path indexFile;
+    private final Path logDirectory;
+    private final int limit;
+
+    /**
+     * Constructor reading the index location and the result limit from the configuration.
+     *
+     * @param config Configuration properties.
+     */
+    public IndexQuery(Properties config) {
+        this.indexFile = Paths.get(config.getProperty("log.index.directory", "log_index").trim(), "index.idx");
+        this.logDirectory = Paths.get(config.getProperty("log.directory", "logs"));
+        this.limit = Integer.parseInt(config.getProperty("log.index.query.limit", "100").trim());
+    }
+
+    /**
+     * Runs a query and prints the first matching records and the number of matches.
+     *
+     * @param expression The query.
+     * @throws IOException If the index or a log file cannot be read.
+     */
+    public void run(String expression) throws IOException {
+        if (!Files.exists(indexFile)) {
+            System.out.println("No index at " + indexFile + ", run with BUILD_INDEX in log.analysis first");
+            return;
+        }
+
+        Query query;
+        try {
+            query = parse(expression);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid query: " + e.getMessage());
+            return;
+        }
+
+        long start = System.nanoTime();
+        try (IndexSegment index = IndexSegment.open(indexFile)) {
+            long[] postings = query.evaluate(index);
+
+            Map<Integer, FileChannel> channels = new HashMap<>();
+            try {
+                for (int i = 0; i < Math.min(limit, postings.length); i++) {
+                    int file = IndexSegment.file(postings[i]);
+                    long offset = IndexSegment.offset(postings[i]);
+                    String fileName = index.getFiles().get(file);
+
+                    FileChannel channel = channels.get(file);
+                    if (channel == null) {
+                        channel = FileChannel.open(logDirectory.resolve(fileName), StandardOpenOption.READ);
+                        channels.put(file, channel);
+                    }
+                    System.out.println(fileName + ":" + offset + ": " + readLine(channel, offset));
+                }
+            } finally {
+                for (FileChannel channel : channels.values()) {
+                    channel.close();
+                }
+            }
+
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            System.out.println(postings.length + " matching records" + (postings.length > limit ? ", showing the first " + limit : "")
+                               + " (" + elapsed + " ms)");
+        }
+    }
+
+    /**
+     * Finds the records matching a query.
+     *
+     * @param index The index.
+     * @param expression The query.
+     * @return The sorted postings of the matching records.
+     * @throws IOException If the index cannot be read.
+     */
+    public static long[] search(IndexSegment index, String expression) throws IOException {
+        return parse(expression).evaluate(index);
+    }
+
+    /**
+     * Reads the line starting at an offset, without its line terminator.
+     */
+    private static String readLine(FileChannel channel, long offset) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = offset;
+
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            int end = 0;
+            while (end < read && buffer.get(end) != '\n') {
+                end++;
+            }
+            line.write(buffer.array(), 0, end);
+            if (end < read) {
+                break;
+            }
+            position += read;
+        }
+
+        String text = new String(line.toByteArray(), Charset.defaultCharset());
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    /**
+     * Parses a query.
+     *
+     * @param expression The query.
+     * @return The parsed query.
+     */
+    static Query parse(String expression) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (char c : expression.toCharArray()) {
+            if (Character.isWhitespace(c) || c == '(' || c == ')') {
+                if (token.length() > 0) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                }
+                if (!Character.isWhitespace(c)) {
+                    tokens.add(String.valueOf(c));
+                }
+            } else {
+                token.append(c);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+
+        Parser parser = new Parser(tokens);
+        Query query = parser.parseOr();
+        if (parser.position < tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + tokens.get(parser.position) + "' in query");
+        }
+        return query;
+    }
+
+    /**
+     * Recursive descent parser; OR binds weaker than AND, which binds weaker than NOT.
+     */
+    private static class Parser {
+        private final List<String> tokens;
+        private int position;
+
+        Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        Query parseOr() {
+            List<Query> alternatives = new ArrayList<>();
+            alternatives.add(parseAnd());
+            while (position < tokens.size() && tokens.get(position).equals("OR")) {
+                position++;
+                alternatives.add(parseAnd());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : new Or(alternatives);
+        }
+
+        Query parseAnd() {
+            And and = new And();
+            do {
+                if (position < tokens.size() && tokens.get(position).equals("AND")) {
+                    position++;
+                }
+                Query operand = parseNot();
+                if (operand instanceof Not) {
+                    and.excluded.add(((Not) operand).query);
+                } else {
+                    and.included.add(operand);
+                }
+            } while (position < tokens.size() && !tokens.get(position).equals("OR") && !tokens.get(position).equals(")"));
+
+            return and.included.size() == 1 && and.excluded.isEmpty() ? and.included.get(0) : and;
+        }
+
+        Query parseNot() {
+            String token = next();
+            if (token.equals("NOT")) {
+                return new Not(parseNot());
+            }
+            if (token.startsWith("-") && token.length() > 1) {
+                tokens.set(--position, token.substring(1));
+                return new Not(parseNot());
+            }
+            if (token.equals("(")) {
+                Query query = parseOr();
+                if (!next().equals(")")) {
+                    throw new IllegalArgumentException("Missing ')' in query");
+                }
+                return query;
+            }
+            return term(token);
+        }
+
+        private String next() {
+            if (position >= tokens.size()) {
+                throw new IllegalArgumentException("Unexpected end of query");
+            }
+            return tokens.get(position++);
+        }
+
+        private static Query term(String token) {
+            String lower = token.toLowerCase();
+            if (lower.startsWith(LEVEL_PREFIX)) {
+                return new Term(IndexBuilder.levelTerm(token.substring(LEVEL_PREFIX.length())));
+            }
+            if (lower.startsWith(SOURCE_PREFIX)) {
+                return new Term(IndexBuilder.sourceTerm(token.substring(SOURCE_PREFIX.length())));
+            }
+
+            List<String> words = new ArrayList<>();
+            IndexBuilder.words(token, words);
+            if (words.isEmpty()) {
+                throw new IllegalArgumentException("No words in query term '" + token + "'");
+            }
+            And and = new And();
+            for (String word : words) {
+                and.included.add(new Term(word));
+            }
+            return words.size() == 1 ? and.included.get(0) : and;
+        }
+    }
+
+    /**
+     * A parsed query, evaluating to the sorted postings of the matching records.
+     */
+    abstract static class Query {
+        abstract long[] evaluate(IndexSegment index) throws IOException;
+    }
+
+    private static class Term extends Query {
+        private final String term;
+
+        Term(String term) {
+            this.term = term;
+        }
+
+        @Override
+        long[] evaluate(IndexSegment index) throws IOException {
+            return index.read(term);
+        }
+    }
+
+    private static class And extends Query {
+        private final List<Query> included = new ArrayList<>();
+        private final List<Query> excluded = new ArrayList<>();
+
+        @Override
+        long[] evaluate(IndexSegment index) throws IOException {
+            long[] result;
+            if (included.isEmpty()) {
+                result = all(index);
+            } else {
+                // Intersecting the shortest lists first keeps the intermediate results small
+                List<long[]> lists = new ArrayList<>();
+                for (Query query : included) {
+                    lists.add(query.evaluate(index));
+                }
+                lists.sort(Comparator.comparingInt(list -> list.length));
+                result = lists.get(0);
+                for (int i = 1; i < lists.size() && result.length > 0; i++) {
+                    result = intersect(result, lists.get(i));
+                }
+            }
+
+            for (Query query : excluded) {
+                if (result.length == 0) {
+                    break;
+                }
+                result = subtract(result, query.evaluate(index));
+            }
+            return result;
+        }
+    }
+
+    private static class Or extends Query {
+        private final List<Query> alternatives;
+
+        Or(List<Query> alternatives) {
+            this.alternatives = alternatives;
+        }
+
+        @Override
+        long[] evaluate(IndexSegment index) throws IOException {
+            long[] result = new long[0];
+            for (Query query : alternatives) {
+                result = union(result, query.evaluate(index));
+            }
+            return result;
+        }
+    }
+
+    private static class Not extends Query {
+        private final Query query;
+
+        Not(Query query) {
+            this.query = query;
+        }
+
+        @Override
+        long[] evaluate(IndexSegment index) throws IOException {
+            return subtract(all(index), query.evaluate(index));
+        }
+    }
+
+    /**
+     * Gets all records, as every record is indexed under exactly one level.
+     */
+    private static long[] all(IndexSegment index) throws IOException {
+        long[] result = new long[0];
+        for (String term : index.getTerms()) {
+            if (term.startsWith(LEVEL_PREFIX)) {
+                result = union(result, index.read(term));
+            }
+        }
+        return result;
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < a.length && j < b.length; i++) {
+            // Skip ahead in the longer list by binary search when the lists differ much in length
+            if (b.length > 8 * a.length) {
+                int found = Arrays.binarySearch(b, j, b.length, a[i]);
+                if (found >= 0) {
+                    result[size++] = a[i];
+                    j = found + 1;
+                } else {
+                    j = -found - 1;
+                }
+            } else {
+                while (j < b.length && b[j] < a[i]) {
+                    j++;
+                }
+                if (j < b.length && b[j] == a[i]) {
+                    result[size++] = a[i];
+                    j++;
+                }
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static long[] union(long[] a, long[] b) {
+        long[] result = new long[a.length + b.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            long next;
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                next = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                next = b[j++];
+            } else {
+                next = a[i++];
+                j++;
+            }
+            result[size++] = next;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static long[] subtract(long[] a, long[] b) {
+        long[] result = new long[a.length];
+        int size = 0;
+        int j = 0;
+        for (long value : a) {
+            while (j < b.length && b[j] < value) {
+                j++;
+            }
+            if (j >= b.length || b[j] != value) {
+                result[size++] = value;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+}
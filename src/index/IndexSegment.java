@@ -0,0 +1,302 @@
+package index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An inverted index file: for every term, the sorted postings of the records containing it.
+ *
+ * A posting identifies a record by the number of its file in the file table and the byte
+ * offset at which the record starts, packed into one long (see {@link #posting(int, long)}).
+ * The postings of a term are stored as variable-length deltas, which takes one or two bytes
+ * per posting for dense terms. The file layout is
+ *
+ * <pre>
+ * magic, version, file table (count, names), postings blocks,
+ * dictionary (count, then term, position, posting count and length per term), dictionary position
+ * </pre>
+ *
+ * so that opening a file reads the file table and the dictionary, and a term's postings are
+ * then read with a single positioned read. Segments written by the workers during a run and
+ * the merged index have the same format.
+ */
+public class IndexSegment implements Closeable {
+
+    private static final int MAGIC = 0x4c4f4749;
+    private static final int VERSION = 1;
+
+    /** The number of low bits of a posting holding the record offset. */
+    static final int OFFSET_BITS = 40;
+
+    /** The largest record offset a posting can hold (1 TB). */
+    public static final long MAX_OFFSET = (1L << OFFSET_BITS) - 1;
+
+    private final FileChannel channel;
+    private final List<String> files;
+    private final TreeMap<String, long[]> dictionary;
+
+    private IndexSegment(FileChannel channel, List<String> files, TreeMap<String, long[]> dictionary) {
+        this.channel = channel;
+        this.files = files;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Packs a file number and a record offset into a posting.
+     *
+     * @param file The number of the file in the file table.
+     * @param offset The byte offset of the record.
+     * @return The posting.
+     */
+    public static long posting(int file, long offset) {
+        return ((long) file << OFFSET_BITS) | offset;
+    }
+
+    /**
+     * Gets the file number of a posting.
+     *
+     * @param posting The posting.
+     * @return The number of the file in the file table.
+     */
+    public static int file(long posting) {
+        return (int) (posting >>> OFFSET_BITS);
+    }
+
+    /**
+     * Gets the record offset of a posting.
+     *
+     * @param posting The posting.
+     * @return The byte offset of the record.
+     */
+    public static long offset(long posting) {
+        return posting & MAX_OFFSET;
+    }
+
+    /**
+     * Opens an index file, reading its file table and dictionary.
+     *
+     * @param path The file.
+     * @return The open segment, which must be closed.
+     * @throws IOException If the file cannot be read or is not an index file.
+     */
+    public static IndexSegment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            DataInputStream header = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+                throw new IOException("Not an index file: " + path);
+            }
+            int fileCount = header.readInt();
+            List<String> files = new ArrayList<>(fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                files.add(header.readUTF());
+            }
+
+            ByteBuffer trailer = ByteBuffer.allocate(Long.BYTES);
+            channel.read(trailer, channel.size() - Long.BYTES);
+            channel.position(trailer.flip().getLong());
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            int termCount = in.readInt();
+            TreeMap<String, long[]> dictionary = new TreeMap<>();
+            for (int i = 0; i < termCount; i++) {
+                String term = in.readUTF();
+                dictionary.put(term, new long[] {in.readLong(), in.readInt(), in.readInt()});
+            }
+
+            return new IndexSegment(channel, files, dictionary);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the file table.
+     *
+     * @return The file names, by file number.
+     */
+    public List<String> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Gets the terms, in sorted order.
+     *
+     * @return The terms.
+     */
+    public Iterable<String> getTerms() {
+        return dictionary.keySet();
+    }
+
+    /**
+     * Gets the number of terms.
+     *
+     * @return The term count.
+     */
+    public int getTermCount() {
+        return dictionary.size();
+    }
+
+    /**
+     * Gets the number of postings of a term without reading them.
+     *
+     * @param term The term.
+     * @return The posting count, 0 if the term does not occur.
+     */
+    public int getPostingCount(String term) {
+        long[] entry = dictionary.get(term);
+        return entry == null ? 0 : (int) entry[1];
+    }
+
+    /**
+     * Reads the postings of a term.
+     *
+     * @param term The term.
+     * @return The sorted postings, empty if the term does not occur.
+     * @throws IOException If the postings cannot be read.
+     */
+    public long[] read(String term) throws IOException {
+        long[] entry = dictionary.get(term);
+        if (entry == null) {
+            return new long[0];
+        }
+
+        ByteBuffer block = ByteBuffer.allocate((int) entry[2]);
+        long position = entry[0];
+        while (block.hasRemaining()) {
+            int read = channel.read(block, position + block.position());
+            if (read < 0) {
+                throw new IOException("Truncated index file");
+            }
+        }
+        block.flip();
+
+        long[] postings = new long[(int) entry[1]];
+        long previous = 0;
+        for (int i = 0; i < postings.length; i++) {
+            previous += readVarLong(block);
+            postings[i] = previous;
+        }
+        return postings;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes an index file. The postings of each term must be sorted and free of duplicates.
+     * The file is written next to the target and moved into place when complete.
+     *
+     * @param path The file to write.
+     * @param files The file table.
+     * @param postings The postings by term, in sorted term order.
+     * @return The number of postings written.
+     * @throws IOException If the file cannot be written.
+     */
+    public static long write(Path path, List<String> files, Iterable<Map.Entry<String, long[]>> postings) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        long postingCount = 0;
+
+        try (CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+             DataOutputStream out = new DataOutputStream(counter)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(files.size());
+            for (String file : files) {
+                out.writeUTF(file);
+            }
+
+            // Postings blocks first, remembering where each one starts
+            List<String> terms = new ArrayList<>();
+            List<long[]> entries = new ArrayList<>();
+            for (Map.Entry<String, long[]> entry : postings) {
+                long position = counter.count;
+                long previous = 0;
+                for (long posting : entry.getValue()) {
+                    writeVarLong(out, posting - previous);
+                    previous = posting;
+                }
+                terms.add(entry.getKey());
+                entries.add(new long[] {position, entry.getValue().length, counter.count - position});
+                postingCount += entry.getValue().length;
+            }
+
+            long dictionaryPosition = counter.count;
+            out.writeInt(terms.size());
+            for (int i = 0; i < terms.size(); i++) {
+                out.writeUTF(terms.get(i));
+                out.writeLong(entries.get(i)[0]);
+                out.writeInt((int) entries.get(i)[1]);
+                out.writeInt((int) entries.get(i)[2]);
+            }
+            out.writeLong(dictionaryPosition);
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        return postingCount;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Output stream counting the bytes written, since DataOutputStream.size() stops at 2 GB.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
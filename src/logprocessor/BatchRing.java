@@ -0,0 +1,213 @@
+package logprocessor;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounded ring of preallocated batches connecting two pipeline stages.
+ *
+ * A producer claims an empty batch, fills it and publishes it; a consumer takes published
+ * batches in order and releases them after use, which makes them available to the producer
+ * again. No batches are allocated after construction, so the memory of a stage is bounded by
+ * the capacity, and a producer that runs ahead blocks in {@link #claim()} until the consumer
+ * catches up (backpressure). The depth and wait counters are kept for tuning. When a stage
+ * fails, {@link #abort()} wakes both sides, so that the other stages stop instead of waiting
+ * for batches that will never come.
+ *
+ * @param <T> The batch type.
+ */
+class BatchRing<T> {
+
+    private final String name;
+    private final Object[] free;
+    private final Object[] published;
+    private final ReentrantLock lock;
+    private final Condition batchFree;
+    private final Condition batchPublished;
+
+    private int freeCount;
+    private int publishedHead;
+    private int publishedCount;
+    private boolean closed;
+    private boolean aborted;
+
+    private long publishCount;
+    private long producerWaits;
+    private long consumerWaits;
+    private int maxDepth;
+
+    /**
+     * Constructor for creating a ring.
+     *
+     * @param name The name of the ring, used in statistics.
+     * @param capacity The number of batches.
+     * @param factory Creates the batches.
+     */
+    BatchRing(String name, int capacity, Supplier<T> factory) {
+        this.name = name;
+        this.free = new Object[capacity];
+        this.published = new Object[capacity];
+        this.lock = new ReentrantLock();
+        this.batchFree = lock.newCondition();
+        this.batchPublished = lock.newCondition();
+
+        for (int i = 0; i < capacity; i++) {
+            free[i] = factory.get();
+        }
+        this.freeCount = capacity;
+    }
+
+    /**
+     * Takes an empty batch to fill, waiting while all batches are in use.
+     *
+     * @return The batch.
+     * @throws InterruptedException If interrupted while waiting.
+     * @throws CancellationException If the ring has been aborted.
+     */
+    @SuppressWarnings("unchecked")
+    T claim() throws InterruptedException {
+        lock.lock();
+        try {
+            if (freeCount == 0 && !aborted) {
+                producerWaits++;
+                do {
+                    batchFree.await();
+                } while (freeCount == 0 && !aborted);
+            }
+            if (aborted) {
+                throw new CancellationException("Ring " + name + " has been aborted");
+            }
+            T batch = (T) free[--freeCount];
+            free[freeCount] = null;
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Passes a filled batch to the consumers.
+     *
+     * @param batch A batch obtained from {@link #claim()}.
+     */
+    void publish(T batch) {
+        lock.lock();
+        try {
+            published[(publishedHead + publishedCount) % published.length] = batch;
+            publishedCount++;
+            publishCount++;
+            maxDepth = Math.max(maxDepth, publishedCount);
+            batchPublished.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the oldest published batch, waiting while there is none.
+     *
+     * @return The batch, or null once the ring is closed and drained or has been aborted.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    @SuppressWarnings("unchecked")
+    T take() throws InterruptedException {
+        lock.lock();
+        try {
+            if (publishedCount == 0 && !closed) {
+                consumerWaits++;
+                do {
+                    batchPublished.await();
+                } while (publishedCount == 0 && !closed);
+            }
+            if (publishedCount == 0 || aborted) {
+                return null;
+            }
+
+            T batch = (T) published[publishedHead];
+            published[publishedHead] = null;
+            publishedHead = (publishedHead + 1) % published.length;
+            publishedCount--;
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a consumed batch for reuse.
+     *
+     * @param batch A batch obtained from {@link #take()}.
+     */
+    void release(T batch) {
+        lock.lock();
+        try {
+            free[freeCount++] = batch;
+            batchFree.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tells the consumers that no more batches will be published.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            batchPublished.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops both sides after a failed stage: waiting and later producers get a
+     * CancellationException, consumers get no more batches.
+     */
+    void abort() {
+        lock.lock();
+        try {
+            aborted = true;
+            closed = true;
+            batchFree.signalAll();
+            batchPublished.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of published batches waiting for a consumer.
+     *
+     * @return The current depth.
+     */
+    int getDepth() {
+        lock.lock();
+        try {
+            return publishedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Describes the ring for tuning: depth, capacity and how often each side had to wait.
+     * A ring that is usually full means the consumer stage is the bottleneck; one that is
+     * usually empty means the producer stage is.
+     *
+     * @return The statistics.
+     */
+    String describe() {
+        lock.lock();
+        try {
+            return name + ": depth " + publishedCount + "/" + published.length + ", max " + maxDepth
+                   + ", batches " + publishCount + ", producer waits " + producerWaits
+                   + ", consumer waits " + consumerWaits;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
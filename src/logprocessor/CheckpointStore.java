@@ -0,0 +1,381 @@
+package logprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import analyzer.LogAnalyzer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import parser.format.LogFormatRegistry;
+
+/**
+ * Persists how far each log file has been analyzed, so that the next run only reads the data
+ * appended since, together with a snapshot of the mergeable state of every analyzer.
+ *
+ * For every rotation group the store records, per segment, a fingerprint of the first bytes of
+ * its content and the offset up to which it has been analyzed. Segments are recognized by
+ * content rather than by name, so a live file that has since been rotated to NAME.log.1 or
+ * compressed to NAME.log.1.gz is still read from where the previous run stopped.
+ *
+ * Logs are expected to be append-only. If analyzed data is gone (a segment was deleted or
+ * truncated) or the analysis settings changed, the checkpoint is discarded and all files are
+ * analyzed again. The last record of each live file is analyzed but never committed, since it
+ * may still grow; it is read again by the next run.
+ */
+public class CheckpointStore {
+
+    private static final int VERSION = 1;
+    private static final int FINGERPRINT_BYTES = 4096;
+
+    // Settings that change which entries are produced or how they are analyzed
+    private static final String[] SETTING_PREFIXES = {
+        "log.directory", "log.analysis", "log.format", "log.multiline", "log.discovery"
+    };
+
+    private final Properties config;
+    private final LogFormatRegistry formats;
+    private final File checkpointFile;
+    private final Path logDirectory;
+    private final JSONObject pendingGroups;
+    private JSONObject previousGroups;
+    private JSONObject previousAnalyzers;
+
+    /**
+     * Constructor for creating a checkpoint store.
+     *
+     * @param config Configuration properties.
+     * @param formats The format registry, used to find record starts.
+     */
+    public CheckpointStore(Properties config, LogFormatRegistry formats) {
+        this.config = config;
+        this.formats = formats;
+        this.checkpointFile = new File(config.getProperty("log.checkpoint.file", "log_checkpoint.json").trim());
+        this.logDirectory = Paths.get(config.getProperty("log.directory", "logs")).toAbsolutePath().normalize();
+        this.pendingGroups = new JSONObject();
+        this.previousGroups = new JSONObject();
+    }
+
+    /**
+     * Decides what has to be read for each rotation group. If the stored checkpoint still
+     * matches the log files, only new data is planned; otherwise everything is.
+     *
+     * @param groups All rotation groups found in the log directory.
+     * @param analyzerTypes The configured analysis types.
+     * @return The plan.
+     * @throws IOException If a log file cannot be read.
+     */
+    public Plan plan(List<RotatedLogGroup> groups, Set<String> analyzerTypes) throws IOException {
+        if (load(analyzerTypes)) {
+            Plan plan = createPlan(groups, true);
+            if (plan != null) {
+                return plan;
+            }
+        }
+
+        previousGroups = new JSONObject();
+        previousAnalyzers = null;
+        return createPlan(groups, false);
+    }
+
+    /**
+     * Gets the stored state of an analyzer, to be restored before new data is merged in.
+     *
+     * @param type The analysis type.
+     * @return The snapshot, or null if the run does not resume from a checkpoint.
+     */
+    public JSONObject getAnalyzerState(String type) {
+        return previousAnalyzers == null ? null : previousAnalyzers.optJSONObject(type);
+    }
+
+    /**
+     * Writes the new checkpoint: the offsets planned by {@link #plan} and the current state of
+     * the analyzers, which must contain exactly the committed data.
+     *
+     * @param analyzers The analyzers by type.
+     * @return True if the checkpoint was saved.
+     */
+    public boolean save(Map<String, LogAnalyzer> analyzers) {
+        JSONObject snapshots = new JSONObject();
+        for (Map.Entry<String, LogAnalyzer> entry : analyzers.entrySet()) {
+            JSONObject state = entry.getValue().snapshotState();
+            if (state == null) {
+                System.out.println("Checkpoint not saved: " + entry.getKey() + " does not support snapshots");
+                return false;
+            }
+            snapshots.put(entry.getKey(), state);
+        }
+
+        JSONObject checkpoint = new JSONObject();
+        checkpoint.put("version", VERSION);
+        checkpoint.put("settings", settings());
+        checkpoint.put("analyzers", snapshots);
+        checkpoint.put("files", pendingGroups);
+
+        // Write to a temporary file first so that an interrupted run never leaves a broken checkpoint
+        Path target = checkpointFile.toPath().toAbsolutePath();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.writeString(temporary, checkpoint.toString());
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("Checkpoint saved to " + checkpointFile);
+            return true;
+        } catch (IOException e) {
+            System.out.println("checkpoint saving error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads the stored checkpoint if it was written with the same settings and analyzers.
+     */
+    private boolean load(Set<String> analyzerTypes) {
+        if (!checkpointFile.isFile()) {
+            System.out.println("No checkpoint found, analyzing all files");
+            return false;
+        }
+
+        try {
+            JSONObject checkpoint = new JSONObject(Files.readString(checkpointFile.toPath()));
+            JSONObject analyzers = checkpoint.getJSONObject("analyzers");
+
+            if (checkpoint.optInt("version") != VERSION
+                    || !settings().similar(checkpoint.optJSONObject("settings"))
+                    || !analyzers.keySet().equals(analyzerTypes)) {
+                System.out.println("Analysis settings changed since the checkpoint, analyzing all files");
+                return false;
+            }
+
+            previousGroups = checkpoint.getJSONObject("files");
+            previousAnalyzers = analyzers;
+            System.out.println("Resuming from checkpoint " + checkpointFile);
+            return true;
+        } catch (IOException | JSONException e) {
+            System.out.println("Cannot read checkpoint " + checkpointFile + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Plans all groups against the previous checkpoint.
+     *
+     * @return The plan, or null if the checkpoint no longer matches the log files.
+     */
+    private Plan createPlan(List<RotatedLogGroup> groups, boolean resumed) throws IOException {
+        Plan plan = new Plan(resumed);
+        Set<String> names = new HashSet<>();
+        pendingGroups.clear();
+
+        for (RotatedLogGroup group : groups) {
+            names.add(groupName(group));
+            if (!planGroup(group, plan)) {
+                return null;
+            }
+        }
+
+        for (String name : previousGroups.keySet()) {
+            if (!names.contains(name)) {
+                System.out.println("Checkpointed log " + name + " is gone, analyzing all files");
+                return null;
+            }
+        }
+
+        return plan;
+    }
+
+    /**
+     * Determines the range to read of every segment of a group and its new checkpoint state.
+     *
+     * @return False if analyzed data of the group is no longer present.
+     */
+    private boolean planGroup(RotatedLogGroup group, Plan plan) throws IOException {
+        String name = groupName(group);
+        List<File> segments = group.getSegments();
+        JSONArray previous = previousGroups.optJSONArray(name, new JSONArray());
+        boolean[] matched = new boolean[previous.length()];
+
+        long[] starts = new long[segments.size()];
+        long[] ends = new long[segments.size()];
+        JSONArray states = new JSONArray();
+        boolean hasData = false;
+
+        for (int i = 0; i < segments.size(); i++) {
+            File segment = segments.get(i);
+            boolean compressed = RotatedLogGroup.isCompressed(segment);
+            boolean live = !compressed && segment.getName().equals(group.getLogicalName());
+            byte[] head = readHead(segment);
+
+            long start = 0;
+            int match = findMatch(previous, matched, head);
+            if (match >= 0) {
+                matched[match] = true;
+                JSONObject state = previous.getJSONObject(match);
+                start = state.optBoolean("complete") ? Long.MAX_VALUE : state.getLong("offset");
+            }
+
+            long end;
+            if (compressed) {
+                // Archives no longer change, so they are complete once read
+                end = Long.MAX_VALUE;
+                if (head.length > 0) {
+                    states.put(segmentState(head, 0, true));
+                }
+            } else {
+                long size = segment.length();
+                if (start > size) {
+                    System.out.println("Checkpointed log " + segment.getName() + " was truncated, analyzing all files");
+                    return false;
+                }
+
+                end = size;
+                if (live) {
+                    // The last record may still grow, so it is analyzed separately and not committed
+                    end = LogFileChunker.findLastRecordStart(segment, formats.formatFor(segment), start, size);
+                    if (end < size) {
+                        plan.tails.add(new LogFileChunk(segment, end, size));
+                    }
+                }
+                if (head.length > 0) {
+                    states.put(segmentState(head, end, false));
+                }
+            }
+
+            starts[i] = start;
+            ends[i] = end;
+            hasData |= start < end;
+        }
+
+        for (int j = 0; j < matched.length; j++) {
+            if (!matched[j]) {
+                System.out.println("A checkpointed segment of " + name + " is gone, analyzing all files");
+                return false;
+            }
+        }
+
+        pendingGroups.put(name, states);
+        if (hasData) {
+            plan.groups.add(group.withRanges(starts, ends));
+        }
+        return true;
+    }
+
+    /**
+     * Finds the previous state of a segment by comparing fingerprints of its first bytes.
+     *
+     * @return The index of the matching state, or -1 for a new segment.
+     */
+    private static int findMatch(JSONArray previous, boolean[] matched, byte[] head) {
+        for (int j = 0; j < previous.length(); j++) {
+            JSONObject state = previous.getJSONObject(j);
+            int length = state.getInt("length");
+
+            if (!matched[j] && head.length >= length && checksum(head, length) == state.getLong("crc")) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    private static JSONObject segmentState(byte[] head, long offset, boolean complete) {
+        JSONObject state = new JSONObject();
+        state.put("length", head.length);
+        state.put("crc", checksum(head, head.length));
+        state.put("offset", offset);
+        state.put("complete", complete);
+        return state;
+    }
+
+    private static long checksum(byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return crc.getValue();
+    }
+
+    /**
+     * Reads the first bytes of the content of a segment, decompressing archives.
+     */
+    private static byte[] readHead(File segment) {
+        try (InputStream input = DecompressionPipeline.openDirect(segment)) {
+            return input.readNBytes(FINGERPRINT_BYTES);
+        } catch (IOException e) {
+            System.out.println("error fingerprinting file " + segment.getName() + ": " + e.getMessage());
+            return new byte[0];
+        }
+    }
+
+    /**
+     * Gets the key of a group in the checkpoint: the path of its live file relative to log.directory.
+     */
+    private String groupName(RotatedLogGroup group) {
+        Path logical = group.getLogicalFile().toPath().toAbsolutePath().normalize();
+        Path relative = logical.startsWith(logDirectory) ? logDirectory.relativize(logical) : logical;
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+
+    private JSONObject settings() {
+        JSONObject settings = new JSONObject();
+        for (String key : config.stringPropertyNames()) {
+            for (String prefix : SETTING_PREFIXES) {
+                if (key.startsWith(prefix)) {
+                    settings.put(key, config.getProperty(key).trim());
+                }
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * What a run has to read: the committed ranges of each group, and the last record of each
+     * live file, whose results are included in the report but not in the checkpoint.
+     */
+    public static class Plan {
+        private final boolean resumed;
+        private final List<RotatedLogGroup> groups;
+        private final List<LogFileChunk> tails;
+
+        Plan(boolean resumed) {
+            this.resumed = resumed;
+            this.groups = new ArrayList<>();
+            this.tails = new ArrayList<>();
+        }
+
+        /**
+         * Tells whether the run continues from a checkpoint, so the stored analyzer states apply.
+         *
+         * @return True if resuming.
+         */
+        public boolean isResumed() {
+            return resumed;
+        }
+
+        /**
+         * Gets the groups with new data, ranged to the data to commit.
+         *
+         * @return The ranged groups.
+         */
+        public List<RotatedLogGroup> getGroups() {
+            return groups;
+        }
+
+        /**
+         * Gets the last records of the live files.
+         *
+         * @return The uncommitted tails.
+         */
+        public List<LogFileChunk> getTails() {
+            return tails;
+        }
+    }
+}
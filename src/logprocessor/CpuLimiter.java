@@ -0,0 +1,125 @@
+package logprocessor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits how many threads parse and analyze at the same time, while letting any number of
+ * threads wait for I/O.
+ *
+ * A thread holds a permit while it works on a file and gives it up for the duration of each
+ * blocking read of a stream wrapped by {@link #releaseWhileReading(InputStream)}. With
+ * thread.mode=virtual every file gets its own virtual thread, so the storage sees many
+ * outstanding reads, while CPU-bound work never runs on more threads than there are cores.
+ * In the default mode the thread pool already bounds the work and the limiter does nothing.
+ */
+public class CpuLimiter {
+
+    private final Semaphore permits;
+    private final ThreadLocal<int[]> holdCount;
+
+    /**
+     * Constructor for creating a limiter.
+     *
+     * @param permits The number of threads allowed to do CPU work at once, or 0 for no limit.
+     */
+    public CpuLimiter(int permits) {
+        this.permits = permits > 0 ? new Semaphore(permits) : null;
+        this.holdCount = ThreadLocal.withInitial(() -> new int[1]);
+    }
+
+    /**
+     * Creates the limiter for the configured thread mode: limited to thread.cpu.limit threads
+     * (default: the number of processors) for virtual threads, unlimited otherwise.
+     *
+     * @param config Configuration properties.
+     * @return The limiter.
+     */
+    public static CpuLimiter fromConfig(Properties config) {
+        if (!config.getProperty("thread.mode", "fixed").trim().equalsIgnoreCase("virtual")) {
+            return new CpuLimiter(0);
+        }
+
+        int limit = Integer.parseInt(config.getProperty("thread.cpu.limit", "0").trim());
+        return new CpuLimiter(limit > 0 ? limit : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Tells whether the limiter restricts anything.
+     *
+     * @return True if the number of CPU threads is limited.
+     */
+    public boolean isLimited() {
+        return permits != null;
+    }
+
+    /**
+     * Acquires a permit for the current thread. Calls may be nested; only the outermost
+     * call waits for a permit.
+     */
+    public void acquire() {
+        if (permits != null && holdCount.get()[0]++ == 0) {
+            permits.acquireUninterruptibly();
+        }
+    }
+
+    /**
+     * Releases the permit acquired by the matching {@link #acquire()}.
+     */
+    public void release() {
+        if (permits != null && --holdCount.get()[0] == 0) {
+            permits.release();
+        }
+    }
+
+    /**
+     * Wraps a stream so that a thread holding a permit gives it up while it is blocked in a read.
+     *
+     * @param input The stream to wrap.
+     * @return The wrapped stream, or the stream itself if the limiter is unlimited.
+     */
+    public InputStream releaseWhileReading(InputStream input) {
+        if (permits == null) {
+            return input;
+        }
+
+        return new FilterInputStream(input) {
+            @Override
+            public int read() throws IOException {
+                boolean held = suspend();
+                try {
+                    return super.read();
+                } finally {
+                    resume(held);
+                }
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                boolean held = suspend();
+                try {
+                    return super.read(buffer, offset, length);
+                } finally {
+                    resume(held);
+                }
+            }
+        };
+    }
+
+    private boolean suspend() {
+        boolean held = holdCount.get()[0] > 0;
+        if (held) {
+            permits.release();
+        }
+        return held;
+    }
+
+    private void resume(boolean held) {
+        if (held) {
+            permits.acquireUninterruptibly();
+        }
+    }
+}
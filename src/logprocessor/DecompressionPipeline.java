@@ -0,0 +1,353 @@
+package logprocessor;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens a rotation group as one continuous stream, decompressing archived segments on
+ * background threads so that decompression overlaps with parsing.
+ *
+ * Each compressed segment is decompressed by its own producer into a bounded queue of blocks.
+ * While one segment is being parsed, the next log.decompress.readahead segments are already
+ * being decompressed. Gzip is decompressed in-process; zstd archives are piped through the
+ * external zstd command, since the JDK has no zstd codec. A segment that cannot be read or
+ * decompressed, e.g. a truncated archive or a zstd archive without the zstd command, fails the
+ * whole group; archives that are not to be read must be excluded with log.discovery.exclude.
+ * For a ranged group (see {@link RotatedLogGroup#withRanges}) only the requested part of each
+ * segment is returned; segments whose range is empty are not opened at all.
+ */
+public class DecompressionPipeline {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    private final ExecutorService decompressors;
+    private final int readahead;
+    private final int queueBlocks;
+
+    /**
+     * Constructor for creating a pipeline.
+     *
+     * @param config Configuration properties.
+     */
+    public DecompressionPipeline(Properties config) {
+        this.readahead = Math.max(0, Integer.parseInt(config.getProperty("log.decompress.readahead", "2").trim()));
+        this.queueBlocks = Math.max(1, Integer.parseInt(config.getProperty("log.decompress.queue.blocks", "16").trim()));
+        // Producers block on their queues, so they must not wait for a pool slot behind each other
+        this.decompressors = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "log-decompressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the segments of a rotation group as one stream, oldest first.
+     * A line break is inserted between segments so that the last line of a segment never
+     * runs into the first line of the next one.
+     *
+     * @param group The rotation group.
+     * @return The concatenated, decompressed stream.
+     */
+    public InputStream open(RotatedLogGroup group) {
+        return new GroupInputStream(group);
+    }
+
+    /**
+     * Opens a single segment without pipelining.
+     *
+     * @param segment The segment file.
+     * @return The decompressed stream.
+     * @throws IOException If the segment cannot be opened.
+     */
+    static InputStream openDirect(File segment) throws IOException {
+        String name = segment.getName().toLowerCase();
+
+        if (name.endsWith(".gz")) {
+            return new GZIPInputStream(new FileInputStream(segment), BLOCK_SIZE);
+        }
+
+        if (name.endsWith(".zst")) {
+            try {
+                Process process = new ProcessBuilder("zstd", "-dc", segment.getAbsolutePath())
+                        .redirectError(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                return new ZstdInputStream(process, segment);
+            } catch (IOException e) {
+                throw new IOException("zstd command not available to decompress " + segment.getName(), e);
+            }
+        }
+
+        return new BufferedInputStream(new FileInputStream(segment), BLOCK_SIZE);
+    }
+
+    /**
+     * Output of a zstd process, which ends with an error if zstd failed, e.g. on a truncated
+     * archive, instead of looking like the end of the data.
+     */
+    private static class ZstdInputStream extends FilterInputStream {
+        private final Process process;
+        private final File segment;
+
+        ZstdInputStream(Process process, File segment) {
+            super(process.getInputStream());
+            this.process = process;
+            this.segment = segment;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return checkEnd(super.read());
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return checkEnd(super.read(buffer, offset, length));
+        }
+
+        private int checkEnd(int read) throws IOException {
+            if (read < 0) {
+                try {
+                    int exitCode = process.waitFor();
+                    if (exitCode != 0) {
+                        throw new IOException("zstd failed to decompress " + segment.getName() + " (exit code " + exitCode + ")");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while decompressing " + segment.getName(), e);
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            process.destroy();
+        }
+    }
+
+    /**
+     * Concatenation of the segments of a group, starting producers ahead of the reader.
+     */
+    private class GroupInputStream extends InputStream {
+        private final RotatedLogGroup group;
+        private final List<File> segments;
+        private final List<InputStream> streams;
+        private int current;
+        private boolean positioned;
+        private long remaining;
+        private boolean separatorPending;
+
+        GroupInputStream(RotatedLogGroup group) {
+            this.group = group;
+            this.segments = group.getSegments();
+            this.streams = new ArrayList<>();
+            startUpTo(readahead);
+        }
+
+        private void startUpTo(int index) {
+            while (streams.size() <= index && streams.size() < segments.size()) {
+                int segmentIndex = streams.size();
+                File segment = segments.get(segmentIndex);
+
+                if (group.getSegmentStart(segmentIndex) >= group.getSegmentEnd(segmentIndex)) {
+                    // Nothing to read, e.g. an archive that was fully analyzed before
+                    streams.add(InputStream.nullInputStream());
+                } else {
+                    streams.add(RotatedLogGroup.isCompressed(segment) ? new SegmentProducer(segment) : null);
+                }
+            }
+        }
+
+        private InputStream currentStream() throws IOException {
+            InputStream stream = streams.get(current);
+            if (stream == null) {
+                // Plain segments are opened only when reached
+                stream = openDirect(segments.get(current));
+                streams.set(current, stream);
+            }
+
+            if (!positioned) {
+                positioned = true;
+                long start = group.getSegmentStart(current);
+                long end = group.getSegmentEnd(current);
+                remaining = end == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, end - start);
+
+                if (start > 0 && remaining > 0) {
+                    try {
+                        stream.skipNBytes(start);
+                    } catch (EOFException e) {
+                        remaining = 0;
+                    }
+                }
+            }
+            return stream;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            while (current < segments.size()) {
+                if (separatorPending) {
+                    separatorPending = false;
+                    buffer[offset] = '\n';
+                    return 1;
+                }
+
+                int read;
+                try {
+                    InputStream stream = currentStream();
+                    read = remaining > 0 ? stream.read(buffer, offset, (int) Math.min(length, remaining)) : -1;
+                } catch (IOException e) {
+                    System.out.println("error reading segment " + segments.get(current).getName() + ": " + e.getMessage());
+                    throw e;
+                }
+
+                if (read >= 0) {
+                    if (remaining != Long.MAX_VALUE) {
+                        remaining -= read;
+                    }
+                    return read;
+                }
+
+                closeQuietly(streams.get(current));
+                streams.set(current, null);
+                current++;
+                positioned = false;
+                separatorPending = current < segments.size();
+                startUpTo(current + readahead);
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() {
+            for (int i = current; i < streams.size(); i++) {
+                closeQuietly(streams.get(i));
+            }
+        }
+    }
+
+    /**
+     * Decompresses one segment on a background thread into a bounded queue of blocks.
+     */
+    private class SegmentProducer extends InputStream {
+        private final File segment;
+        private final BlockingQueue<byte[]> blocks;
+        private volatile boolean closed;
+        private volatile IOException failure;
+        private byte[] block;
+        private int position;
+
+        SegmentProducer(File segment) {
+            this.segment = segment;
+            this.blocks = new ArrayBlockingQueue<>(queueBlocks + 1);
+            this.block = new byte[0];
+            decompressors.execute(this::produce);
+        }
+
+        private void produce() {
+            try (InputStream input = openDirect(segment)) {
+                while (!closed) {
+                    byte[] buffer = new byte[BLOCK_SIZE];
+                    int filled = input.readNBytes(buffer, 0, BLOCK_SIZE);
+                    if (filled <= 0) {
+                        break;
+                    }
+                    put(filled == BLOCK_SIZE ? buffer : Arrays.copyOf(buffer, filled));
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    put(END_OF_STREAM);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void put(byte[] data) throws InterruptedException {
+            // Give up once the reader has gone away, instead of blocking forever on a full queue
+            while (!closed && !blocks.offer(data, 100, TimeUnit.MILLISECONDS)) {
+                // Wait for the reader to take a block
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (block == END_OF_STREAM) {
+                return -1;
+            }
+
+            if (position >= block.length) {
+                try {
+                    block = blocks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while decompressing " + segment.getName(), e);
+                }
+                position = 0;
+
+                if (block == END_OF_STREAM) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return -1;
+                }
+            }
+
+            int count = Math.min(length, block.length - position);
+            System.arraycopy(block, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            blocks.clear();
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // Nothing left to read from it
+            }
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package logprocessor;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import analyzer.LogAnalyzer;
+import analyzer.factory.LogAnalyzerFactory;
+import analyzer.impl.IndexingAnalyzer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import parser.format.LogFormatRegistry;
+
+/**
+ * Coordinator of the distributed mode (thread.mode=distributed).
+ *
+ * Files, and byte ranges of large plain files, are handed to {@link DistributedWorker} processes
+ * over sockets. Workers are started on this host (distributed.workers.local) and/or reached at
+ * host:port addresses (distributed.workers), e.g. on the hosts that hold the logs, which must be
+ * configured with the same distributed.secret (see {@link DistributedWorker}). Each worker
+ * is served through distributed.worker.connections connections, each with one task in flight;
+ * an idle connection takes the next task from a shared queue, so faster workers get more work.
+ *
+ * A worker replies with the snapshot state of its analyzers, which is restored into new
+ * instances and merged as results arrive. A task whose worker dies or becomes unreachable is
+ * put back into the queue and run by another connection, up to distributed.task.retries times.
+ * A connection that cannot reconnect after distributed.reconnect.attempts tries, or that loses
+ * more than that many tasks in a row, is given up. A worker that sends no reply within
+ * distributed.task.timeout seconds, e.g. because its host died without closing the connection,
+ * counts as lost as well.
+ */
+public class DistributedCoordinator {
+
+    private static final Pattern LISTENING = Pattern.compile("Worker listening on port (\\d+)");
+    private static final long RECONNECT_DELAY_MILLIS = 500;
+
+    private final Properties config;
+    private final LogFormatRegistry formats;
+    private final List<String> analyzerTypes;
+    private final long chunkSize;
+    private final int connectionsPerWorker;
+    private final int taskRetries;
+    private final int reconnectAttempts;
+    private final int timeoutMillis;
+
+    private final LinkedBlockingQueue<DistributedTask> tasks;
+    private final LinkedBlockingQueue<TaskResult> results;
+    private final DistributedTask endOfTasks;
+    private final List<Thread> connectionThreads;
+    private final List<Process> localWorkers;
+
+    private long nextId;
+    private int submitted;
+    private int liveConnections;
+
+    /**
+     * Constructor for creating a coordinator.
+     *
+     * @param config Configuration properties, also sent to the workers.
+     * @param formats The formats, used to split large files at record boundaries.
+     * @param analyzerTypes The analysis types to run.
+     */
+    public DistributedCoordinator(Properties config, LogFormatRegistry formats, Collection<String> analyzerTypes) {
+        this.config = config;
+        this.formats = formats;
+        this.analyzerTypes = new ArrayList<>(analyzerTypes);
+        this.chunkSize = Long.parseLong(config.getProperty("log.chunk.size", "67108864").trim());
+        this.connectionsPerWorker = Math.max(1, Integer.parseInt(config.getProperty("distributed.worker.connections", "2").trim()));
+        this.taskRetries = Integer.parseInt(config.getProperty("distributed.task.retries", "3").trim());
+        this.reconnectAttempts = Integer.parseInt(config.getProperty("distributed.reconnect.attempts", "3").trim());
+        this.timeoutMillis = (int) Math.min(Integer.MAX_VALUE,
+                                            Long.parseLong(config.getProperty("distributed.task.timeout", "600").trim()) * 1000L);
+        this.tasks = new LinkedBlockingQueue<>();
+        this.results = new LinkedBlockingQueue<>();
+        this.endOfTasks = DistributedTask.forChunk(-1, new LogFileChunk(new File(""), 0, 0));
+        this.connectionThreads = new ArrayList<>();
+        this.localWorkers = new ArrayList<>();
+    }
+
+    /**
+     * Starts the local workers and the connections to all workers.
+     *
+     * @throws IOException If a local worker cannot be started, or no worker is configured.
+     */
+    public void start() throws IOException {
+        List<InetSocketAddress> endpoints = new ArrayList<>();
+
+        int localCount = Integer.parseInt(config.getProperty("distributed.workers.local", "2").trim());
+        for (int i = 0; i < localCount; i++) {
+            endpoints.add(startLocalWorker(i));
+        }
+
+        for (String address : config.getProperty("distributed.workers", "").split(",")) {
+            address = address.trim();
+            if (!address.isEmpty()) {
+                int colon = address.lastIndexOf(':');
+                endpoints.add(new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1))));
+            }
+        }
+
+        if (endpoints.isEmpty()) {
+            throw new IOException("No distributed workers configured");
+        }
+
+        for (InetSocketAddress endpoint : endpoints) {
+            for (int i = 0; i < connectionsPerWorker; i++) {
+                connectionThreads.add(new Thread(() -> serve(endpoint),
+                                                 "log-coordinator-" + endpoint.getPort() + "-" + i));
+            }
+        }
+        liveConnections = connectionThreads.size();
+
+        System.out.println("Distributing tasks to " + endpoints.size() + " workers over " + liveConnections + " connections");
+        connectionThreads.forEach(Thread::start);
+    }
+
+    /**
+     * Submits a rotation group. A large plain file is split into ranges at record boundaries,
+     * which may go to different workers.
+     *
+     * @param group The group.
+     */
+    public void submit(RotatedLogGroup group) {
+        if (!group.isSinglePlainFile()) {
+            enqueue(DistributedTask.forGroup(nextId++, group));
+            return;
+        }
+
+        File file = group.getSegments().get(0);
+        long start = group.getSegmentStart(0);
+        long end = Math.min(group.getSegmentEnd(0), file.length());
+
+        if (chunkSize > 0 && end - start > chunkSize) {
+            try {
+                for (LogFileChunk chunk : new LogFileChunker(chunkSize).split(file, formats.formatFor(file), start, end)) {
+                    enqueue(DistributedTask.forChunk(nextId++, chunk));
+                }
+                return;
+            } catch (IOException e) {
+                System.out.println("error splitting file " + file.getName() + ": " + e.getMessage());
+            }
+        }
+
+        if (start < end) {
+            enqueue(DistributedTask.forChunk(nextId++, new LogFileChunk(file, start, end)));
+        }
+    }
+
+    /**
+     * Waits until every submitted task has succeeded or failed, passing the analyzers of each
+     * successful task to a consumer as soon as they arrive.
+     *
+     * @param merger Receives the analyzers of each task.
+     * @return The number of failed tasks.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public int awaitResults(Consumer<Map<String, LogAnalyzer>> merger) throws InterruptedException {
+        int done = 0;
+        int failures = 0;
+
+        while (done < getSubmitted()) {
+            TaskResult result = results.take();
+            done++;
+
+            if (result.analyzers != null) {
+                merger.accept(result.analyzers);
+            } else {
+                System.out.println("Error processing file " + result.task + ": " + result.error);
+                failures++;
+            }
+        }
+
+        System.out.println("Distributed " + done + " tasks, " + failures + " failed");
+        return failures;
+    }
+
+    /**
+     * Closes the connections and stops the local workers.
+     *
+     * @throws InterruptedException If interrupted while waiting for the connections to close.
+     */
+    public void shutdown() throws InterruptedException {
+        tasks.add(endOfTasks);
+        for (Thread thread : connectionThreads) {
+            thread.join();
+        }
+        for (Process worker : localWorkers) {
+            worker.destroy();
+        }
+    }
+
+    /**
+     * Starts a worker process on this host with the classpath of this process and waits until
+     * it listens.
+     */
+    private InetSocketAddress startLocalWorker(int index) throws IOException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                                                    "main.Main", "--worker", "0", "--local");
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+        localWorkers.add(process);
+        Runtime.getRuntime().addShutdownHook(new Thread(process::destroy));
+
+        BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = output.readLine()) != null) {
+            Matcher matcher = LISTENING.matcher(line);
+            if (matcher.find()) {
+                // Keep reading the worker's output, so that it never blocks on a full pipe
+                Thread drain = new Thread(() -> drain(output), "log-worker-output-" + index);
+                drain.setDaemon(true);
+                drain.start();
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(matcher.group(1)));
+            }
+        }
+
+        throw new IOException("Local worker " + index + " exited before listening");
+    }
+
+    private static void drain(BufferedReader output) {
+        try {
+            while (output.readLine() != null) {
+                // Worker diagnostics are not shown
+            }
+        } catch (IOException e) {
+            // The worker has exited
+        }
+    }
+
+    /**
+     * Runs tasks on one connection to a worker until the end of the tasks, reconnecting after
+     * the connection is lost.
+     */
+    private void serve(InetSocketAddress endpoint) {
+        Connection connection = null;
+        int lostInRow = 0;
+
+        try {
+            while (true) {
+                if (connection == null) {
+                    connection = connect(endpoint);
+                    if (connection == null) {
+                        System.out.println("Giving up worker " + endpoint);
+                        break;
+                    }
+                }
+
+                DistributedTask task = tasks.take();
+                if (task == endOfTasks) {
+                    tasks.add(endOfTasks);
+                    break;
+                }
+
+                try {
+                    JSONObject reply = connection.run(task);
+                    if (reply.has("error")) {
+                        results.add(new TaskResult(task, null, reply.getString("error")));
+                    } else {
+                        results.add(restore(task, reply.getJSONObject("state")));
+                    }
+                    lostInRow = 0;
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Lost worker " + endpoint + " while processing " + task + ": " + e.getMessage());
+                    connection.close();
+                    connection = null;
+                    retry(task);
+                    
+                    // Back off, so that the task is rather picked up by a healthy worker
+                    if (++lostInRow > reconnectAttempts) {
+                        System.out.println("Giving up worker " + endpoint);
+                        break;
+                    }
+                    Thread.sleep(RECONNECT_DELAY_MILLIS * lostInRow);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+            connectionLost();
+        }
+    }
+
+    /**
+     * Opens a connection and sends the configuration, trying again a few times.
+     *
+     * @return The connection, or null if the worker cannot be reached.
+     */
+    private Connection connect(InetSocketAddress endpoint) throws InterruptedException {
+        for (int attempt = 0; attempt <= reconnectAttempts; attempt++) {
+            if (attempt > 0) {
+                Thread.sleep(RECONNECT_DELAY_MILLIS * attempt);
+            }
+            try {
+                return new Connection(endpoint, hello(), timeoutMillis);
+            } catch (IOException e) {
+                System.out.println("Cannot connect to worker " + endpoint + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the first message of a connection: the shared secret, the configuration, with the
+     * log directory made absolute, and the analysis types.
+     */
+    private JSONObject hello() {
+        JSONObject settings = new JSONObject();
+        for (String key : config.stringPropertyNames()) {
+            settings.put(key, config.getProperty(key));
+        }
+        settings.put("log.directory", new File(config.getProperty("log.directory", "logs")).getAbsolutePath());
+        settings.put("log.index.directory", new File(config.getProperty("log.index.directory", "log_index").trim()).getAbsolutePath());
+        settings.remove("distributed.secret");
+
+        return new JSONObject().put("secret", config.getProperty("distributed.secret", "").trim())
+                               .put("config", settings)
+                               .put("analyzers", new JSONArray(analyzerTypes));
+    }
+
+    /**
+     * Restores the analyzers of a task from the states sent by a worker. A state that cannot
+     * be restored here, e.g. because it refers to files only the worker can see, fails the
+     * task rather than the connection.
+     */
+    private TaskResult restore(DistributedTask task, JSONObject states) {
+        Map<String, LogAnalyzer> analyzers = new HashMap<>();
+        try {
+            for (String type : analyzerTypes) {
+                if (states.has(type)) {
+                    LogAnalyzer analyzer = LogAnalyzerFactory.createAnalyzer(type);
+                    analyzer.restoreState(states.getJSONObject(type).put(IndexingAnalyzer.TRANSFERRED, true));
+                    analyzers.put(type, analyzer);
+                }
+            }
+        } catch (RuntimeException e) {
+            return new TaskResult(task, null, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+        return new TaskResult(task, analyzers, null);
+    }
+
+    private synchronized int getSubmitted() {
+        return submitted;
+    }
+
+    private synchronized void enqueue(DistributedTask task) {
+        submitted++;
+        if (liveConnections == 0) {
+            results.add(new TaskResult(task, null, "no workers left"));
+        } else {
+            tasks.add(task);
+        }
+    }
+
+    /**
+     * Puts a task whose worker was lost back into the queue, unless it was lost too often.
+     */
+    private synchronized void retry(DistributedTask task) {
+        if (task.countLostAttempt() > taskRetries) {
+            results.add(new TaskResult(task, null, "worker lost " + taskRetries + " times"));
+        } else {
+            tasks.add(task);
+        }
+    }
+
+    /**
+     * Counts a connection that was given up; once none is left, the queued tasks fail.
+     */
+    private synchronized void connectionLost() {
+        liveConnections--;
+        if (liveConnections == 0) {
+            DistributedTask task;
+            while ((task = tasks.poll()) != null) {
+                if (task != endOfTasks) {
+                    results.add(new TaskResult(task, null, "no workers left"));
+                } else {
+                    tasks.add(endOfTasks);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * A connection to a worker.
+     */
+    private static class Connection {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final BufferedWriter out;
+
+        Connection(InetSocketAddress endpoint, JSONObject hello, int timeoutMillis) throws IOException {
+            this.socket = new Socket();
+            // A read that times out throws a SocketTimeoutException, so the task is put back like for a closed connection
+            socket.setSoTimeout(timeoutMillis);
+            socket.setKeepAlive(true);
+            socket.connect(endpoint, timeoutMillis);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            send(hello);
+        }
+
+        JSONObject run(DistributedTask task) throws IOException {
+            send(task.getPayload());
+            String line = in.readLine();
+            if (line == null) {
+                throw new IOException("connection closed");
+            }
+
+            JSONObject reply = new JSONObject(line);
+            if (reply.getLong("id") != task.getId()) {
+                throw new IOException("unexpected reply for task " + reply.getLong("id"));
+            }
+            return reply;
+        }
+
+        private void send(JSONObject message) throws IOException {
+            out.write(message.toString());
+            out.newLine();
+            out.flush();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    /**
+     * The outcome of a task: its analyzers, or an error.
+     */
+    private static class TaskResult {
+        private final DistributedTask task;
+        private final Map<String, LogAnalyzer> analyzers;
+        private final String error;
+
+        TaskResult(DistributedTask task, Map<String, LogAnalyzer> analyzers, String error) {
+            this.task = task;
+            this.analyzers = analyzers;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package logprocessor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import analyzer.LogAnalyzer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * A unit of work of the distributed mode: a rotation group or a byte range of a plain file,
+ * in the form sent from the coordinator to a worker process. Paths are absolute, so a worker
+ * on another host finds the files if they are at the same location there.
+ */
+class DistributedTask {
+
+    private final long id;
+    private final String name;
+    private final JSONObject payload;
+    private int attempts;
+
+    private DistributedTask(long id, String name, JSONObject payload) {
+        this.id = id;
+        this.name = name;
+        this.payload = payload.put("id", id);
+    }
+
+    /**
+     * Creates the task for a rotation group, including the ranges of a ranged group.
+     *
+     * @param id The task id.
+     * @param group The group.
+     * @return The task.
+     */
+    static DistributedTask forGroup(long id, RotatedLogGroup group) {
+        JSONArray segments = new JSONArray();
+        JSONArray starts = new JSONArray();
+        JSONArray ends = new JSONArray();
+        for (int i = 0; i < group.getSegments().size(); i++) {
+            segments.put(group.getSegments().get(i).getAbsolutePath());
+            starts.put(group.getSegmentStart(i));
+            ends.put(group.getSegmentEnd(i));
+        }
+
+        JSONObject payload = new JSONObject()
+            .put("directory", group.getLogicalFile().getAbsoluteFile().getParent())
+            .put("logical", group.getLogicalName())
+            .put("segments", segments)
+            .put("starts", starts)
+            .put("ends", ends);
+        return new DistributedTask(id, group.toString(), payload);
+    }
+
+    /**
+     * Creates the task for a byte range of a plain file.
+     *
+     * @param id The task id.
+     * @param chunk The range.
+     * @return The task.
+     */
+    static DistributedTask forChunk(long id, LogFileChunk chunk) {
+        JSONObject payload = new JSONObject()
+            .put("file", chunk.getFile().getAbsolutePath())
+            .put("start", chunk.getStart())
+            .put("end", chunk.getEnd());
+        return new DistributedTask(id, chunk.toString(), payload);
+    }
+
+    /**
+     * Creates the worker for a task received by a worker process.
+     *
+     * @param task The task as sent by the coordinator.
+     * @param analyzers The analyzers to run.
+     * @param config Configuration properties.
+     * @param fileReader The file reader.
+     * @return The worker.
+     */
+    static LogProcessingWorker createWorker(JSONObject task, Map<String, LogAnalyzer> analyzers,
+                                            Properties config, LogFileReader fileReader) {
+        if (task.has("file")) {
+            LogFileChunk chunk = new LogFileChunk(new File(task.getString("file")), task.getLong("start"), task.getLong("end"));
+            return new LogProcessingWorker(chunk, analyzers, config, fileReader);
+        }
+
+        JSONArray segmentPaths = task.getJSONArray("segments");
+        JSONArray starts = task.getJSONArray("starts");
+        JSONArray ends = task.getJSONArray("ends");
+        List<File> segments = new ArrayList<>();
+        long[] segmentStarts = new long[segmentPaths.length()];
+        long[] segmentEnds = new long[segmentPaths.length()];
+        for (int i = 0; i < segmentPaths.length(); i++) {
+            segments.add(new File(segmentPaths.getString(i)));
+            segmentStarts[i] = starts.getLong(i);
+            segmentEnds[i] = ends.getLong(i);
+        }
+
+        RotatedLogGroup group = new RotatedLogGroup(new File(task.getString("directory")), task.getString("logical"), segments)
+            .withRanges(segmentStarts, segmentEnds);
+        return new LogProcessingWorker(group, analyzers, config, fileReader);
+    }
+
+    long getId() {
+        return id;
+    }
+
+    JSONObject getPayload() {
+        return payload;
+    }
+
+    /**
+     * Counts an attempt to run the task that was lost with its worker.
+     *
+     * @return The number of lost attempts so far.
+     */
+    int countLostAttempt() {
+        return ++attempts;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,182 @@
+package logprocessor;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import analyzer.LogAnalyzer;
+import analyzer.factory.LogAnalyzerFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Worker process of the distributed mode (started with --worker).
+ *
+ * Listens for connections from a {@link DistributedCoordinator}; every connection is served by
+ * its own thread, so a coordinator gets as much parallelism from a worker as it opens
+ * connections. The protocol is one JSON object per line. The coordinator first sends its
+ * configuration and the analysis types, then tasks; for each task the worker runs a
+ * {@link LogProcessingWorker} and replies with the snapshot state of every analyzer (see
+ * {@link LogAnalyzer#snapshotState()}), or with an error message.
+ *
+ * A worker started by a coordinator on the same host (--worker --local) only listens on the
+ * loopback address. Any other worker requires distributed.secret to be set, and a coordinator
+ * must send the same secret in its first message. In either case the worker reads only files
+ * below its own log.directory and writes index segments only to its own log.index.directory,
+ * whatever the coordinator's configuration says. Both must therefore be the coordinator's
+ * directories, shared at the same paths; the coordinator fails a task whose index segments it
+ * cannot find.
+ */
+public class DistributedWorker {
+
+    private final int port;
+    private final boolean local;
+    private final byte[] secret;
+    private final Path logDirectory;
+    private final String indexDirectory;
+
+    /**
+     * Constructor for creating a worker.
+     *
+     * @param config Configuration properties of this worker.
+     * @param port The port to listen on, 0 for any free port.
+     * @param local True to only accept connections from this host.
+     * @throws IllegalArgumentException If the worker is not local and no secret is configured.
+     */
+    public DistributedWorker(Properties config, int port, boolean local) {
+        this.port = port;
+        this.local = local;
+        this.secret = config.getProperty("distributed.secret", "").trim().getBytes(StandardCharsets.UTF_8);
+        this.logDirectory = realPath(Paths.get(config.getProperty("log.directory", "logs")));
+        this.indexDirectory = Paths.get(config.getProperty("log.index.directory", "log_index").trim()).toAbsolutePath().toString();
+
+        if (!local && secret.length == 0) {
+            throw new IllegalArgumentException("distributed.secret must be set for a worker reachable from other hosts");
+        }
+    }
+
+    private static Path realPath(Path path) {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return path.toAbsolutePath().normalize();
+        }
+    }
+
+    /**
+     * Accepts coordinator connections until the process is stopped.
+     * The chosen port is printed as "Worker listening on port N".
+     *
+     * @throws IOException If the port cannot be opened.
+     */
+    public void serve() throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, local ? InetAddress.getLoopbackAddress() : null)) {
+            System.out.println("Worker listening on port " + server.getLocalPort());
+
+            while (true) {
+                Socket socket = server.accept();
+                Thread thread = new Thread(() -> handle(socket), "log-worker-" + socket.getPort());
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Serves one coordinator connection.
+     */
+    private void handle(Socket socket) {
+        try (Socket connection = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8))) {
+
+            String line = in.readLine();
+            if (line == null) {
+                return;
+            }
+
+            JSONObject hello = new JSONObject(line);
+            if (!MessageDigest.isEqual(secret, hello.optString("secret", "").getBytes(StandardCharsets.UTF_8))) {
+                System.out.println("Rejected coordinator " + connection.getRemoteSocketAddress() + ": wrong secret");
+                return;
+            }
+
+            Properties config = new Properties();
+            JSONObject settings = hello.getJSONObject("config");
+            for (String key : settings.keySet()) {
+                config.setProperty(key, settings.getString(key));
+            }
+            config.setProperty("log.directory", logDirectory.toString());
+            config.setProperty("log.index.directory", indexDirectory);
+            JSONArray analyzerTypes = hello.getJSONArray("analyzers");
+            LogFileReader fileReader = LogProcessor.createFileReader(config);
+
+            while ((line = in.readLine()) != null) {
+                JSONObject task = new JSONObject(line);
+                JSONObject reply = new JSONObject().put("id", task.getLong("id"));
+
+                try {
+                    checkPaths(task);
+
+                    Map<String, LogAnalyzer> analyzers = new HashMap<>();
+                    for (int i = 0; i < analyzerTypes.length(); i++) {
+                        String type = analyzerTypes.getString(i);
+                        analyzers.put(type, LogAnalyzerFactory.createAnalyzer(type, config));
+                    }
+
+                    DistributedTask.createWorker(task, analyzers, config, fileReader).call();
+
+                    JSONObject states = new JSONObject();
+                    for (Map.Entry<String, LogAnalyzer> entry : analyzers.entrySet()) {
+                        states.put(entry.getKey(), entry.getValue().snapshotState());
+                    }
+                    reply.put("state", states);
+                } catch (Exception e) {
+                    reply.put("error", e.getMessage() != null ? e.getMessage() : e.toString());
+                }
+
+                out.write(reply.toString());
+                out.newLine();
+                out.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Coordinator connection closed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks that the files of a task are below the log directory of this worker.
+     *
+     * @throws IOException If a file is outside the log directory or does not exist.
+     */
+    private void checkPaths(JSONObject task) throws IOException {
+        List<String> paths = new ArrayList<>();
+        if (task.has("file")) {
+            paths.add(task.getString("file"));
+        } else {
+            paths.add(task.getString("directory"));
+            for (Object segment : task.getJSONArray("segments")) {
+                paths.add((String) segment);
+            }
+        }
+
+        for (String path : paths) {
+            if (!Paths.get(path).toRealPath().startsWith(logDirectory)) {
+                throw new IOException(path + " is outside the log directory of this worker");
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package logprocessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import model.LogEntry;
+
+/**
+ * Collects parsed entries into bounded batches and hands each full batch to a consumer.
+ * The same list is reused for every batch, so consumers must not keep a reference to it.
+ */
+class EntryBatcher {
+    
+    private final List<LogEntry> batch;
+    private final int batchSize;
+    private final Consumer<List<LogEntry>> consumer;
+    private int total;
+    
+    /**
+     * Constructor for creating a batcher.
+     * 
+     * @param batchSize The maximum number of entries in a batch.
+     * @param consumer The consumer receiving each batch.
+     */
+    EntryBatcher(int batchSize, Consumer<List<LogEntry>> consumer) {
+        this.batch = new ArrayList<>(batchSize);
+        this.batchSize = batchSize;
+        this.consumer = consumer;
+    }
+    
+    /**
+     * Adds an entry, passing the batch on when it is full.
+     * 
+     * @param entry The entry to add, ignored if null.
+     */
+    void add(LogEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        
+        batch.add(entry);
+        total++;
+        
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+    
+    /**
+     * Passes on the remaining entries.
+     */
+    void flush() {
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+            batch.clear();
+        }
+    }
+    
+    /**
+     * Gets the number of entries added so far.
+     * 
+     * @return The number of entries.
+     */
+    int getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,244 @@
+package logprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+import analyzer.LogAnalyzer;
+import parser.format.LogFormat;
+
+/**
+ * Work-stealing scheduler for file tasks (thread.mode=forkjoin).
+ *
+ * Inputs are submitted to a ForkJoinPool largest first, so that the biggest files start early
+ * instead of becoming the tail of the run. A plain file (or byte range) larger than
+ * log.chunk.size is split in half at a record boundary; one half is forked, where an idle
+ * thread can steal it, and the other is processed by the current thread, recursively. Each
+ * leaf runs a {@link LogProcessingWorker} with its own analyzers, and the results of the two
+ * halves are merged on the way back up.
+ *
+ * The wall time of every leaf task is recorded and summarized by {@link #printTimings()},
+ * which shows how much the slowest task dominates the run.
+ */
+public class FileTaskScheduler {
+
+    private static final int SLOWEST_TASKS_SHOWN = 5;
+
+    private final Properties config;
+    private final LogFileReader fileReader;
+    private final Supplier<Map<String, LogAnalyzer>> analyzerFactory;
+    private final ForkJoinPool pool;
+    private final LogFileChunker chunker;
+    private final long splitSize;
+    private final ConcurrentLinkedQueue<TaskTiming> timings;
+
+    /**
+     * Constructor for creating a scheduler.
+     *
+     * @param config Configuration properties.
+     * @param fileReader The reader used by the workers.
+     * @param analyzerFactory Creates a new set of analyzers for each task.
+     * @param parallelism The number of threads of the pool.
+     */
+    public FileTaskScheduler(Properties config, LogFileReader fileReader,
+                             Supplier<Map<String, LogAnalyzer>> analyzerFactory, int parallelism) {
+        this.config = config;
+        this.fileReader = fileReader;
+        this.analyzerFactory = analyzerFactory;
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.splitSize = Long.parseLong(config.getProperty("log.chunk.size", "67108864").trim());
+        this.chunker = new LogFileChunker(splitSize);
+        this.timings = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Submits the rotation groups, largest first.
+     *
+     * @param groups The groups to process.
+     * @return The results of the groups, in order of submission.
+     */
+    public List<Future<Map<String, LogAnalyzer>>> submitLargestFirst(List<RotatedLogGroup> groups) {
+        List<RotatedLogGroup> ordered = new ArrayList<>(groups);
+        ordered.sort(Comparator.comparingLong(FileTaskScheduler::taskSize).reversed());
+
+        List<Future<Map<String, LogAnalyzer>>> futures = new ArrayList<>();
+        for (RotatedLogGroup group : ordered) {
+            futures.add(pool.submit(new FileTask(group)));
+        }
+
+        System.out.println("Scheduled " + ordered.size() + " files largest first on " + pool.getParallelism() + " threads");
+        return futures;
+    }
+
+    /**
+     * Submits byte ranges of files, largest first.
+     *
+     * @param chunks The ranges to process.
+     * @return The results of the ranges, in order of submission.
+     */
+    public List<Future<Map<String, LogAnalyzer>>> submitChunks(List<LogFileChunk> chunks) {
+        List<LogFileChunk> ordered = new ArrayList<>(chunks);
+        ordered.sort(Comparator.comparingLong(LogFileChunk::getLength).reversed());
+
+        List<Future<Map<String, LogAnalyzer>>> futures = new ArrayList<>();
+        for (LogFileChunk chunk : ordered) {
+            futures.add(pool.submit(new FileTask(chunk.getFile(), chunk.getStart(), chunk.getEnd())));
+        }
+        return futures;
+    }
+
+    /**
+     * Prints the number of tasks, their total and longest wall time, the skew (longest task
+     * relative to the mean) and the slowest tasks.
+     */
+    public void printTimings() {
+        List<TaskTiming> all = new ArrayList<>(timings);
+        if (all.isEmpty()) {
+            return;
+        }
+
+        all.sort(Comparator.comparingLong((TaskTiming timing) -> timing.millis).reversed());
+        long total = 0;
+        for (TaskTiming timing : all) {
+            total += timing.millis;
+        }
+        double mean = (double) total / all.size();
+        TaskTiming longest = all.get(0);
+
+        System.out.println("Task timings: " + all.size() + " tasks, total " + total + " ms, mean "
+                           + String.format("%.1f", mean) + " ms, longest " + longest.millis + " ms ("
+                           + longest.name + "), skew " + String.format("%.2f", mean > 0 ? longest.millis / mean : 1.0));
+        for (TaskTiming timing : all.subList(0, Math.min(SLOWEST_TASKS_SHOWN, all.size()))) {
+            System.out.println("  " + timing.name + ": " + timing.millis + " ms, " + timing.bytes + " bytes, "
+                               + timing.thread);
+        }
+    }
+
+    /**
+     * Shuts the pool down once the submitted tasks are done.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static long taskSize(RotatedLogGroup group) {
+        if (group.isSinglePlainFile()) {
+            long length = group.getSegments().get(0).length();
+            return Math.min(group.getSegmentEnd(0), length) - Math.min(group.getSegmentStart(0), length);
+        }
+        return group.getTotalSize();
+    }
+
+    /**
+     * Processes a rotation group, or a byte range of a plain file that is split while it is
+     * larger than the split size.
+     */
+    @SuppressWarnings("serial")
+    private class FileTask extends RecursiveTask<Map<String, LogAnalyzer>> {
+        private final RotatedLogGroup group;
+        private final File file;
+        private final long start;
+        private final long end;
+
+        FileTask(RotatedLogGroup group) {
+            this.group = group;
+            if (group.isSinglePlainFile()) {
+                this.file = group.getSegments().get(0);
+                this.start = group.getSegmentStart(0);
+                this.end = Math.min(group.getSegmentEnd(0), file.length());
+            } else {
+                this.file = null;
+                this.start = 0;
+                this.end = 0;
+            }
+        }
+
+        FileTask(File file, long start, long end) {
+            this.group = null;
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Map<String, LogAnalyzer> compute() {
+            try {
+                if (file == null) {
+                    // Rotated and compressed segments are read in order as one stream
+                    return run(new LogProcessingWorker(group, analyzerFactory.get(), config, fileReader),
+                               group.toString(), group.getTotalSize());
+                }
+
+                if (splitSize > 0 && end - start > splitSize) {
+                    LogFormat format = fileReader.getFormats().formatFor(file);
+                    long middle = chunker.findRecordStart(file, format, start + (end - start) / 2, end);
+
+                    if (middle > start && middle < end) {
+                        // Leave one half to be stolen while working on the other
+                        FileTask first = new FileTask(file, start, middle);
+                        first.fork();
+                        Map<String, LogAnalyzer> results = new FileTask(file, middle, end).compute();
+                        merge(results, first.join());
+                        return results;
+                    }
+                }
+
+                LogFileChunk chunk = new LogFileChunk(file, start, end);
+                return run(new LogProcessingWorker(chunk, analyzerFactory.get(), config, fileReader),
+                           chunk.toString(), chunk.getLength());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private Map<String, LogAnalyzer> run(LogProcessingWorker worker, String name, long bytes) throws IOException {
+            long started = System.nanoTime();
+            try {
+                return worker.call();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            } finally {
+                timings.add(new TaskTiming(name, bytes, (System.nanoTime() - started) / 1_000_000,
+                                           Thread.currentThread().getName()));
+            }
+        }
+
+        private void merge(Map<String, LogAnalyzer> results, Map<String, LogAnalyzer> other) {
+            for (Map.Entry<String, LogAnalyzer> entry : results.entrySet()) {
+                LogAnalyzer otherAnalyzer = other.get(entry.getKey());
+                if (otherAnalyzer != null) {
+                    entry.getValue().mergeResults(otherAnalyzer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Wall time of one leaf task.
+     */
+    private static class TaskTiming {
+        private final String name;
+        private final long bytes;
+        private final long millis;
+        private final String thread;
+
+        TaskTiming(String name, long bytes, long millis, String thread) {
+            this.name = name;
+            this.bytes = bytes;
+            this.millis = millis;
+            this.thread = thread;
+        }
+    }
+}
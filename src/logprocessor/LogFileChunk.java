@@ -0,0 +1,67 @@
+package logprocessor;
+
+import java.io.File;
+
+/**
+ * A byte range of a log file that starts at a record boundary.
+ * Large files are split into chunks so that they can be read and analyzed in parallel.
+ */
+public class LogFileChunk {
+    private final File file;
+    private final long start;
+    private final long end;
+    
+    /**
+     * Constructor for creating a chunk.
+     * 
+     * @param file The log file.
+     * @param start The byte offset of the first record in the chunk.
+     * @param end The byte offset of the first record of the next chunk, or the file size.
+     */
+    public LogFileChunk(File file, long start, long end) {
+        this.file = file;
+        this.start = start;
+        this.end = end;
+    }
+    
+    /**
+     * Gets the log file this chunk belongs to.
+     * 
+     * @return The log file.
+     */
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Gets the byte offset of the first record in the chunk.
+     * 
+     * @return The start offset.
+     */
+    public long getStart() {
+        return start;
+    }
+    
+    /**
+     * Gets the byte offset at which the chunk ends.
+     * 
+     * @return The end offset.
+     */
+    public long getEnd() {
+        return end;
+    }
+    
+    /**
+     * Gets the size of the chunk in bytes.
+     * 
+     * @return The chunk length.
+     */
+    public long getLength() {
+        return end - start;
+    }
+    
+    @Override
+    public String toString() {
+        return file.getName() + "[" + start + ", " + end + ")";
+    }
+}
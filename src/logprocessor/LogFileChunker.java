@@ -0,0 +1,162 @@
+package logprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import parser.format.LogFormat;
+
+/**
+ * Splits large log files into byte ranges that can be processed independently.
+ * Each tentative boundary is moved forward to the start of the next line that begins a record,
+ * so that multi-line records are never split between chunks.
+ */
+public class LogFileChunker {
+    
+    private final long chunkSize;
+    
+    /**
+     * Constructor for creating a chunker.
+     * 
+     * @param chunkSize The target size of a chunk in bytes.
+     */
+    public LogFileChunker(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Splits a file into record-aligned chunks.
+     * 
+     * @param file The log file.
+     * @param format The format of the file, used to recognize record starts.
+     * @return The chunks in file order; a single chunk if the file is not larger than the chunk size.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public List<LogFileChunk> split(File file, LogFormat format) throws IOException {
+        return split(file, format, 0, file.length());
+    }
+    
+    /**
+     * Splits a byte range of a file into record-aligned chunks.
+     * 
+     * @param file The log file.
+     * @param format The format of the file, used to recognize record starts.
+     * @param start The offset of the first record of the range.
+     * @param size The offset at which the range ends.
+     * @return The chunks in file order; none if the range is empty.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public List<LogFileChunk> split(File file, LogFormat format, long start, long size) throws IOException {
+        List<LogFileChunk> chunks = new ArrayList<>();
+        
+        while (start < size) {
+            long boundary = start + chunkSize >= size ? size : findRecordStart(file, format, start + chunkSize, size);
+            chunks.add(new LogFileChunk(file, start, boundary));
+            start = boundary;
+        }
+        
+        return chunks;
+    }
+    
+    /**
+     * Finds the first record start at or after a position.
+     * 
+     * @param file The log file.
+     * @param format The format of the file.
+     * @param position The tentative boundary.
+     * @param size The size of the file.
+     * @return The byte offset of the first record starting after the line containing position, or size.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public long findRecordStart(File file, LogFormat format, long position, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // Start one byte early so that a boundary falling exactly on a line start is kept
+            channel.position(position - 1);
+            LogLineReader reader = new LogLineReader(Channels.newInputStream(channel), Charset.defaultCharset(),
+                                                     position - 1, size);
+            
+            // Skip the rest of the line the tentative boundary fell into
+            if (reader.readLine() == null) {
+                return size;
+            }
+            
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty() && format.isRecordStart(line)) {
+                    return reader.getLineStart();
+                }
+            }
+        }
+        
+        return size;
+    }
+    
+    /**
+     * Finds the start of the last record that begins at or after a position.
+     * The last record of a live file may still grow (more stack trace lines, or a line that is
+     * still being written), so everything before it is final and everything from it is not.
+     * 
+     * @param file The log file.
+     * @param format The format of the file.
+     * @param start The offset of a record start to search from.
+     * @param size The size of the file.
+     * @return The offset of the last record start, or start if there is none after it.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public static long findLastRecordStart(File file, LogFormat format, long start, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return findLastRecordStart(channel, format, start, size);
+        }
+    }
+    
+    /**
+     * Finds the start of the last record that begins at or after a position of an open file,
+     * leaving the channel open.
+     * 
+     * @param channel The open channel of the file.
+     * @param format The format of the file.
+     * @param start The offset of a record start to search from.
+     * @param size The offset at which to stop.
+     * @return The offset of the last record start, or start if there is none after it.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public static long findLastRecordStart(FileChannel channel, LogFormat format, long start, long size) throws IOException {
+        long window = 64 * 1024;
+        
+        while (true) {
+            long scanStart = Math.max(start, size - window);
+            
+            // As in findRecordStart, start one byte early and skip the partial line
+            long position = scanStart > start ? scanStart - 1 : scanStart;
+            channel.position(position);
+            LogLineReader reader = new LogLineReader(Channels.newInputStream(channel), Charset.defaultCharset(),
+                                                     position, size);
+            if (scanStart > start) {
+                reader.readLine();
+            }
+            
+            long lastRecordStart = -1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty() && format.isRecordStart(line)) {
+                    lastRecordStart = reader.getLineStart();
+                }
+            }
+            
+            if (lastRecordStart >= 0) {
+                return lastRecordStart;
+            }
+            
+            if (scanStart == start) {
+                return start;
+            }
+            // The last record is longer than the window
+            window *= 4;
+        }
+    }
+}
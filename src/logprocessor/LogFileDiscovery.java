@@ -0,0 +1,178 @@
+package logprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * Finds log files under the log directory and hands them out while the tree is still being walked.
+ *
+ * The files directly in a directory are grouped into rotation groups and passed on before its
+ * subdirectories are listed, so files at the top of the log directory are processed first and
+ * workers start before the whole tree is known. Within a directory each group is passed on as
+ * soon as the attributes of its own files have been read. Configuration:
+ *   log.discovery.recursive         descend into subdirectories
+ *   log.discovery.include           comma-separated globs a file must match (default: any log segment)
+ *   log.discovery.exclude           comma-separated globs of files or directories to skip
+ *   log.discovery.min.size          minimum file size in bytes
+ *   log.discovery.max.age.minutes   only files modified within this many minutes (0: no limit)
+ * Globs containing '/' are matched against the path relative to the log directory, other globs
+ * against the file or directory name.
+ */
+public class LogFileDiscovery {
+
+    private final boolean recursive;
+    private final List<PathGlob> includes;
+    private final List<PathGlob> excludes;
+    private final long minSize;
+    private final long maxAgeMillis;
+
+    /**
+     * Constructor for creating a discovery from configuration.
+     *
+     * @param config Configuration properties.
+     */
+    public LogFileDiscovery(Properties config) {
+        this.recursive = Boolean.parseBoolean(config.getProperty("log.discovery.recursive", "true").trim());
+        this.includes = parseGlobs(config.getProperty("log.discovery.include", ""));
+        this.excludes = parseGlobs(config.getProperty("log.discovery.exclude", ""));
+        this.minSize = Long.parseLong(config.getProperty("log.discovery.min.size", "0").trim());
+        this.maxAgeMillis = Long.parseLong(config.getProperty("log.discovery.max.age.minutes", "0").trim()) * 60_000L;
+    }
+
+    /**
+     * Walks the log directory and passes each rotation group to a consumer as soon as it is
+     * complete.
+     *
+     * @param directoryPath The path to the directory containing log files.
+     * @param consumer The consumer receiving the groups.
+     * @return The number of files found.
+     * @throws IllegalArgumentException If the directory is invalid or cannot be accessed.
+     * @throws IOException If the directory cannot be walked.
+     */
+    public int discover(String directoryPath, Consumer<RotatedLogGroup> consumer) throws IOException {
+        Path root = Paths.get(directoryPath).toAbsolutePath().normalize();
+
+        if (!Files.isDirectory(root)) {
+            System.out.println("invalid log path: " + root);
+            throw new IllegalArgumentException("Invalid log directory: " + directoryPath);
+        }
+
+        long oldestModified = maxAgeMillis > 0 ? System.currentTimeMillis() - maxAgeMillis : Long.MIN_VALUE;
+        return discoverDirectory(root, root, oldestModified, consumer);
+    }
+
+    /**
+     * Hands out the groups of one directory, then descends into its subdirectories.
+     *
+     * Only the names are listed at first, which is enough to form the rotation groups. The
+     * attributes of the files, which take a file system call each, are then read group by group,
+     * and each group is passed on once its own files are checked, so that workers start on the
+     * first groups of a large directory while the attributes of the rest are still being read.
+     */
+    private int discoverDirectory(Path root, Path dir, long oldestModified, Consumer<RotatedLogGroup> consumer) {
+        List<File> candidates = new ArrayList<>();
+        List<Path> subdirectories = new ArrayList<>();
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                Path relative = root.relativize(entry);
+                if (matchesAny(excludes, relative)) {
+                    continue;
+                }
+
+                if (RotatedLogGroup.isLogSegment(entry.getFileName().toString())) {
+                    if (includes.isEmpty() || matchesAny(includes, relative)) {
+                        candidates.add(entry.toFile());
+                    }
+                } else if (recursive && Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    subdirectories.add(entry);
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            System.out.println("Cannot access " + dir + ": " + e.getMessage());
+        }
+
+        int found = 0;
+        for (RotatedLogGroup group : RotatedLogGroup.groupFiles(candidates)) {
+            List<File> segments = new ArrayList<>();
+            for (File segment : group.getSegments()) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(segment.toPath(), BasicFileAttributes.class,
+                                                                     LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        // A directory named like a log file
+                        if (recursive) {
+                            subdirectories.add(segment.toPath());
+                        }
+                    } else if (attrs.isRegularFile()
+                            && attrs.size() >= minSize
+                            && attrs.lastModifiedTime().toMillis() >= oldestModified) {
+                        segments.add(segment);
+                    }
+                } catch (IOException e) {
+                    System.out.println("Cannot access " + segment + ": " + e.getMessage());
+                }
+            }
+
+            if (!segments.isEmpty()) {
+                found += segments.size();
+                consumer.accept(segments.size() == group.getSegments().size()
+                                ? group : RotatedLogGroup.groupFiles(segments).get(0));
+            }
+        }
+
+        for (Path subdirectory : subdirectories) {
+            found += discoverDirectory(root, subdirectory, oldestModified, consumer);
+        }
+        return found;
+    }
+
+    private static List<PathGlob> parseGlobs(String globs) {
+        List<PathGlob> result = new ArrayList<>();
+        for (String glob : globs.split(",")) {
+            if (!glob.trim().isEmpty()) {
+                result.add(new PathGlob(glob.trim()));
+            }
+        }
+        return result;
+    }
+
+    private static boolean matchesAny(List<PathGlob> globs, Path relative) {
+        for (PathGlob glob : globs) {
+            if (glob.matches(relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A glob matched against the relative path if it contains '/', otherwise against the name.
+     */
+    private static class PathGlob {
+        private final PathMatcher matcher;
+        private final boolean matchPath;
+
+        PathGlob(String glob) {
+            this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            this.matchPath = glob.contains("/");
+        }
+
+        boolean matches(Path relative) {
+            return matcher.matches(matchPath ? relative : relative.getFileName());
+        }
+    }
+}
@@ -1,20 +1,77 @@
 package logprocessor;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
+import java.util.function.Consumer;
 
 import model.LogEntry;
-import parser.LogParser;
+import parser.format.LogFormat;
+import parser.format.LogFormatRegistry;
 
 /**
  * Handles reading log files and parsing them into LogEntry objects.
+ * The format of each file is chosen by a {@link LogFormatRegistry}, and continuation
+ * lines such as stack trace frames are attached to their record by a {@link LogRecordAssembler}.
  */
 public class LogFileReader {
     
+    protected final LogFormatRegistry formats;
+    protected final Properties config;
+    protected final CpuLimiter cpuLimiter;
+    private final Path logDirectory;
+    private DecompressionPipeline decompression;
+    
+    /**
+     * Constructor for creating a reader for the standard bracket format only.
+     */
+    public LogFileReader() {
+        this(new LogFormatRegistry(new Properties()), new Properties());
+    }
+    
+    /**
+     * Constructor for creating a reader that selects formats through a registry.
+     * 
+     * @param formats The format registry.
+     * @param config Configuration properties.
+     */
+    public LogFileReader(LogFormatRegistry formats, Properties config) {
+        this.formats = formats;
+        this.config = config;
+        this.cpuLimiter = CpuLimiter.fromConfig(config);
+        this.logDirectory = Paths.get(config.getProperty("log.directory", "logs")).toAbsolutePath().normalize();
+    }
+    
+    /**
+     * Gets the format registry used to select the format of each file.
+     * 
+     * @return The format registry.
+     */
+    public LogFormatRegistry getFormats() {
+        return formats;
+    }
+    
+    /**
+     * Gets the limiter that workers hold while parsing and analyzing with this reader.
+     * The reader gives up the permit while it waits for data.
+     * 
+     * @return The CPU limiter.
+     */
+    public CpuLimiter getCpuLimiter() {
+        return cpuLimiter;
+    }
+    
     /**
      * Reads a log file and parses its contents into LogEntry objects.
      * 
@@ -24,72 +81,272 @@ public class LogFileReader {
      */
     public List<LogEntry> readLogFile(File file) throws IOException {
         System.out.println("Reading file: " + file.getName() + " (size: " + file.length() + " bytes)");
+        return readLogFile(file, 0, Long.MAX_VALUE);
+    }
+    
+    /**
+     * Reads the records of a log file that start within a byte range.
+     * The range must begin at the start of a record (see {@link LogFileChunker}); a record
+     * starting before the end of the range is read completely even if it extends past it.
+     * 
+     * @param file The log file to read.
+     * @param start The byte offset of the first record.
+     * @param end The byte offset at which to stop.
+     * @return A list of LogEntry objects.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public List<LogEntry> readLogFile(File file, long start, long end) throws IOException {
         List<LogEntry> entries = new ArrayList<>();
+        readLogFile(file, start, end, entries::addAll);
+        return entries;
+    }
+    
+    /**
+     * Streams the records of a log file that start within a byte range to a consumer, in batches
+     * of at most log.batch.size entries, so that only one batch per file is held in memory.
+     * The batch list is reused after the consumer returns and must not be retained.
+     * 
+     * @param file The log file to read.
+     * @param start The byte offset of the first record.
+     * @param end The byte offset at which to stop.
+     * @param batchConsumer The consumer receiving each batch of entries.
+     * @return The number of entries read.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public int readLogFile(File file, long start, long end, Consumer<List<LogEntry>> batchConsumer) throws IOException {
+        EntryBatcher batcher = new EntryBatcher(getBatchSize(), batchConsumer);
+        LogFormat format = formats.formatFor(file);
+        LogRecordAssembler assembler = new LogRecordAssembler(format, entryFileName(file), config);
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            int lineCount = 0;
-            int validEntries = 0;
-            
-            while ((line = reader.readLine()) != null) {
-                lineCount++;
-                // Skip empty lines
-                if (line.trim().isEmpty()) {
-                    continue;
-                }
-                
-                // Parse the log entry and include the file name
-                LogEntry entry = LogParser.parse(line, file.getName());
-                if (entry != null) {
-                    entries.add(entry);
-                    validEntries++;
-                }
-            }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int lineCount = readLines(channel, start, end, assembler, batcher);
             
-            System.out.println("File " + file.getName() + " - Total lines: " + lineCount + ", Valid entries: " + validEntries);
+            System.out.println("File " + file.getName() + " - Total lines: " + lineCount + ", Valid entries: " + batcher.getTotal()
+                               + orphanSummary(assembler));
         } catch (IOException e) {
             System.out.println("error processing file " + file.getName() + ": " + e.getMessage());
             throw e;
         }
         
-        return entries;
+        return batcher.getTotal();
+    }
+    
+    /**
+     * Streams the records in a byte range of an already open log file, without closing it.
+     * Used when following files, where the channel keeps pointing at a file after it is rotated away.
+     * 
+     * @param channel The open channel of the file.
+     * @param file The path the file was opened from, used to select its format and name.
+     * @param start The byte offset of the first record.
+     * @param end The byte offset at which to stop.
+     * @param batchConsumer The consumer receiving each batch of entries.
+     * @return The number of entries read.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    public int readLogChannel(FileChannel channel, File file, long start, long end,
+                              Consumer<List<LogEntry>> batchConsumer) throws IOException {
+        EntryBatcher batcher = new EntryBatcher(getBatchSize(), batchConsumer);
+        LogRecordAssembler assembler = new LogRecordAssembler(formats.formatFor(file), entryFileName(file), config);
+        readLines(channel, start, end, assembler, batcher);
+        
+        if (assembler.getOrphanLines() > 0) {
+            System.out.println("File " + file.getName() + " - Valid entries: " + batcher.getTotal() + orphanSummary(assembler));
+        }
+        return batcher.getTotal();
     }
     
     /**
-     * Gets a list of log files from a directory.
+     * Reads the lines in a byte range of an open channel, leaving the channel open.
+     * 
+     * @return The number of lines read.
+     */
+    private int readLines(FileChannel channel, long start, long end, LogRecordAssembler assembler,
+                          EntryBatcher batcher) throws IOException {
+        channel.position(start);
+        InputStream input = cpuLimiter.releaseWhileReading(Channels.newInputStream(new UnclosableChannel(channel)));
+        return readLines(new LogLineReader(input, Charset.defaultCharset(), start, end), assembler, batcher, true);
+    }
+    
+    /**
+     * Streams all segments of a rotation group, oldest first, as one file named after the live log.
+     * Compressed segments are decompressed in the background while earlier segments are parsed.
+     * 
+     * @param group The rotation group.
+     * @param batchConsumer The consumer receiving each batch of entries.
+     * @return The number of entries read.
+     * @throws IOException If an error occurs while reading the segments.
+     */
+    public int readLogGroup(RotatedLogGroup group, Consumer<List<LogEntry>> batchConsumer) throws IOException {
+        EntryBatcher batcher = new EntryBatcher(getBatchSize(), batchConsumer);
+        LogFormat format = formats.formatFor(group.getLogicalFile());
+        LogRecordAssembler assembler = new LogRecordAssembler(format, entryFileName(group.getLogicalFile()), config);
+        
+        try (LogLineReader reader = openLines(group)) {
+            // Offsets in the concatenated segments do not point into any one file
+            int lineCount = readLines(reader, assembler, batcher, false);
+            
+            System.out.println("File " + group + " - Total lines: " + lineCount + ", Valid entries: " + batcher.getTotal()
+                               + orphanSummary(assembler));
+        } catch (IOException e) {
+            System.out.println("error processing file " + group.getLogicalName() + ": " + e.getMessage());
+            throw e;
+        }
+        
+        return batcher.getTotal();
+    }
+    
+    /**
+     * Opens the lines of a byte range of a file, for callers that parse them separately.
+     * 
+     * @param file The log file.
+     * @param start The byte offset of the first record.
+     * @param end The byte offset at which to stop.
+     * @return The line reader, which closes the file when closed.
+     * @throws IOException If the file cannot be opened.
+     */
+    LogLineReader openLines(File file, long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        channel.position(start);
+        return new LogLineReader(cpuLimiter.releaseWhileReading(Channels.newInputStream(channel)), Charset.defaultCharset(),
+                                 start, end);
+    }
+    
+    /**
+     * Opens the lines of all segments of a rotation group, decompressing in the background.
+     * 
+     * @param group The rotation group.
+     * @return The line reader.
+     */
+    LogLineReader openLines(RotatedLogGroup group) {
+        InputStream input = cpuLimiter.releaseWhileReading(getDecompressionPipeline().open(group));
+        return new LogLineReader(input, Charset.defaultCharset(), 0, Long.MAX_VALUE);
+    }
+    
+    /**
+     * Reads lines until the end of the input, assembling records into batches.
+     * 
+     * @param reader The line reader.
+     * @param assembler The record assembler of the file.
+     * @param batcher The batcher receiving completed records.
+     * @param fileOffsets Whether the reader's offsets are offsets in the file, to be recorded in the entries.
+     * @return The number of lines read.
+     * @throws IOException If an error occurs while reading.
+     */
+    private int readLines(LogLineReader reader, LogRecordAssembler assembler, EntryBatcher batcher,
+                          boolean fileOffsets) throws IOException {
+        String line;
+        int lineCount = 0;
+        
+        while ((line = reader.readLine()) != null) {
+            lineCount++;
+            // Skip empty lines
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            
+            // Parse the log entry (or attach a continuation line) and include the file name
+            batcher.add(assembler.acceptLine(line, fileOffsets ? reader.getLineStart() : -1));
+        }
+        
+        batcher.add(assembler.finish());
+        batcher.flush();
+        return lineCount;
+    }
+    
+    /**
+     * Gets the decompression pipeline, creating it on first use.
+     * 
+     * @return The decompression pipeline.
+     */
+    private synchronized DecompressionPipeline getDecompressionPipeline() {
+        if (decompression == null) {
+            decompression = new DecompressionPipeline(config);
+        }
+        return decompression;
+    }
+    
+    /**
+     * Gets the configured number of entries per batch.
+     * 
+     * @return The batch size.
+     */
+    protected int getBatchSize() {
+        return Math.max(1, Integer.parseInt(config.getProperty("log.batch.size", "1000").trim()));
+    }
+    
+    /**
+     * Gets a list of log files from a directory, including rotated (NAME.log.N) and
+     * compressed (.gz, .zst) segments, applying the log.discovery settings.
      * 
      * @param directoryPath The path to the directory containing log files.
      * @return A list of log files.
      * @throws IllegalArgumentException If the directory is invalid or cannot be accessed.
      */
     public List<File> getLogFiles(String directoryPath) {
-        System.out.println("Searching for log files in directory: " + directoryPath);
-        System.out.println("Current working directory: " + System.getProperty("user.dir"));
+        List<File> logFiles = new ArrayList<>();
+        
+        try {
+            new LogFileDiscovery(config).discover(directoryPath, group -> logFiles.addAll(group.getSegments()));
+        } catch (IOException e) {
+            System.out.println("error listing directory " + directoryPath + ": " + e.getMessage());
+            throw new IllegalArgumentException("Invalid log directory: " + directoryPath, e);
+        }
+        
+        System.out.println("Found " + logFiles.size() + " log files to process");
+        return logFiles;
+    }
+    
+    /**
+     * Describes the continuation lines of a file that could not be attached to any record,
+     * e.g. because the line starting the record failed to parse.
+     * 
+     * @param assembler The record assembler of the file.
+     * @return The count to append to the file summary, or an empty string if there are none.
+     */
+    static String orphanSummary(LogRecordAssembler assembler) {
+        return assembler.getOrphanLines() > 0 ? ", Orphan continuation lines: " + assembler.getOrphanLines() : "";
+    }
+    
+    /**
+     * Gets the file name recorded in the entries of a file: the path relative to log.directory,
+     * which is just the file name for files directly in it.
+     * 
+     * @param file The log file.
+     * @return The name used for the file in entries and reports.
+     */
+    protected String entryFileName(File file) {
+        Path absolute = file.toPath().toAbsolutePath().normalize();
         
-        File directory = new File(directoryPath);
+        if (absolute.startsWith(logDirectory) && absolute.getNameCount() > logDirectory.getNameCount() + 1) {
+            return logDirectory.relativize(absolute).toString().replace(File.separatorChar, '/');
+        }
         
-        if (!directory.exists() || !directory.isDirectory()) {
-            System.out.println("invalid log path: " + directory.getAbsolutePath());
-            throw new IllegalArgumentException("Invalid log directory: " + directoryPath);
+        return file.getName();
+    }
+    
+    /**
+     * Read-only view of a channel whose close() leaves the underlying channel open.
+     */
+    private static class UnclosableChannel implements ReadableByteChannel {
+        private final FileChannel channel;
+        
+        UnclosableChannel(FileChannel channel) {
+            this.channel = channel;
         }
         
-        List<File> logFiles = new ArrayList<>();
-        File[] files = directory.listFiles();
+        @Override
+        public int read(ByteBuffer buffer) throws IOException {
+            return channel.read(buffer);
+        }
         
-        if (files != null) {
-            System.out.println("Found " + files.length + " files in directory");
-            for (File file : files) {
-                System.out.println("Checking file: " + file.getName() + " - isFile: " + file.isFile());
-                if (file.isFile() && file.getName().toLowerCase().endsWith(".log")) {
-                    logFiles.add(file);
-                    System.out.println("Added " + file.getName() + " to processing list");
-                }
-            }
-        } else {
-            System.out.println("No files found in directory or directory cannot be read");
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
         }
         
-        System.out.println("Found " + logFiles.size() + " log files to process");
-        return logFiles;
+        @Override
+        public void close() {
+            // The owner of the channel closes it
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,359 @@
+package logprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import analyzer.FusedAnalysisPass;
+import analyzer.LogAnalyzer;
+import model.LogEntry;
+
+/**
+ * Long-running follow mode that keeps analyzing data appended to the log files.
+ *
+ * The log directory is watched with a WatchService, and every tracked file is also polled on each
+ * cycle, since change notifications are unreliable on network file systems. For each file the
+ * follower keeps an open channel and the offset up to which complete records have been analyzed.
+ * On a change only the newly appended complete records are read and fed to the analyzers. The
+ * last record is held back, since continuation lines such as a stack trace may still follow it,
+ * and is read together with a final line without terminator once the file has not grown for a
+ * second.
+ *
+ * A file whose identity changes (rotation) is first drained through the old channel, which still
+ * points at the rotated file, before the new file is read from the start. A file that shrinks
+ * (truncation) is read again from the start. The report is refreshed every
+ * log.follow.report.interval seconds when new entries have been analyzed.
+ */
+public class LogFollower {
+
+    // Time a file must stay the same size before a final unterminated line is read
+    private static final long IDLE_MILLIS = 1000;
+
+    private final Properties config;
+    private final LogFileReader fileReader;
+    private final Map<String, LogAnalyzer> analyzers;
+    private final FusedAnalysisPass fusedPass;
+    private final Runnable reportWriter;
+    private final Map<Path, FollowedFile> followedFiles;
+    private final long reportIntervalMillis;
+    private final boolean fromStart;
+
+    private long pendingEntries;
+
+    /**
+     * Constructor for creating a follower.
+     *
+     * @param config Configuration properties.
+     * @param fileReader The reader used to parse appended data.
+     * @param analyzers The analyzers receiving all entries.
+     * @param reportWriter Writes the report from the current analyzer state.
+     */
+    public LogFollower(Properties config, LogFileReader fileReader, Map<String, LogAnalyzer> analyzers,
+                       Runnable reportWriter) {
+        this.config = config;
+        this.fileReader = fileReader;
+        this.analyzers = analyzers;
+        this.fusedPass = FusedAnalysisPass.isEnabled(config) ? new FusedAnalysisPass(analyzers.values(), config) : null;
+        this.reportWriter = reportWriter;
+        this.followedFiles = new HashMap<>();
+        this.reportIntervalMillis = Long.parseLong(config.getProperty("log.follow.report.interval", "60").trim()) * 1000L;
+        this.fromStart = Boolean.parseBoolean(config.getProperty("log.follow.from.start", "true").trim());
+    }
+
+    /**
+     * Follows the log directory until the thread is interrupted.
+     *
+     * @throws IOException If the log directory cannot be watched.
+     */
+    public void follow() throws IOException {
+        String logDirectory = config.getProperty("log.directory");
+        Path root = Paths.get(logDirectory).toAbsolutePath().normalize();
+        boolean recursive = Boolean.parseBoolean(config.getProperty("log.discovery.recursive", "true").trim());
+
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+            registerDirectories(watcher, root, recursive, watchedDirectories);
+
+            // Existing files are analyzed from the start, or only from their current end
+            discoverFiles(logDirectory, !fromStart);
+            pollFiles();
+            reportWriter.run();
+            pendingEntries = 0;
+
+            System.out.println("Following " + followedFiles.size() + " log files in " + root);
+            long nextReport = System.currentTimeMillis() + reportIntervalMillis;
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watcher.poll(Math.max(1, nextReport - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+
+                boolean rescan = false;
+                while (key != null) {
+                    Path directory = watchedDirectories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            rescan = true;
+                        } else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && directory != null) {
+                            Path created = directory.resolve((Path) event.context());
+                            if (recursive && Files.isDirectory(created)) {
+                                registerDirectories(watcher, created, true, watchedDirectories);
+                            }
+                            rescan = true;
+                        }
+                    }
+                    if (!key.reset()) {
+                        watchedDirectories.remove(key);
+                    }
+                    key = watcher.poll();
+                }
+
+                if (rescan) {
+                    discoverFiles(logDirectory, false);
+                }
+                pollFiles();
+
+                if (System.currentTimeMillis() >= nextReport) {
+                    if (pendingEntries > 0) {
+                        System.out.println("Follow mode: " + pendingEntries + " new entries, refreshing report");
+                        reportWriter.run();
+                        pendingEntries = 0;
+                    }
+                    nextReport = System.currentTimeMillis() + reportIntervalMillis;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (FollowedFile followed : followedFiles.values()) {
+                followed.close();
+            }
+            if (pendingEntries > 0) {
+                reportWriter.run();
+            }
+        }
+    }
+
+    /**
+     * Registers a directory, and its subdirectories if recursive, with the watch service.
+     */
+    private void registerDirectories(WatchService watcher, Path directory, boolean recursive,
+                                     Map<WatchKey, Path> watchedDirectories) throws IOException {
+        if (!recursive) {
+            watchedDirectories.put(directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                                                      StandardWatchEventKinds.ENTRY_MODIFY), directory);
+            return;
+        }
+
+        try (var directories = Files.walk(directory)) {
+            for (Path dir : (Iterable<Path>) directories.filter(Files::isDirectory)::iterator) {
+                watchedDirectories.put(dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                                                    StandardWatchEventKinds.ENTRY_MODIFY), dir);
+            }
+        }
+    }
+
+    /**
+     * Starts following live log files that are not followed yet. Rotated and compressed
+     * archives are not followed, since they no longer change.
+     *
+     * @param logDirectory The log directory.
+     * @param skipExisting True to start at the current end of newly found files.
+     */
+    private void discoverFiles(String logDirectory, boolean skipExisting) throws IOException {
+        new LogFileDiscovery(config).discover(logDirectory, group -> {
+            File live = group.getLogicalFile();
+            Path path = live.toPath().toAbsolutePath().normalize();
+
+            if (live.isFile() && !followedFiles.containsKey(path)) {
+                FollowedFile followed = new FollowedFile(path);
+                followed.lastSize = live.length();
+                if (skipExisting) {
+                    followed.offset = followed.lastSize;
+                }
+                followedFiles.put(path, followed);
+            }
+        });
+    }
+
+    /**
+     * Reads the new data of every followed file.
+     */
+    private void pollFiles() {
+        boolean analyzed = false;
+
+        Iterator<FollowedFile> iterator = followedFiles.values().iterator();
+        while (iterator.hasNext()) {
+            FollowedFile followed = iterator.next();
+            try {
+                analyzed |= followed.poll();
+            } catch (IOException e) {
+                System.out.println("error following file " + followed.path + ": " + e.getMessage());
+                followed.close();
+                iterator.remove();
+            }
+        }
+
+        if (analyzed) {
+            for (LogAnalyzer analyzer : analyzers.values()) {
+                analyzer.finish(config);
+            }
+        }
+    }
+
+    /**
+     * Passes a batch of new entries to all analyzers.
+     */
+    private void analyze(List<LogEntry> batch) {
+        if (fusedPass != null) {
+            fusedPass.analyze(batch);
+        } else {
+            for (LogAnalyzer analyzer : analyzers.values()) {
+                analyzer.analyze(batch, config);
+            }
+        }
+        pendingEntries += batch.size();
+    }
+
+    /**
+     * State of one followed file.
+     */
+    private class FollowedFile {
+        private final Path path;
+        private FileChannel channel;
+        private Object fileKey;
+        private long offset;
+        private long lastSize;
+        private long lastGrowth;
+
+        FollowedFile(Path path) {
+            this.path = path;
+        }
+
+        /**
+         * Reads the complete records appended since the last poll.
+         *
+         * @return True if any data was analyzed.
+         */
+        boolean poll() throws IOException {
+            if (!Files.exists(path)) {
+                // Rotated away and not recreated yet; finish the old file if it is still open
+                return channel != null && drain();
+            }
+
+            Object currentKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            boolean analyzed = false;
+
+            if (channel != null && fileKey != null && !Objects.equals(fileKey, currentKey)) {
+                // Rotation: the old channel still points at the rotated file
+                System.out.println("Rotation detected for " + path.getFileName());
+                analyzed = drain();
+                close();
+                offset = 0;
+                lastSize = -1;
+            }
+
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+                fileKey = currentKey;
+            }
+
+            long size = channel.size();
+            if (size < offset) {
+                System.out.println("Truncation detected for " + path.getFileName());
+                offset = 0;
+            }
+
+            long now = System.currentTimeMillis();
+            if (size != lastSize) {
+                lastSize = size;
+                lastGrowth = now;
+            }
+            boolean idle = now - lastGrowth >= IDLE_MILLIS;
+            return readAppended(size, idle) | analyzed;
+        }
+
+        /**
+         * Reads the rest of the currently open file, including a final unterminated line.
+         */
+        private boolean drain() throws IOException {
+            long size = channel.size();
+            if (size <= offset) {
+                return false;
+            }
+
+            fileReader.readLogChannel(channel, path.toFile(), offset, size, LogFollower.this::analyze);
+            offset = size;
+            return true;
+        }
+
+        /**
+         * Reads the complete records between the offset and the given size. The last record and
+         * a final unterminated line are only read once the file has stopped growing, since they
+         * may still be being written; each read then starts at a record start.
+         */
+        private boolean readAppended(long size, boolean idle) throws IOException {
+            long end = idle ? size : LogFileChunker.findLastRecordStart(channel, fileReader.getFormats().formatFor(path.toFile()),
+                                                                         offset, lastLineEnd(size));
+            if (end <= offset) {
+                return false;
+            }
+
+            fileReader.readLogChannel(channel, path.toFile(), offset, end, LogFollower.this::analyze);
+            offset = end;
+            return true;
+        }
+
+        /**
+         * Finds the position after the last line terminator before size, so that a line that is
+         * still being written is left for the next poll.
+         */
+        private long lastLineEnd(long size) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long blockEnd = size;
+
+            while (blockEnd > offset) {
+                long blockStart = Math.max(offset, blockEnd - buffer.capacity());
+                buffer.clear().limit((int) (blockEnd - blockStart));
+                channel.read(buffer, blockStart);
+
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        return blockStart + i + 1;
+                    }
+                }
+                blockEnd = blockStart;
+            }
+
+            return offset;
+        }
+
+        void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Nothing left to read from it
+                }
+                channel = null;
+            }
+        }
+    }
+}
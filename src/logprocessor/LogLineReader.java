@@ -0,0 +1,137 @@
+package logprocessor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Line reader that works on bytes and keeps track of the byte offset of every line,
+ * so that a file can be read from and up to arbitrary line-aligned byte positions.
+ * Lines end with "\n" or "\r\n"; the terminator is not part of the returned line.
+ */
+public class LogLineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream input;
+    private final Charset charset;
+    private final long end;
+    private final byte[] buffer;
+
+    private byte[] lineBuffer;
+    private int bufferPosition;
+    private int bufferLimit;
+    private long position;
+    private long lineStart;
+    private boolean lastLineTerminated;
+
+    /**
+     * Constructor for creating a line reader.
+     *
+     * @param input The stream to read, positioned at start.
+     * @param charset The charset of the file.
+     * @param start The byte offset of the stream position within the file.
+     * @param end The byte offset to stop at; lines starting at or after it are not returned.
+     */
+    public LogLineReader(InputStream input, Charset charset, long start, long end) {
+        this.input = input;
+        this.charset = charset;
+        this.end = end;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.lineBuffer = new byte[256];
+        this.position = start;
+        this.lineStart = start;
+        this.lastLineTerminated = true;
+    }
+
+    /**
+     * Reads the next line.
+     *
+     * @return The decoded line, or null at the end of the stream or range.
+     * @throws IOException If an error occurs while reading.
+     */
+    public String readLine() throws IOException {
+        if (position >= end) {
+            return null;
+        }
+
+        lineStart = position;
+        int length = 0;
+
+        while (true) {
+            if (bufferPosition >= bufferLimit && !fill()) {
+                if (length == 0) {
+                    return null;
+                }
+                lastLineTerminated = false;
+                return decode(length);
+            }
+
+            byte b = buffer[bufferPosition++];
+            position++;
+
+            if (b == '\n') {
+                lastLineTerminated = true;
+                return decode(length);
+            }
+
+            if (length == lineBuffer.length) {
+                lineBuffer = Arrays.copyOf(lineBuffer, length * 2);
+            }
+            lineBuffer[length++] = b;
+        }
+    }
+
+    /**
+     * Gets the byte offset of the first byte of the line last returned by {@link #readLine()}.
+     *
+     * @return The offset of the last line.
+     */
+    public long getLineStart() {
+        return lineStart;
+    }
+
+    /**
+     * Gets the byte offset after the last consumed byte.
+     *
+     * @return The current position.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Tells whether the last line returned ended with a line terminator. An unterminated line
+     * at the end of a file may still be being written.
+     *
+     * @return True if the last line was complete.
+     */
+    public boolean isLastLineTerminated() {
+        return lastLineTerminated;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private boolean fill() throws IOException {
+        int read = input.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+
+        bufferPosition = 0;
+        bufferLimit = read;
+        return true;
+    }
+
+    private String decode(int length) {
+        if (length > 0 && lineBuffer[length - 1] == '\r') {
+            length--;
+        }
+        return new String(lineBuffer, 0, length, charset);
+    }
+}
@@ -2,21 +2,25 @@ package logprocessor;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 
+import analyzer.FusedAnalysisPass;
 import analyzer.LogAnalyzer;
 import model.LogEntry;
 
 /**
- * Worker class that processes a log file in a separate thread.
+ * Worker class that processes a log file, a chunk of a large log file, or the rotation
+ * sequence of a log file, in a separate thread.
  */
 public class LogProcessingWorker implements Callable<Map<String, LogAnalyzer>> {
 
     private final File logFile;
+    private final LogFileChunk chunk;
+    private final RotatedLogGroup group;
     private final Map<String, LogAnalyzer> analyzers;
     private final Properties config;
     private final LogFileReader fileReader;
@@ -24,6 +28,28 @@ public class LogProcessingWorker implements Callable<Map<String, LogAnalyzer>> {
     public LogProcessingWorker(File logFile, Map<String, LogAnalyzer> analyzers, 
                               Properties config, LogFileReader fileReader) {
         this.logFile = logFile;
+        this.chunk = null;
+        this.group = null;
+        this.analyzers = analyzers;
+        this.config = config;
+        this.fileReader = fileReader;
+    }
+    
+    public LogProcessingWorker(LogFileChunk chunk, Map<String, LogAnalyzer> analyzers, 
+                              Properties config, LogFileReader fileReader) {
+        this.logFile = chunk.getFile();
+        this.chunk = chunk;
+        this.group = null;
+        this.analyzers = analyzers;
+        this.config = config;
+        this.fileReader = fileReader;
+    }
+    
+    public LogProcessingWorker(RotatedLogGroup group, Map<String, LogAnalyzer> analyzers, 
+                              Properties config, LogFileReader fileReader) {
+        this.logFile = group.getLogicalFile();
+        this.chunk = null;
+        this.group = group;
         this.analyzers = analyzers;
         this.config = config;
         this.fileReader = fileReader;
@@ -31,26 +57,52 @@ public class LogProcessingWorker implements Callable<Map<String, LogAnalyzer>> {
     
     @Override
     public Map<String, LogAnalyzer> call() throws Exception {
-        System.out.println("Worker starting for file: " + logFile.getName());
+        String taskName = chunk != null ? chunk.toString() : group != null ? group.toString() : logFile.getName();
+        System.out.println("Worker starting for file: " + taskName);
+        
+        // Parsing and analysis count against the CPU limit; the reader gives the permit up while waiting for I/O
+        CpuLimiter cpuLimiter = fileReader.getCpuLimiter();
+        cpuLimiter.acquire();
         try {
-            // Read the log file
-            List<LogEntry> entries = fileReader.readLogFile(logFile);
+            for (String analyzerName : analyzers.keySet()) {
+                System.out.println("Applying analyzer " + analyzerName + " to " + taskName);
+            }
+            
+            // Stream the log file (or this worker's chunk or rotation group) through the analyzers batch by batch,
+            // either one analyzer after the other or in one fused pass over the entries
+            Consumer<List<LogEntry>> analyzeBatch;
+            if (FusedAnalysisPass.isEnabled(config)) {
+                FusedAnalysisPass pass = new FusedAnalysisPass(analyzers.values(), config);
+                System.out.println("Fused pass for " + taskName + ": " + pass.describe());
+                analyzeBatch = pass::analyze;
+            } else {
+                analyzeBatch = batch -> {
+                    for (LogAnalyzer analyzer : analyzers.values()) {
+                        analyzer.analyze(batch, config);
+                    }
+                };
+            }
+            
+            if (group != null) {
+                fileReader.readLogGroup(group, analyzeBatch);
+            } else {
+                long start = chunk == null ? 0 : chunk.getStart();
+                long end = chunk == null ? Long.MAX_VALUE : chunk.getEnd();
+                fileReader.readLogFile(logFile, start, end, analyzeBatch);
+            }
             
-            // Apply each analyzer to the entries
             for (Map.Entry<String, LogAnalyzer> entry : analyzers.entrySet()) {
-                String analyzerName = entry.getKey();
-                LogAnalyzer analyzer = entry.getValue();
-                
-                System.out.println("Applying analyzer " + analyzerName + " to " + logFile.getName());
-                analyzer.analyze(entries, config);
-                System.out.println("Analysis complete for " + analyzerName);
+                entry.getValue().finish(config);
+                System.out.println("Analysis complete for " + entry.getKey());
             }
             
-            System.out.println("Worker completed for file: " + logFile.getName());
+            System.out.println("Worker completed for file: " + taskName);
             return analyzers;
         } catch (IOException e) {
-            System.out.println("error processing file " + logFile.getName() + ": " + e.getMessage());
+            System.out.println("error processing file " + taskName + ": " + e.getMessage());
             throw e;
+        } finally {
+            cpuLimiter.release();
         }
     }
 }
\ No newline at end of file
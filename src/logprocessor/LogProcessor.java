@@ -5,19 +5,24 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 import analyzer.LogAnalyzer;
 import analyzer.factory.LogAnalyzerFactory;
 import org.json.JSONObject;
+import parser.format.LogFormatRegistry;
 
 /**
  * Main class for processing log files in parallel and generating a report.
@@ -27,6 +32,7 @@ public class LogProcessor {
     private final Properties config;
     private final LogFileReader fileReader;
     private final Map<String, LogAnalyzer> globalAnalyzers;
+    private final Semaphore openFileSlots;
     
     /**
      * Constructor for creating a log processor.
@@ -35,8 +41,28 @@ public class LogProcessor {
      */
     public LogProcessor(Properties config) {
         this.config = config;
-        this.fileReader = new LogFileReader();
+        this.fileReader = createFileReader(config);
         this.globalAnalyzers = new HashMap<>();
+        this.openFileSlots = isVirtualThreadMode() 
+            ? new Semaphore(Math.max(1, Integer.parseInt(config.getProperty("thread.io.limit", "256").trim())))
+            : null;
+    }
+    
+    /**
+     * Creates the file reader selected by the log.reader.mode property.
+     * 
+     * @param config Configuration properties.
+     * @return A memory-mapping reader for "mmap", the buffered line reader otherwise.
+     */
+    static LogFileReader createFileReader(Properties config) {
+        String mode = config.getProperty("log.reader.mode", "stream").trim();
+        LogFormatRegistry formats = new LogFormatRegistry(config);
+        
+        if (mode.equalsIgnoreCase("mmap")) {
+            return new MappedLogFileReader(formats, config);
+        }
+        
+        return new LogFileReader(formats, config);
     }
     
     /**
@@ -46,38 +72,24 @@ public class LogProcessor {
         try {
             // Get the log directory
             String logDirectory = config.getProperty("log.directory");
-            List<File> logFiles = fileReader.getLogFiles(logDirectory);
-            
-            if (logFiles.isEmpty()) {
-                System.out.println("No log files found in directory: " + logDirectory);
-                return;
-            }
             
             // Get the thread pool size
             int threadPoolSize = Integer.parseInt(config.getProperty("thread.pool.size", "5"));
             
-            // Get the analysis types to perform
-            String analysisTypesStr = config.getProperty("log.analysis", "COUNT_LEVELS");
-            List<String> analysisTypes = Arrays.asList(analysisTypesStr.split(","))
-                                               .stream()
-                                               .map(String::trim)
-                                               .collect(Collectors.toList());
-            
-            // Create analyzers for each analysis type
-            for (String type : analysisTypes) {
-                LogAnalyzer analyzer = LogAnalyzerFactory.createAnalyzer(type);
-                if (analyzer != null) {
-                    globalAnalyzers.put(type, analyzer);
-                }
-            }
-            
-            if (globalAnalyzers.isEmpty()) {
+            if (!createGlobalAnalyzers()) {
                 System.out.println("No valid analysis types specified.");
                 return;
             }
             
-            // Process the log files in parallel
-            processFilesInParallel(logFiles, threadPoolSize);
+            // Process the log files in parallel, starting workers while the directory is still being listed,
+            // or only the data appended since the last checkpoint
+            boolean checkpointing = Boolean.parseBoolean(config.getProperty("log.checkpoint.enabled", "false").trim());
+            boolean found = checkpointing ? processIncrementally(logDirectory, threadPoolSize)
+                                          : processFilesInParallel(logDirectory, threadPoolSize);
+            if (!found) {
+                System.out.println("No log files found in directory: " + logDirectory);
+                return;
+            }
             
             // Generate and save the report
             String outputFile = config.getProperty("output.file", "output.json");
@@ -89,58 +101,518 @@ public class LogProcessor {
         }
     }
     
+    /**
+     * Follows the log files and keeps the report up to date until the application is stopped.
+     * Only data appended after the start, or all existing data if log.follow.from.start is set,
+     * is analyzed. The report is written once more when the application shuts down.
+     */
+    public void followLogs() {
+        try {
+            if (!createGlobalAnalyzers()) {
+                System.out.println("No valid analysis types specified.");
+                return;
+            }
+            
+            String outputFile = config.getProperty("output.file", "output.json");
+            LogFollower follower = new LogFollower(config, fileReader, globalAnalyzers,
+                                                   () -> generateReport(outputFile));
+            
+            // On shutdown, stop following and wait for the final report
+            Thread followThread = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                followThread.interrupt();
+                try {
+                    followThread.join(10_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            
+            follower.follow();
+            
+        } catch (Exception e) {
+            System.out.println("Error following logs: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Creates the global analyzers for the configured analysis types.
+     * 
+     * @return True if at least one valid analysis type is configured.
+     */
+    private boolean createGlobalAnalyzers() {
+        // Get the analysis types to perform
+        String analysisTypesStr = config.getProperty("log.analysis", "COUNT_LEVELS");
+        List<String> analysisTypes = Arrays.asList(analysisTypesStr.split(","))
+                                           .stream()
+                                           .map(String::trim)
+                                           .collect(Collectors.toList());
+        
+        // Create analyzers for each analysis type
+        for (String type : analysisTypes) {
+            LogAnalyzer analyzer = LogAnalyzerFactory.createAnalyzer(type, config);
+            if (analyzer != null) {
+                globalAnalyzers.put(type, analyzer);
+            }
+        }
+        
+        return !globalAnalyzers.isEmpty();
+    }
+    
     /**
      * Processes log files in parallel using a thread pool.
+     * Files are submitted as soon as discovery has listed their directory.
      * 
-     * @param logFiles The log files to process.
+     * @param logDirectory The directory containing the log files.
      * @param threadPoolSize The size of the thread pool.
+     * @return True if any log files were found.
      * @throws InterruptedException If the thread execution is interrupted.
      * @throws ExecutionException If an error occurs during execution.
+     * @throws IOException If the log directory cannot be walked.
+     */
+    private boolean processFilesInParallel(String logDirectory, int threadPoolSize) 
+            throws InterruptedException, ExecutionException, IOException {
+        
+        if (isForkJoinMode()) {
+            return processLargestFirst(logDirectory, threadPoolSize);
+        }
+        if (isPipelineMode()) {
+            return processPipelined(logDirectory);
+        }
+        if (isDistributedMode()) {
+            return processDistributed(logDirectory);
+        }
+        
+        // Create the executor for the configured thread mode
+        ExecutorService executor = createExecutor(threadPoolSize);
+        
+        // Merge the results as they complete, while further files are still being discovered
+        ResultMerger merger = new ResultMerger(executor, threadPoolSize, fileReader.getCpuLimiter());
+        
+        // Submit tasks for each log file as it is discovered
+        int fileCount;
+        try {
+            fileCount = new LogFileDiscovery(config).discover(logDirectory, group -> {
+                for (LogProcessingWorker worker : createWorkers(group)) {
+                    merger.submit(limitOpenFiles(worker));
+                }
+                merger.mergeCompleted();
+            });
+        } catch (IOException | RuntimeException e) {
+            executor.shutdownNow();
+            merger.shutdown();
+            throw e;
+        }
+        
+        System.out.println("Found " + fileCount + " log files, submitted " + merger.getSubmitted() + " tasks");
+        
+        // Wait for the remaining workers and merges, then combine the single result with the global analyzers
+        Map<String, LogAnalyzer> merged = merger.awaitResult();
+        if (merged != null) {
+            mergeAnalyzers(merged);
+        }
+        
+        // Shutdown the executor and the merge threads
+        executor.shutdown();
+        merger.shutdown();
+        return fileCount > 0;
+    }
+    
+    /**
+     * Processes log files on a work-stealing pool, largest first, splitting large files into
+     * subtasks that idle threads can steal (thread.mode=forkjoin).
+     * Ordering by size needs all files, so discovery completes before any work starts.
+     * 
+     * @param logDirectory The directory containing the log files.
+     * @param threadPoolSize The number of threads.
+     * @return True if any log files were found.
+     * @throws InterruptedException If the thread execution is interrupted.
+     * @throws IOException If the log directory cannot be walked.
+     */
+    private boolean processLargestFirst(String logDirectory, int threadPoolSize) 
+            throws InterruptedException, IOException {
+        
+        List<RotatedLogGroup> groups = new ArrayList<>();
+        int fileCount = new LogFileDiscovery(config).discover(logDirectory, groups::add);
+        
+        FileTaskScheduler scheduler = new FileTaskScheduler(config, fileReader, this::createFileAnalyzers, threadPoolSize);
+        try {
+            mergeResults(scheduler.submitLargestFirst(groups));
+            scheduler.printTimings();
+        } finally {
+            scheduler.shutdown();
+        }
+        
+        return fileCount > 0;
+    }
+    
+    /**
+     * Processes log files with the staged read, parse and analyze pipeline (thread.mode=pipeline).
+     * Files are submitted as soon as discovery has listed their directory.
+     * 
+     * @param logDirectory The directory containing the log files.
+     * @return True if any log files were found.
+     * @throws InterruptedException If the thread execution is interrupted.
+     * @throws IOException If the log directory cannot be walked.
+     */
+    private boolean processPipelined(String logDirectory) throws InterruptedException, IOException {
+        PipelineEngine engine = new PipelineEngine(config, fileReader, this::createFileAnalyzers);
+        engine.start();
+        
+        int fileCount;
+        try {
+            fileCount = new LogFileDiscovery(config).discover(logDirectory, group -> {
+                try {
+                    engine.submit(group);
+                } catch (IOException e) {
+                    System.out.println("error splitting file " + group.getLogicalName() + ": " + e.getMessage());
+                }
+            });
+        } finally {
+            for (Map<String, LogAnalyzer> analyzers : engine.finish()) {
+                mergeAnalyzers(analyzers);
+            }
+        }
+        
+        return fileCount > 0;
+    }
+    
+    /**
+     * Processes log files in worker processes (thread.mode=distributed).
+     * Files are submitted as soon as discovery has listed their directory, and the results
+     * of the workers are merged as they arrive.
+     * 
+     * @param logDirectory The directory containing the log files.
+     * @return True if any log files were found.
+     * @throws InterruptedException If the thread execution is interrupted.
+     * @throws IOException If the log directory cannot be walked or no worker can be started.
      */
-    private void processFilesInParallel(List<File> logFiles, int threadPoolSize) 
-            throws InterruptedException, ExecutionException {
+    private boolean processDistributed(String logDirectory) throws InterruptedException, IOException {
+        DistributedCoordinator coordinator = new DistributedCoordinator(config, fileReader.getFormats(), globalAnalyzers.keySet());
         
-        // Create a fixed thread pool
-        ExecutorService executor = Executors.newFixedThreadPool(threadPoolSize);
+        int fileCount;
+        try {
+            coordinator.start();
+            fileCount = new LogFileDiscovery(config).discover(logDirectory, coordinator::submit);
+            coordinator.awaitResults(this::mergeAnalyzers);
+        } finally {
+            coordinator.shutdown();
+        }
         
-        // Create a list to hold the Future results
+        return fileCount > 0;
+    }
+    
+    /**
+     * Runs groups and chunks through a pipeline engine and waits for the results.
+     * Files that could not be split or read completely yield a failed result, so that they
+     * are not checkpointed as analyzed.
+     * 
+     * @param groups The groups to process.
+     * @param chunks The chunks to process.
+     * @return The completed results of the analyzer threads, and a failed result if any task failed.
+     * @throws InterruptedException If the thread execution is interrupted.
+     */
+    private List<Future<Map<String, LogAnalyzer>>> runPipeline(List<RotatedLogGroup> groups, List<LogFileChunk> chunks) 
+            throws InterruptedException {
+        
+        PipelineEngine engine = new PipelineEngine(config, fileReader, this::createFileAnalyzers);
+        engine.start();
+        
+        int failures = 0;
+        for (RotatedLogGroup group : groups) {
+            try {
+                engine.submit(group);
+            } catch (IOException e) {
+                System.out.println("error splitting file " + group.getLogicalName() + ": " + e.getMessage());
+                failures++;
+            }
+        }
+        for (LogFileChunk chunk : chunks) {
+            engine.submit(chunk);
+        }
+        
+        List<Future<Map<String, LogAnalyzer>>> results = new ArrayList<>();
+        for (Map<String, LogAnalyzer> analyzers : engine.finish()) {
+            results.add(CompletableFuture.completedFuture(analyzers));
+        }
+        
+        failures += engine.getFailures();
+        if (failures > 0) {
+            results.add(CompletableFuture.failedFuture(new IOException(failures + " pipeline tasks failed")));
+        }
+        return results;
+    }
+    
+    /**
+     * Processes only the data appended since the last checkpoint, on top of the analyzer
+     * state restored from it, and saves a new checkpoint.
+     * All files are listed first, since a checkpoint that no longer matches the directory
+     * (e.g. a file was deleted or truncated) means that everything has to be analyzed again.
+     * 
+     * @param logDirectory The directory containing the log files.
+     * @param threadPoolSize The size of the thread pool.
+     * @return True if any log files were found.
+     * @throws InterruptedException If the thread execution is interrupted.
+     * @throws IOException If the log directory cannot be walked.
+     */
+    private boolean processIncrementally(String logDirectory, int threadPoolSize) 
+            throws InterruptedException, IOException {
+        
+        List<RotatedLogGroup> groups = new ArrayList<>();
+        int fileCount = new LogFileDiscovery(config).discover(logDirectory, groups::add);
+        
+        CheckpointStore checkpoints = new CheckpointStore(config, fileReader.getFormats());
+        CheckpointStore.Plan plan = checkpoints.plan(groups, globalAnalyzers.keySet());
+        
+        if (plan.isResumed()) {
+            // Combine the stored results with the new ones the same way results of files are combined
+            for (Map.Entry<String, LogAnalyzer> entry : globalAnalyzers.entrySet()) {
+                JSONObject state = checkpoints.getAnalyzerState(entry.getKey());
+                if (state != null) {
+                    LogAnalyzer restored = LogAnalyzerFactory.createAnalyzer(entry.getKey());
+                    restored.restoreState(state);
+                    entry.getValue().mergeResults(restored);
+                }
+            }
+        }
+        
+        FileTaskScheduler scheduler = null;
+        ExecutorService executor = null;
         List<Future<Map<String, LogAnalyzer>>> futures = new ArrayList<>();
+        List<Future<Map<String, LogAnalyzer>>> tailFutures = new ArrayList<>();
         
-        // Submit tasks for each log file
-        for (File logFile : logFiles) {
-            // Create a new set of analyzers for this file
-            Map<String, LogAnalyzer> fileAnalyzers = new HashMap<>();
-            for (String type : globalAnalyzers.keySet()) {
-                fileAnalyzers.put(type, LogAnalyzerFactory.createAnalyzer(type));
+        try {
+            if (isForkJoinMode()) {
+                scheduler = new FileTaskScheduler(config, fileReader, this::createFileAnalyzers, threadPoolSize);
+                futures.addAll(scheduler.submitLargestFirst(plan.getGroups()));
+                tailFutures.addAll(scheduler.submitChunks(plan.getTails()));
+            } else if (isPipelineMode()) {
+                // Separate runs, since the tails must stay out of the checkpoint
+                futures.addAll(runPipeline(plan.getGroups(), Collections.emptyList()));
+                tailFutures.addAll(runPipeline(Collections.emptyList(), plan.getTails()));
+            } else {
+                executor = createExecutor(threadPoolSize);
+                for (RotatedLogGroup group : plan.getGroups()) {
+                    for (LogProcessingWorker worker : createWorkers(group)) {
+                        futures.add(submit(executor, worker));
+                    }
+                }
+                for (LogFileChunk tail : plan.getTails()) {
+                    tailFutures.add(submit(executor, new LogProcessingWorker(tail, createFileAnalyzers(), config, fileReader)));
+                }
             }
             
-            // Create and submit a worker for this file
-            LogProcessingWorker worker = new LogProcessingWorker(logFile, fileAnalyzers, config, fileReader);
-            futures.add(executor.submit(worker));
+            System.out.println("Found " + fileCount + " log files, " + plan.getGroups().size() + " with new data, submitted "
+                               + (futures.size() + tailFutures.size()) + " tasks");
+            
+            // The checkpoint holds the committed data only; the tails are read again next time
+            if (mergeResults(futures)) {
+                checkpoints.save(globalAnalyzers);
+            } else {
+                System.out.println("Checkpoint not saved because not all files could be processed");
+            }
+            mergeResults(tailFutures);
+            
+            if (scheduler != null) {
+                scheduler.printTimings();
+            }
+        } finally {
+            if (scheduler != null) {
+                scheduler.shutdown();
+            }
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+        
+        return fileCount > 0;
+    }
+    
+    /**
+     * Tells whether workers run on virtual threads (thread.mode=virtual) instead of a fixed pool.
+     * 
+     * @return True for virtual threads.
+     */
+    private boolean isVirtualThreadMode() {
+        return config.getProperty("thread.mode", "fixed").trim().equalsIgnoreCase("virtual");
+    }
+    
+    /**
+     * Tells whether workers run on the work-stealing scheduler (thread.mode=forkjoin).
+     * 
+     * @return True for the work-stealing scheduler.
+     */
+    private boolean isForkJoinMode() {
+        return config.getProperty("thread.mode", "fixed").trim().equalsIgnoreCase("forkjoin");
+    }
+    
+    /**
+     * Tells whether files are processed by the staged pipeline (thread.mode=pipeline).
+     * 
+     * @return True for the pipeline.
+     */
+    private boolean isPipelineMode() {
+        return config.getProperty("thread.mode", "fixed").trim().equalsIgnoreCase("pipeline");
+    }
+    
+    /**
+     * Tells whether files are processed by worker processes (thread.mode=distributed).
+     * 
+     * @return True for worker processes.
+     */
+    private boolean isDistributedMode() {
+        return config.getProperty("thread.mode", "fixed").trim().equalsIgnoreCase("distributed");
+    }
+    
+    /**
+     * Creates the executor for the workers. In virtual thread mode every worker gets its own
+     * virtual thread, so that many reads can be outstanding on slow storage; the number of
+     * threads parsing at once is bounded by the reader's {@link CpuLimiter} instead of the pool size.
+     * 
+     * @param threadPoolSize The size of the fixed thread pool.
+     * @return The executor.
+     */
+    private ExecutorService createExecutor(int threadPoolSize) {
+        if (isVirtualThreadMode()) {
+            System.out.println("Using virtual threads, reading at most " + openFileSlots.availablePermits() + " files at once");
+            return Executors.newVirtualThreadPerTaskExecutor();
         }
         
-        // Process the results as they complete
+        return Executors.newFixedThreadPool(threadPoolSize);
+    }
+    
+    /**
+     * Submits a worker. On virtual threads the worker first waits for one of the
+     * thread.io.limit slots, which bounds the number of open files.
+     * 
+     * @param executor The executor.
+     * @param worker The worker.
+     * @return The future result of the worker.
+     */
+    private Future<Map<String, LogAnalyzer>> submit(ExecutorService executor, LogProcessingWorker worker) {
+        return executor.submit(limitOpenFiles(worker));
+    }
+    
+    /**
+     * Wraps a worker so that on virtual threads it first waits for one of the thread.io.limit slots.
+     * 
+     * @param worker The worker.
+     * @return The task to submit.
+     */
+    private Callable<Map<String, LogAnalyzer>> limitOpenFiles(LogProcessingWorker worker) {
+        if (openFileSlots == null) {
+            return worker;
+        }
+        
+        return () -> {
+            openFileSlots.acquire();
+            try {
+                return worker.call();
+            } finally {
+                openFileSlots.release();
+            }
+        };
+    }
+    
+    /**
+     * Merges the results of finished workers into the global analyzers, in submission order.
+     * 
+     * @param futures The results of the workers.
+     * @return True if all workers succeeded.
+     * @throws InterruptedException If the thread execution is interrupted.
+     */
+    private boolean mergeResults(List<Future<Map<String, LogAnalyzer>>> futures) throws InterruptedException {
+        boolean success = true;
+        
         for (Future<Map<String, LogAnalyzer>> future : futures) {
             try {
-                Map<String, LogAnalyzer> fileAnalyzers = future.get();
+                mergeAnalyzers(future.get());
+            } catch (ExecutionException e) {
+                System.out.println("Error processing file: " + e.getMessage());
+                success = false;
+            }
+        }
+        
+        return success;
+    }
+    
+    /**
+     * Merges a set of analyzers into the global analyzers.
+     * 
+     * @param fileAnalyzers The analyzers of a file, chunk or pipeline thread.
+     */
+    private void mergeAnalyzers(Map<String, LogAnalyzer> fileAnalyzers) {
+        for (Map.Entry<String, LogAnalyzer> entry : fileAnalyzers.entrySet()) {
+            String type = entry.getKey();
+            LogAnalyzer fileAnalyzer = entry.getValue();
+            LogAnalyzer globalAnalyzer = globalAnalyzers.get(type);
+            
+            if (globalAnalyzer != null) {
+                globalAnalyzer.mergeResults(fileAnalyzer);
+            }
+        }
+    }
+    
+    /**
+     * Creates the workers for a rotation group: one worker for rotated or compressed
+     * segments, one per chunk for a large plain file, and one otherwise.
+     * 
+     * @param group The rotation group.
+     * @return The workers, each with its own set of analyzers.
+     */
+    private List<LogProcessingWorker> createWorkers(RotatedLogGroup group) {
+        List<LogProcessingWorker> workers = new ArrayList<>();
+        
+        if (!group.isSinglePlainFile()) {
+            // Rotated and compressed segments are read in order as one stream
+            workers.add(new LogProcessingWorker(group, createFileAnalyzers(), config, fileReader));
+            return workers;
+        }
+        
+        File logFile = group.getSegments().get(0);
+        long chunkSize = Long.parseLong(config.getProperty("log.chunk.size", "67108864").trim());
+        long start = group.getSegmentStart(0);
+        long end = Math.min(group.getSegmentEnd(0), logFile.length());
+        
+        if (chunkSize > 0 && end - start > chunkSize) {
+            try {
+                List<LogFileChunk> chunks = new LogFileChunker(chunkSize).split(logFile, fileReader.getFormats().formatFor(logFile),
+                                                                              start, end);
+                System.out.println("Split " + logFile.getName() + " into " + chunks.size() + " chunks");
                 
-                // Merge the results with the global analyzers
-                for (Map.Entry<String, LogAnalyzer> entry : fileAnalyzers.entrySet()) {
-                    String type = entry.getKey();
-                    LogAnalyzer fileAnalyzer = entry.getValue();
-                    LogAnalyzer globalAnalyzer = globalAnalyzers.get(type);
-                    
-                    if (globalAnalyzer != null) {
-                        globalAnalyzer.mergeResults(fileAnalyzer);
-                    }
+                // Each chunk gets its own analyzers; the results are merged like those of separate files
+                for (LogFileChunk chunk : chunks) {
+                    workers.add(new LogProcessingWorker(chunk, createFileAnalyzers(), config, fileReader));
                 }
-            } catch (Exception e) {
-                System.out.println("Error processing file: " + e.getMessage());
+                return workers;
+            } catch (IOException e) {
+                System.out.println("error splitting file " + logFile.getName() + ": " + e.getMessage());
             }
         }
         
-        // Shutdown the executor
-        executor.shutdown();
+        // Create a worker for this file, or for the part of it to be read
+        if (start > 0 || group.getSegmentEnd(0) != Long.MAX_VALUE) {
+            if (start < end) {
+                workers.add(new LogProcessingWorker(new LogFileChunk(logFile, start, end), createFileAnalyzers(), config, fileReader));
+            }
+        } else {
+            workers.add(new LogProcessingWorker(logFile, createFileAnalyzers(), config, fileReader));
+        }
+        return workers;
+    }
+    
+    /**
+     * Creates a new set of analyzers of the configured types for one file or chunk.
+     * 
+     * @return A map of analyzer types to new analyzer instances.
+     */
+    private Map<String, LogAnalyzer> createFileAnalyzers() {
+        Map<String, LogAnalyzer> fileAnalyzers = new HashMap<>();
+        for (String type : globalAnalyzers.keySet()) {
+            fileAnalyzers.put(type, LogAnalyzerFactory.createAnalyzer(type, config));
+        }
+        return fileAnalyzers;
     }
     
     /**
@@ -0,0 +1,148 @@
+package logprocessor;
+
+import java.util.Properties;
+
+import model.FileAwareLogEntry;
+import model.LogEntry;
+import parser.format.LogFormat;
+
+/**
+ * Assembles multi-line records while a file is streamed.
+ * Lines that do not start a new record according to the file's format (e.g. stack trace frames)
+ * are glued onto the message of the preceding entry instead of being parsed.
+ *
+ * Buffering is bounded: at most log.multiline.max.lines continuation lines and
+ * log.multiline.max.chars characters are kept per record, further lines are only counted.
+ *
+ * An assembler belongs to a single file being read and is not thread-safe.
+ */
+public class LogRecordAssembler {
+
+    private final LogFormat format;
+    private final String fileName;
+    private final int maxLines;
+    private final int maxChars;
+    private final StringBuilder continuation;
+
+    private LogEntry pending;
+    private int continuationLines;
+    private int droppedLines;
+    private int orphanLines;
+
+    /**
+     * Constructor for creating an assembler for one file.
+     *
+     * @param format The format of the file.
+     * @param fileName The name of the file.
+     * @param config Configuration properties.
+     */
+    public LogRecordAssembler(LogFormat format, String fileName, Properties config) {
+        this.format = format;
+        this.fileName = fileName;
+        this.maxLines = Integer.parseInt(config.getProperty("log.multiline.max.lines", "200").trim());
+        this.maxChars = Integer.parseInt(config.getProperty("log.multiline.max.chars", "65536").trim());
+        this.continuation = new StringBuilder();
+    }
+
+    /**
+     * Accepts the next non-empty line of the file.
+     *
+     * @param line The line.
+     * @return The previous record if this line completes it, null otherwise.
+     */
+    public LogEntry acceptLine(String line) {
+        return acceptLine(line, -1);
+    }
+
+    /**
+     * Accepts the next non-empty line of the file, recording where a record starts.
+     *
+     * @param line The line.
+     * @param offset The byte offset of the line in the file, or -1 if it is unknown.
+     * @return The previous record if this line completes it, null otherwise.
+     */
+    public LogEntry acceptLine(String line, long offset) {
+        if (!format.isRecordStart(line)) {
+            appendContinuation(line);
+            return null;
+        }
+
+        LogEntry entry = format.parse(line, fileName);
+        if (entry instanceof FileAwareLogEntry) {
+            ((FileAwareLogEntry) entry).setOffset(offset);
+        }
+        return startRecord(entry);
+    }
+
+    /**
+     * Starts a new record, completing the pending one.
+     *
+     * @param entry The parsed first line of the new record, or null if it could not be parsed.
+     * @return The completed previous record, or null if there was none.
+     */
+    public LogEntry startRecord(LogEntry entry) {
+        LogEntry completed = complete();
+        pending = entry;
+        return completed;
+    }
+
+    /**
+     * Adds a continuation line to the pending record.
+     *
+     * @param line The continuation line.
+     */
+    public void appendContinuation(String line) {
+        if (pending == null) {
+            // Continuation of a record that failed to parse, or garbage at the start of the file
+            orphanLines++;
+            return;
+        }
+
+        if (continuationLines >= maxLines || continuation.length() + line.length() > maxChars) {
+            droppedLines++;
+            return;
+        }
+
+        if (continuationLines > 0) {
+            continuation.append('\n');
+        }
+        continuation.append(line);
+        continuationLines++;
+    }
+
+    /**
+     * Completes the last record at the end of the input.
+     *
+     * @return The last record, or null if there is none.
+     */
+    public LogEntry finish() {
+        LogEntry completed = complete();
+        pending = null;
+        return completed;
+    }
+
+    /**
+     * Gets the number of continuation lines that could not be attached to any record.
+     *
+     * @return The number of orphan continuation lines.
+     */
+    public int getOrphanLines() {
+        return orphanLines;
+    }
+
+    private LogEntry complete() {
+        LogEntry completed = pending;
+
+        if (completed != null && continuationLines > 0) {
+            if (droppedLines > 0) {
+                continuation.append("\n... ").append(droppedLines).append(" more lines");
+            }
+            completed.appendToMessage(continuation.toString());
+        }
+
+        continuation.setLength(0);
+        continuationLines = 0;
+        droppedLines = 0;
+        return completed;
+    }
+}
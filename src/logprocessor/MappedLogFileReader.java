@@ -0,0 +1,163 @@
+package logprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+import model.FileAwareLogEntry;
+import model.LogEntry;
+import parser.MappedLogParser;
+import parser.format.BracketLogFormat;
+import parser.format.LogFormat;
+import parser.format.LogFormatRegistry;
+
+/**
+ * Log file reader that memory-maps each file and parses records directly from the mapped bytes,
+ * instead of decoding every line into a String first.
+ * Selected with log.reader.mode=mmap. Files in formats other than the bracket format are
+ * read with the buffered line reader.
+ */
+public class MappedLogFileReader extends LogFileReader {
+
+    // Files larger than this are mapped as several regions, each ending on a line boundary
+    private static final long MAX_REGION_SIZE = 1L << 30;
+
+    /**
+     * Constructor for creating a memory-mapping reader.
+     *
+     * @param formats The format registry.
+     * @param config Configuration properties.
+     */
+    public MappedLogFileReader(LogFormatRegistry formats, Properties config) {
+        super(formats, config);
+    }
+
+    /**
+     * Reads a log file through a memory mapping and parses its contents into LogEntry objects.
+     *
+     * @param file The log file to read.
+     * @return A list of LogEntry objects.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    @Override
+    public List<LogEntry> readLogFile(File file) throws IOException {
+        System.out.println("Mapping file: " + file.getName() + " (size: " + file.length() + " bytes)");
+        return readLogFile(file, 0, file.length());
+    }
+
+    /**
+     * Streams the records of a log file that start within a byte range through a memory mapping.
+     *
+     * @param file The log file to read.
+     * @param start The byte offset of the first record.
+     * @param end The byte offset at which to stop.
+     * @param batchConsumer The consumer receiving each batch of entries.
+     * @return The number of entries read.
+     * @throws IOException If an error occurs while reading the file.
+     */
+    @Override
+    public int readLogFile(File file, long start, long end, Consumer<List<LogEntry>> batchConsumer) throws IOException {
+        LogFormat format = formats.formatFor(file);
+        if (!(format instanceof BracketLogFormat)) {
+            return super.readLogFile(file, start, end, batchConsumer);
+        }
+
+        EntryBatcher batcher = new EntryBatcher(getBatchSize(), batchConsumer);
+        Charset charset = Charset.defaultCharset();
+        MappedLogParser parser = new MappedLogParser(charset);
+        String fileName = entryFileName(file);
+        LogRecordAssembler assembler = new LogRecordAssembler(format, fileName, config);
+        int lineCount = 0;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long regionStart = start;
+
+            // Lines starting before end are read completely, so map up to the end of the file
+            while (regionStart < Math.min(end, size)) {
+                long regionSize = Math.min(MAX_REGION_SIZE, size - regionStart);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionSize);
+                boolean lastRegion = regionStart + regionSize == size;
+                long regionEnd = end - regionStart;
+
+                int consumed = 0;
+                int limit = region.limit();
+
+                while (consumed < limit && consumed < regionEnd) {
+                    int newline = indexOfNewline(region, consumed, limit);
+                    if (newline < 0 && !lastRegion && consumed > 0) {
+                        // Incomplete line, continue it in the next region
+                        break;
+                    }
+
+                    int lineEnd = newline < 0 ? limit : newline;
+                    int next = newline < 0 ? limit : newline + 1;
+                    if (lineEnd > consumed && region.get(lineEnd - 1) == '\r') {
+                        lineEnd--;
+                    }
+
+                    lineCount++;
+                    if (!isBlank(region, consumed, lineEnd)) {
+                        if (region.get(consumed) == '[') {
+                            LogEntry entry = parser.parse(region, consumed, lineEnd, fileName);
+                            if (entry instanceof FileAwareLogEntry) {
+                                ((FileAwareLogEntry) entry).setOffset(regionStart + consumed);
+                            }
+                            batcher.add(assembler.startRecord(entry));
+                        } else {
+                            assembler.appendContinuation(decode(region, consumed, lineEnd, charset));
+                        }
+                    }
+                    consumed = next;
+                }
+
+                if (consumed == 0) {
+                    break;
+                }
+                regionStart += consumed;
+            }
+
+            batcher.add(assembler.finish());
+            batcher.flush();
+
+            System.out.println("File " + file.getName() + " - Total lines: " + lineCount + ", Valid entries: " + batcher.getTotal()
+                               + orphanSummary(assembler));
+        } catch (IOException e) {
+            System.out.println("error processing file " + file.getName() + ": " + e.getMessage());
+            throw e;
+        }
+
+        return batcher.getTotal();
+    }
+
+    private static int indexOfNewline(MappedByteBuffer region, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (region.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String decode(MappedByteBuffer region, int start, int end, Charset charset) {
+        byte[] bytes = new byte[end - start];
+        region.get(start, bytes);
+        return new String(bytes, charset);
+    }
+
+    private static boolean isBlank(MappedByteBuffer region, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = region.get(i);
+            if (b < 0 || b > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,466 @@
+package logprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import analyzer.FusedAnalysisPass;
+import analyzer.LogAnalyzer;
+import model.LogEntry;
+
+/**
+ * Pipelined engine (thread.mode=pipeline) that reads, parses and analyzes on separate threads,
+ * so that waiting for the disk overlaps with parsing and analysis instead of alternating with it.
+ *
+ *   readers    read the lines of one file (or chunk) at a time into line batches
+ *   parsers    assemble records from the lines; all batches of a file go to the same parser,
+ *              in order, so multi-line records are assembled exactly as by a single reader
+ *   analyzers  run the analyzers; each analyzer thread has its own set, and the sets are
+ *              merged at the end like the results of separate files
+ *
+ * The stages are connected by {@link BatchRing}s of preallocated batches of log.batch.size
+ * lines or entries, so memory stays bounded however large the input is: a reader that gets
+ * ahead blocks until a parser releases a batch. The ring depths are printed every
+ * log.pipeline.stats.interval seconds and at the end, to show which stage limits the run.
+ *
+ * A stage thread that fails counts as a failed task and aborts the rings, so that the other
+ * stages stop and {@link #finish()} returns the results analyzed so far instead of hanging.
+ * A file that cannot be read completely counts as a failed task too; callers that must not
+ * treat partial results as complete, such as checkpointing, check {@link #getFailures()}.
+ */
+public class PipelineEngine {
+
+    private final Properties config;
+    private final LogFileReader fileReader;
+    private final Supplier<Map<String, LogAnalyzer>> analyzerFactory;
+    private final int batchSize;
+    private final long chunkSize;
+    private final long statsIntervalMillis;
+
+    private final BlockingQueue<ReadTask> tasks;
+    private final List<BatchRing<LineBatch>> lineRings;
+    private final BatchRing<List<LogEntry>> entryRing;
+    private final List<Thread> readers;
+    private final List<Thread> parsers;
+    private final List<Thread> analyzerThreads;
+    private final List<Map<String, LogAnalyzer>> results;
+    private final ReadTask endOfTasks;
+    private final AtomicInteger failures;
+    private volatile boolean aborted;
+    private Thread statsPrinter;
+    private int taskCount;
+
+    /**
+     * Constructor for creating an engine.
+     *
+     * @param config Configuration properties.
+     * @param fileReader The reader used to open files.
+     * @param analyzerFactory Creates a new set of analyzers for each analyzer thread.
+     */
+    public PipelineEngine(Properties config, LogFileReader fileReader, Supplier<Map<String, LogAnalyzer>> analyzerFactory) {
+        this.config = config;
+        this.fileReader = fileReader;
+        this.analyzerFactory = analyzerFactory;
+        this.chunkSize = Long.parseLong(config.getProperty("log.chunk.size", "67108864").trim());
+        this.statsIntervalMillis = Long.parseLong(config.getProperty("log.pipeline.stats.interval", "5").trim()) * 1000L;
+
+        this.batchSize = Math.max(1, Integer.parseInt(config.getProperty("log.batch.size", "1000").trim()));
+        int ringBatches = Math.max(1, Integer.parseInt(config.getProperty("log.pipeline.ring.batches", "8").trim()));
+        int readerCount = Math.max(1, Integer.parseInt(config.getProperty("log.pipeline.readers", "2").trim()));
+        int parserCount = threadCount("log.pipeline.parsers", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        int analyzerCount = threadCount("log.pipeline.analyzers", 1);
+
+        this.tasks = new LinkedBlockingQueue<>();
+        this.endOfTasks = new ReadTask(-1, null, null, 0, 0);
+        this.lineRings = new ArrayList<>();
+        for (int i = 0; i < parserCount; i++) {
+            lineRings.add(new BatchRing<>("lines-" + i, ringBatches, () -> new LineBatch(batchSize)));
+        }
+        // Every parser may hold one partly filled entry batch, so there must be more batches than parsers
+        this.entryRing = new BatchRing<>("entries", Math.max(ringBatches, parserCount + 1), () -> new ArrayList<>(batchSize));
+        this.results = Collections.synchronizedList(new ArrayList<>());
+        this.failures = new AtomicInteger();
+
+        this.readers = new ArrayList<>();
+        for (int i = 0; i < readerCount; i++) {
+            readers.add(new Thread(this::readLoop, "log-reader-" + i));
+        }
+        this.parsers = new ArrayList<>();
+        for (BatchRing<LineBatch> ring : lineRings) {
+            parsers.add(new Thread(() -> parseLoop(ring), "log-parser-" + parsers.size()));
+        }
+        this.analyzerThreads = new ArrayList<>();
+        for (int i = 0; i < analyzerCount; i++) {
+            analyzerThreads.add(new Thread(this::analyzeLoop, "log-analyzer-" + i));
+        }
+    }
+
+    private int threadCount(String key, int defaultCount) {
+        int count = Integer.parseInt(config.getProperty(key, "0").trim());
+        return count > 0 ? count : defaultCount;
+    }
+
+    /**
+     * Starts all stages. Files can be submitted while the engine is running.
+     */
+    public void start() {
+        System.out.println("Pipeline started with " + readers.size() + " readers, " + parsers.size() + " parsers, "
+                           + analyzerThreads.size() + " analyzer threads");
+        analyzerThreads.forEach(Thread::start);
+        parsers.forEach(Thread::start);
+        readers.forEach(Thread::start);
+
+        if (statsIntervalMillis > 0) {
+            statsPrinter = new Thread(() -> {
+                try {
+                    while (true) {
+                        Thread.sleep(statsIntervalMillis);
+                        System.out.println("Pipeline queues: " + describeQueues());
+                    }
+                } catch (InterruptedException e) {
+                    // Stopped by finish()
+                }
+            }, "log-pipeline-stats");
+            statsPrinter.setDaemon(true);
+            statsPrinter.start();
+        }
+    }
+
+    /**
+     * Submits a rotation group. A plain file larger than log.chunk.size is split into chunks,
+     * so that several readers and parsers can work on it.
+     *
+     * @param group The group, possibly ranged.
+     * @throws IOException If the file cannot be split.
+     */
+    public void submit(RotatedLogGroup group) throws IOException {
+        if (!group.isSinglePlainFile()) {
+            tasks.add(new ReadTask(taskCount++, group, null, 0, 0));
+            return;
+        }
+
+        File file = group.getSegments().get(0);
+        long start = group.getSegmentStart(0);
+        long end = Math.min(group.getSegmentEnd(0), file.length());
+
+        if (chunkSize > 0 && end - start > chunkSize) {
+            for (LogFileChunk chunk : new LogFileChunker(chunkSize).split(file, fileReader.getFormats().formatFor(file), start, end)) {
+                submit(chunk);
+            }
+        } else if (start < end) {
+            submit(new LogFileChunk(file, start, end));
+        }
+    }
+
+    /**
+     * Submits a byte range of a file.
+     *
+     * @param chunk The range, which must start at a record.
+     */
+    public void submit(LogFileChunk chunk) {
+        tasks.add(new ReadTask(taskCount++, null, chunk.getFile(), chunk.getStart(), chunk.getEnd()));
+    }
+
+    /**
+     * Waits until all submitted files have been analyzed and stops the engine.
+     *
+     * @return The analyzers of each analyzer thread, to be merged.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public List<Map<String, LogAnalyzer>> finish() throws InterruptedException {
+        // Each stage is closed once the stage feeding it has finished
+        for (int i = 0; i < readers.size(); i++) {
+            tasks.add(endOfTasks);
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        lineRings.forEach(BatchRing::close);
+        for (Thread parser : parsers) {
+            parser.join();
+        }
+
+        entryRing.close();
+        for (Thread analyzer : analyzerThreads) {
+            analyzer.join();
+        }
+
+        if (statsPrinter != null) {
+            statsPrinter.interrupt();
+        }
+        int failed = failures.get();
+        System.out.println("Pipeline finished, " + taskCount + " tasks" + (failed > 0 ? ", " + failed + " failed" : "")
+                           + ": " + describeQueues());
+        return results;
+    }
+
+    /**
+     * Gets the number of tasks that could not be read completely and of failed stage threads.
+     *
+     * @return The number of failures.
+     */
+    public int getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Describes the current depth and the wait counts of every ring.
+     *
+     * @return The queue statistics.
+     */
+    public String describeQueues() {
+        StringBuilder description = new StringBuilder("tasks waiting " + tasks.size());
+        for (BatchRing<LineBatch> ring : lineRings) {
+            description.append(" | ").append(ring.describe());
+        }
+        description.append(" | ").append(entryRing.describe());
+        return description.toString();
+    }
+
+    /**
+     * Stops all stages after a stage thread has failed.
+     *
+     * @param e The failure.
+     */
+    private void fail(Throwable e) {
+        System.out.println("Pipeline stage " + Thread.currentThread().getName() + " failed: " + e);
+        failures.incrementAndGet();
+        aborted = true;
+        lineRings.forEach(BatchRing::abort);
+        entryRing.abort();
+    }
+
+    /**
+     * Reader stage: reads the lines of one task after the other into line batches.
+     */
+    private void readLoop() {
+        try {
+            ReadTask task;
+            while ((task = tasks.take()) != endOfTasks) {
+                // Tasks submitted after a failure are only taken off the queue
+                if (!aborted) {
+                    read(task);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            // Another stage failed
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    private void read(ReadTask task) throws InterruptedException {
+        BatchRing<LineBatch> ring = lineRings.get(task.id % lineRings.size());
+        LineBatch batch = ring.claim();
+        batch.start(task);
+        int lineCount = 0;
+
+        try (LogLineReader lines = task.open()) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                lineCount++;
+                // Skip empty lines
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                if (batch.isFull()) {
+                    ring.publish(batch);
+                    batch = ring.claim();
+                    batch.start(task);
+                }
+                // Offsets in the concatenated segments of a group do not point into any one file
+                batch.add(line, task.group == null ? lines.getLineStart() : -1);
+            }
+            System.out.println("File " + task + " - Total lines: " + lineCount);
+        } catch (IOException e) {
+            System.out.println("error processing file " + task + ": " + e.getMessage());
+            failures.incrementAndGet();
+        }
+
+        // The last batch tells the parser to complete the final record of the task
+        batch.last = true;
+        ring.publish(batch);
+    }
+
+    /**
+     * Parser stage: assembles the records of the tasks fed to one line ring.
+     */
+    private void parseLoop(BatchRing<LineBatch> ring) {
+        Map<Integer, LogRecordAssembler> assemblers = new HashMap<>();
+        Map<Integer, Integer> entryCounts = new HashMap<>();
+        EntrySink sink = new EntrySink();
+
+        try {
+            LineBatch lines;
+            while ((lines = ring.take()) != null) {
+                ReadTask task = lines.task;
+                LogRecordAssembler assembler = assemblers.computeIfAbsent(task.id, id -> task.createAssembler());
+                int before = sink.total;
+
+                for (int i = 0; i < lines.size; i++) {
+                    sink.add(assembler.acceptLine(lines.lines[i], lines.offsets[i]));
+                }
+
+                if (lines.last) {
+                    sink.add(assembler.finish());
+                    assemblers.remove(task.id);
+                    int entries = entryCounts.getOrDefault(task.id, 0) + sink.total - before;
+                    entryCounts.remove(task.id);
+                    System.out.println("File " + task + " - Valid entries: " + entries + LogFileReader.orphanSummary(assembler));
+                } else {
+                    entryCounts.merge(task.id, sink.total - before, Integer::sum);
+                }
+                ring.release(lines);
+            }
+            sink.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            // Another stage failed
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Analyzer stage: runs one set of analyzers over entry batches from any parser.
+     */
+    private void analyzeLoop() {
+        try {
+            Map<String, LogAnalyzer> analyzers = analyzerFactory.get();
+            FusedAnalysisPass pass = FusedAnalysisPass.isEnabled(config) ? new FusedAnalysisPass(analyzers.values(), config) : null;
+
+            List<LogEntry> batch;
+            while ((batch = entryRing.take()) != null) {
+                if (pass != null) {
+                    pass.analyze(batch);
+                } else {
+                    for (LogAnalyzer analyzer : analyzers.values()) {
+                        analyzer.analyze(batch, config);
+                    }
+                }
+                batch.clear();
+                entryRing.release(batch);
+            }
+
+            for (LogAnalyzer analyzer : analyzers.values()) {
+                analyzer.finish(config);
+            }
+            results.add(analyzers);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            // The analyzers of this thread may be half-way through a batch, so they are dropped
+            fail(e);
+        }
+    }
+
+    /**
+     * Collects the entries of a parser into batches claimed from the entry ring.
+     */
+    private class EntrySink {
+        private List<LogEntry> batch;
+        private int total;
+
+        void add(LogEntry entry) throws InterruptedException {
+            if (entry == null) {
+                return;
+            }
+            if (batch == null) {
+                batch = entryRing.claim();
+            }
+
+            batch.add(entry);
+            total++;
+            if (batch.size() >= batchSize) {
+                entryRing.publish(batch);
+                batch = null;
+            }
+        }
+
+        void flush() {
+            if (batch != null) {
+                entryRing.publish(batch);
+                batch = null;
+            }
+        }
+    }
+
+    /**
+     * Lines read from one task, passed from a reader to a parser.
+     */
+    private static class LineBatch {
+        private final String[] lines;
+        private final long[] offsets;
+        private ReadTask task;
+        private int size;
+        private boolean last;
+
+        LineBatch(int capacity) {
+            this.lines = new String[capacity];
+            this.offsets = new long[capacity];
+        }
+
+        void start(ReadTask task) {
+            this.task = task;
+            this.size = 0;
+            this.last = false;
+        }
+
+        boolean isFull() {
+            return size == lines.length;
+        }
+
+        void add(String line, long offset) {
+            lines[size] = line;
+            offsets[size++] = offset;
+        }
+    }
+
+    /**
+     * A file, chunk or rotation group to read.
+     */
+    private class ReadTask {
+        private final int id;
+        private final RotatedLogGroup group;
+        private final File file;
+        private final long start;
+        private final long end;
+
+        ReadTask(int id, RotatedLogGroup group, File file, long start, long end) {
+            this.id = id;
+            this.group = group;
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        LogLineReader open() throws IOException {
+            return group != null ? fileReader.openLines(group) : fileReader.openLines(file, start, end);
+        }
+
+        LogRecordAssembler createAssembler() {
+            File named = group != null ? group.getLogicalFile() : file;
+            return new LogRecordAssembler(fileReader.getFormats().formatFor(named), fileReader.entryFileName(named), config);
+        }
+
+        @Override
+        public String toString() {
+            return group != null ? group.toString() : new LogFileChunk(file, start, end).toString();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package logprocessor;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import analyzer.LogAnalyzer;
+
+/**
+ * Merges the analyzer results of workers in the order in which they complete, as a parallel
+ * reduction tree.
+ *
+ * Whenever two results are available, a task merging one into the other is submitted to a
+ * pool of merge threads, and its result takes part in further merges, until a single result
+ * remains. A slow file therefore never holds up merging of the files that finished after it,
+ * merges run in parallel with each other and with the workers, and each result becomes garbage
+ * as soon as it has been merged instead of being held until the end of the run. The merges have
+ * their own threads so that they do not wait behind the file workers queued on the executor.
+ *
+ * An analyzer that fails to merge loses the results of the other side, but the merged side is
+ * kept, so a failed merge never drops the files already merged into it.
+ */
+class ResultMerger {
+
+    private final BlockingQueue<Future<Map<String, LogAnalyzer>>> completed;
+    private final CompletionService<Map<String, LogAnalyzer>> workers;
+    private final ExecutorService mergeExecutor;
+    private final CompletionService<Map<String, LogAnalyzer>> merges;
+    private final CpuLimiter cpuLimiter;
+    private final AtomicInteger failures;
+    private Map<String, LogAnalyzer> waiting;
+    private int outstanding;
+    private int submitted;
+
+    /**
+     * Constructor for creating a merger.
+     *
+     * @param executor The executor running the workers.
+     * @param mergeThreads The number of threads merging.
+     * @param cpuLimiter Bounds the number of threads merging, as it does for the workers.
+     */
+    ResultMerger(ExecutorService executor, int mergeThreads, CpuLimiter cpuLimiter) {
+        // Workers and merges complete into the same queue, so that either can be paired with the other
+        this.completed = new LinkedBlockingQueue<>();
+        this.workers = new ExecutorCompletionService<>(executor, completed);
+        this.mergeExecutor = Executors.newFixedThreadPool(Math.max(1, mergeThreads), runnable -> {
+            Thread thread = new Thread(runnable, "log-merger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.merges = new ExecutorCompletionService<>(mergeExecutor, completed);
+        this.cpuLimiter = cpuLimiter;
+        this.failures = new AtomicInteger();
+    }
+
+    /**
+     * Submits a worker whose result is to be merged.
+     *
+     * @param task The worker.
+     */
+    void submit(Callable<Map<String, LogAnalyzer>> task) {
+        workers.submit(task);
+        outstanding++;
+        submitted++;
+    }
+
+    /**
+     * Starts merges for the results that have completed so far, without waiting.
+     */
+    void mergeCompleted() {
+        Future<Map<String, LogAnalyzer>> future;
+        while ((future = completed.poll()) != null) {
+            accept(future);
+        }
+    }
+
+    /**
+     * Waits for all workers and merges, and returns the single merged result.
+     *
+     * @return The merged analyzers, or null if no worker succeeded.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    Map<String, LogAnalyzer> awaitResult() throws InterruptedException {
+        while (outstanding > 0) {
+            accept(completed.take());
+        }
+        return waiting;
+    }
+
+    /**
+     * Stops the merge threads.
+     */
+    void shutdown() {
+        mergeExecutor.shutdownNow();
+    }
+
+    /**
+     * Gets the number of workers submitted.
+     *
+     * @return The number of workers.
+     */
+    int getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Gets the number of workers or merges that failed.
+     *
+     * @return The number of failures.
+     */
+    int getFailures() {
+        return failures.get();
+    }
+
+    private void accept(Future<Map<String, LogAnalyzer>> future) {
+        outstanding--;
+
+        Map<String, LogAnalyzer> result;
+        try {
+            result = future.get();
+        } catch (ExecutionException e) {
+            System.out.println("Error processing file: " + e.getMessage());
+            failures.incrementAndGet();
+            return;
+        } catch (InterruptedException e) {
+            // Cannot happen for a completed future
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (waiting == null) {
+            waiting = result;
+            return;
+        }
+
+        // Pair the result with the one waiting and merge them on the merge threads
+        Map<String, LogAnalyzer> left = waiting;
+        waiting = null;
+        merges.submit(() -> merge(left, result));
+        outstanding++;
+    }
+
+    private Map<String, LogAnalyzer> merge(Map<String, LogAnalyzer> left, Map<String, LogAnalyzer> right) {
+        cpuLimiter.acquire();
+        try {
+            for (Map.Entry<String, LogAnalyzer> entry : left.entrySet()) {
+                LogAnalyzer other = right.get(entry.getKey());
+                if (other == null) {
+                    continue;
+                }
+                try {
+                    entry.getValue().mergeResults(other);
+                } catch (RuntimeException e) {
+                    System.out.println("Error merging results of " + entry.getKey() + ": " + e);
+                    failures.incrementAndGet();
+                }
+            }
+            return left;
+        } finally {
+            cpuLimiter.release();
+        }
+    }
+}
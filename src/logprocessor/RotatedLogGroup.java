@@ -0,0 +1,208 @@
+package logprocessor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The rotation sequence of one logical log file, e.g. server1.log.2.gz, server1.log.1.gz,
+ * server1.log.1 and server1.log, ordered from oldest to newest.
+ * All segments are read as one stream and their entries are attributed to the logical name,
+ * so per-file analysis such as anomaly detection sees a single continuous timeline.
+ */
+public class RotatedLogGroup {
+
+    // NAME.log, optionally followed by a rotation number and/or a compression suffix
+    private static final Pattern SEGMENT_PATTERN =
+        Pattern.compile("(?i)(.+\\.log)(?:\\.(\\d+))?(?:\\.(gz|zst))?");
+
+    private final File directory;
+    private final String logicalName;
+    private final List<File> segments;
+    private final long[] segmentStarts;
+    private final long[] segmentEnds;
+
+    /**
+     * Constructor for creating a rotation group.
+     *
+     * @param directory The directory containing the segments.
+     * @param logicalName The name of the live log file.
+     * @param segments The segments, oldest first.
+     */
+    public RotatedLogGroup(File directory, String logicalName, List<File> segments) {
+        this(directory, logicalName, segments, null, null);
+    }
+
+    private RotatedLogGroup(File directory, String logicalName, List<File> segments,
+                            long[] segmentStarts, long[] segmentEnds) {
+        this.directory = directory;
+        this.logicalName = logicalName;
+        this.segments = segments;
+        this.segmentStarts = segmentStarts;
+        this.segmentEnds = segmentEnds;
+    }
+
+    /**
+     * Creates a copy of the group that reads only part of each segment, e.g. the data appended
+     * since a checkpoint. Offsets are positions in the decompressed content of a segment and
+     * must be record boundaries.
+     *
+     * @param starts The offset of the first byte to read, per segment.
+     * @param ends The offset at which to stop, per segment (Long.MAX_VALUE for the end of the segment).
+     * @return The ranged group.
+     */
+    public RotatedLogGroup withRanges(long[] starts, long[] ends) {
+        return new RotatedLogGroup(directory, logicalName, segments, starts, ends);
+    }
+
+    /**
+     * Gets the content offset at which reading of a segment starts.
+     *
+     * @param index The index of the segment.
+     * @return The start offset, 0 unless the group is ranged.
+     */
+    public long getSegmentStart(int index) {
+        return segmentStarts == null ? 0 : segmentStarts[index];
+    }
+
+    /**
+     * Gets the content offset at which reading of a segment stops.
+     *
+     * @param index The index of the segment.
+     * @return The end offset, Long.MAX_VALUE unless the group is ranged.
+     */
+    public long getSegmentEnd(int index) {
+        return segmentEnds == null ? Long.MAX_VALUE : segmentEnds[index];
+    }
+
+    /**
+     * Tells whether a file name is a live, rotated or compressed log file.
+     *
+     * @param fileName The file name.
+     * @return True if the name is recognized as a log segment.
+     */
+    public static boolean isLogSegment(String fileName) {
+        return SEGMENT_PATTERN.matcher(fileName).matches();
+    }
+
+    /**
+     * Tells whether a file is compressed.
+     *
+     * @param file The file.
+     * @return True for .gz and .zst files.
+     */
+    public static boolean isCompressed(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".gz") || name.endsWith(".zst");
+    }
+
+    /**
+     * Groups log segments by directory and logical file name.
+     * Within a group, numbered segments come first from the highest (oldest) number down,
+     * followed by an unnumbered compressed segment and finally the live file.
+     *
+     * @param files The log segments.
+     * @return The rotation groups, in order of first appearance.
+     */
+    public static List<RotatedLogGroup> groupFiles(List<File> files) {
+        Map<String, List<File>> segmentsByName = new LinkedHashMap<>();
+
+        for (File file : files) {
+            Matcher matcher = SEGMENT_PATTERN.matcher(file.getName());
+            if (!matcher.matches()) {
+                continue;
+            }
+
+            String key = new File(file.getParentFile(), matcher.group(1)).getPath();
+            segmentsByName.computeIfAbsent(key, k -> new ArrayList<>()).add(file);
+        }
+
+        List<RotatedLogGroup> groups = new ArrayList<>();
+        for (Map.Entry<String, List<File>> entry : segmentsByName.entrySet()) {
+            File logicalFile = new File(entry.getKey());
+            List<File> segments = entry.getValue();
+            Collections.sort(segments, Comparator.comparingInt(RotatedLogGroup::rotationAge).reversed());
+            groups.add(new RotatedLogGroup(logicalFile.getParentFile(), logicalFile.getName(), segments));
+        }
+
+        return groups;
+    }
+
+    /**
+     * Gets the age rank of a segment: its rotation number, 0 for an unnumbered compressed
+     * segment and -1 for the live file.
+     */
+    private static int rotationAge(File file) {
+        Matcher matcher = SEGMENT_PATTERN.matcher(file.getName());
+        if (!matcher.matches()) {
+            return -1;
+        }
+
+        if (matcher.group(2) != null) {
+            return Integer.parseInt(matcher.group(2));
+        }
+
+        return matcher.group(3) != null ? 0 : -1;
+    }
+
+    /**
+     * Tells whether the group is a single uncompressed file, which can be read (and chunked) directly.
+     *
+     * @return True if the group consists of only a plain file.
+     */
+    public boolean isSinglePlainFile() {
+        return segments.size() == 1 && !isCompressed(segments.get(0));
+    }
+
+    /**
+     * Gets the name of the live log file, used as the file name of all entries of the group.
+     *
+     * @return The logical file name.
+     */
+    public String getLogicalName() {
+        return logicalName;
+    }
+
+    /**
+     * Gets the live log file, which may not exist if only archives are present.
+     * Used to select the format of the group.
+     *
+     * @return The logical file.
+     */
+    public File getLogicalFile() {
+        return new File(directory, logicalName);
+    }
+
+    /**
+     * Gets the segments of the group.
+     *
+     * @return The segments, oldest first.
+     */
+    public List<File> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Gets the total size of the segments on disk.
+     *
+     * @return The size in bytes.
+     */
+    public long getTotalSize() {
+        long size = 0;
+        for (File segment : segments) {
+            size += segment.length();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return logicalName + " (" + segments.size() + " segments)";
+    }
+}
@@ -1,9 +1,12 @@
 package main;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Properties;
 
 import config.ConfigurationManager;
+import index.IndexQuery;
+import logprocessor.DistributedWorker;
 import logprocessor.LogProcessor;
 
 /**
@@ -15,7 +18,10 @@ public class Main {
     /**
      * Entry point of the application.
      * 
-     * @param args Command line arguments.
+     * @param args Command line arguments; --follow keeps following the log files,
+     *             --worker [port] [--local] runs a worker process for the distributed mode,
+     *             listening only on the loopback address with --local,
+     *             --query &lt;terms&gt; searches the index built by BUILD_INDEX.
      */
     public static void main(String[] args) {
         try {
@@ -23,14 +29,39 @@ public class Main {
             ConfigurationManager configManager = ConfigurationManager.getInstance();
             Properties config = configManager.loadConfig("properties.config");
             
+            // Serve tasks of a distributed coordinator instead of processing logs
+            int workerArg = Arrays.asList(args).indexOf("--worker");
+            if (workerArg >= 0) {
+                int port = workerArg + 1 < args.length && !args[workerArg + 1].startsWith("--")
+                           ? Integer.parseInt(args[workerArg + 1])
+                           : Integer.parseInt(config.getProperty("distributed.worker.port", "7070").trim());
+                new DistributedWorker(config, port, Arrays.asList(args).contains("--local")).serve();
+                return;
+            }
+            
+            // Search the index of an earlier run instead of processing logs
+            int queryArg = Arrays.asList(args).indexOf("--query");
+            if (queryArg >= 0) {
+                new IndexQuery(config).run(String.join(" ", Arrays.copyOfRange(args, queryArg + 1, args.length)));
+                return;
+            }
+            
             // Initialize the log processor with the loaded configuration
             LogProcessor processor = new LogProcessor(config);
             
-            // Start processing the logs
-            processor.processLogs();
+            // Follow the logs continuously, or process them once
+            boolean follow = Arrays.asList(args).contains("--follow")
+                             || Boolean.parseBoolean(config.getProperty("log.follow", "false").trim());
+            if (follow) {
+                processor.followLogs();
+            } else {
+                processor.processLogs();
+            }
             
         } catch (IOException e) {
             System.out.println("Error loading configuration: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid configuration: " + e.getMessage());
         } catch (Exception e) {
             System.out.println("Unexpected error: " + e.getMessage());
             e.printStackTrace();
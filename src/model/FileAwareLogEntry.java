@@ -8,6 +8,7 @@ import java.time.LocalDateTime;
  */
 public class FileAwareLogEntry extends LogEntry {
     private String fileName;
+    private long offset;
     
     /**
      * Constructor for creating a file-aware log entry.
@@ -22,6 +23,7 @@ public class FileAwareLogEntry extends LogEntry {
                           String message, String originalLine) {
         super(timestamp, level, source, message, originalLine);
         this.fileName = "";
+        this.offset = -1;
     }
     
     /**
@@ -41,4 +43,23 @@ public class FileAwareLogEntry extends LogEntry {
     public void setFileName(String fileName) {
         this.fileName = fileName;
     }
+    
+    /**
+     * Gets the byte offset in the file at which the record starts.
+     * 
+     * @return The offset, or -1 if it is unknown, e.g. for records of rotated or compressed
+     *         segments that were read as one stream.
+     */
+    public long getOffset() {
+        return offset;
+    }
+    
+    /**
+     * Sets the byte offset in the file at which the record starts.
+     * 
+     * @param offset The offset, or -1 if it is unknown.
+     */
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
 }
\ No newline at end of file
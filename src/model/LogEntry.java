@@ -22,7 +22,7 @@ public class LogEntry {
      * @param level Log level (INFO, ERROR, WARNING, etc.).
      * @param source Source of the log entry.
      * @param message The actual log message.
-     * @param originalLine The original line from the log file.
+     * @param originalLine The original line from the log file, or null if it is not kept.
      */
     public LogEntry(LocalDateTime timestamp, String level, String source, String message, String originalLine) {
         this.timestamp = timestamp;
@@ -77,13 +77,23 @@ public class LogEntry {
         return message;
     }
     
+    /**
+     * Appends continuation lines, such as the frames of a stack trace, to the message.
+     * 
+     * @param continuation The continuation lines, separated by line breaks.
+     */
+    public void appendToMessage(String continuation) {
+        this.message = getMessage() + "\n" + continuation;
+    }
+    
     /**
      * Gets the original log line.
+     * Parsers may choose not to keep the line to save memory; it is then rebuilt from the fields.
      * 
-     * @return The original log line.
+     * @return The original log line, or its reconstruction if it was not kept.
      */
     public String getOriginalLine() {
-        return originalLine;
+        return originalLine != null ? originalLine : toString();
     }
     
     /**
@@ -93,6 +103,6 @@ public class LogEntry {
      */
     @Override
     public String toString() {
-        return "[" + getFormattedTimestamp() + "] [" + level + "] [" + source + "] [" + message + "]";
+        return "[" + getFormattedTimestamp() + "] [" + getLevel() + "] [" + getSource() + "] [" + getMessage() + "]";
     }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.time.LocalDateTime;
+
+/**
+ * Log entry backed by a region of a memory-mapped log file.
+ * Only the field offsets are stored when the entry is created; the level, source,
+ * message and original line are decoded into Strings the first time they are requested.
+ */
+public class MappedLogEntry extends FileAwareLogEntry {
+    private final ByteBuffer buffer;
+    private final Charset charset;
+    private final int lineStart;
+    private final int lineEnd;
+    private final int levelStart;
+    private final int levelEnd;
+    private final int sourceStart;
+    private final int sourceEnd;
+    private final int messageStart;
+    private final int messageEnd;
+
+    private String level;
+    private String source;
+    private String message;
+
+    /**
+     * Constructor for creating a mapped log entry.
+     *
+     * @param timestamp Timestamp of the log entry.
+     * @param buffer The mapped region containing the line.
+     * @param charset The charset used to decode the fields.
+     * @param lineStart Offset of the first byte of the line.
+     * @param lineEnd Offset after the last byte of the line.
+     * @param fieldBounds Start and end offsets of the level, source and message fields (six values).
+     */
+    public MappedLogEntry(LocalDateTime timestamp, ByteBuffer buffer, Charset charset,
+                          int lineStart, int lineEnd, int[] fieldBounds) {
+        super(timestamp, null, null, null, null);
+        this.buffer = buffer;
+        this.charset = charset;
+        this.lineStart = lineStart;
+        this.lineEnd = lineEnd;
+        this.levelStart = fieldBounds[0];
+        this.levelEnd = fieldBounds[1];
+        this.sourceStart = fieldBounds[2];
+        this.sourceEnd = fieldBounds[3];
+        this.messageStart = fieldBounds[4];
+        this.messageEnd = fieldBounds[5];
+    }
+
+    @Override
+    public String getLevel() {
+        if (level == null) {
+            level = decode(levelStart, levelEnd);
+        }
+        return level;
+    }
+
+    @Override
+    public String getSource() {
+        if (source == null) {
+            source = decode(sourceStart, sourceEnd);
+        }
+        return source;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = decode(messageStart, messageEnd);
+        }
+        return message;
+    }
+
+    @Override
+    public void appendToMessage(String continuation) {
+        message = getMessage() + "\n" + continuation;
+    }
+
+    /**
+     * Decodes the original line from the mapped file. The result is not cached.
+     *
+     * @return The original log line.
+     */
+    @Override
+    public String getOriginalLine() {
+        return decode(lineStart, lineEnd);
+    }
+
+    /**
+     * Decodes a byte range of the mapped region.
+     *
+     * @param start Offset of the first byte.
+     * @param end Offset after the last byte.
+     * @return The decoded String.
+     */
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, charset);
+    }
+}
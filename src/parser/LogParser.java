@@ -11,6 +11,7 @@ import model.LogEntry;
 
 /**
  * Parser for log files that follows the format: [TIMESTAMP] [LEVEL] [SOURCE] [MESSAGE]
+ * The original line is not kept in the parsed entries, since it can be rebuilt from the fields.
  */
 public class LogParser {
     
@@ -21,11 +22,139 @@ public class LogParser {
     
     /**
      * Parses a log line and creates a LogEntry object.
+     * Lines in the standard format are handled by a single-pass scanner; anything the
+     * scanner cannot handle falls back to the regular expression.
      * 
      * @param line The log line to parse.
      * @return A LogEntry object if the parsing succeeds, null otherwise.
      */
     public static LogEntry parse(String line) {
+        LogEntry entry = parseFast(line);
+        
+        if (entry != null) {
+            return entry;
+        }
+        
+        return parseWithPattern(line);
+    }
+    
+    /**
+     * Scans a line of the form [TIMESTAMP] [LEVEL] [SOURCE] [MESSAGE] in a single pass,
+     * producing one substring per field and decoding the timestamp with digit arithmetic.
+     * 
+     * @param line The log line to parse.
+     * @return A LogEntry object, or null if the line needs the regular expression path.
+     */
+    private static LogEntry parseFast(String line) {
+        int length = line.length();
+        
+        if (length < 8 || line.charAt(0) != '[' || line.charAt(length - 1) != ']') {
+            return null;
+        }
+        
+        // Timestamp field
+        int timestampStart = 1;
+        int timestampEnd = line.indexOf(']', timestampStart);
+        if (timestampEnd < 0) {
+            return null;
+        }
+        
+        // Level field
+        int levelStart = openBracket(line, timestampEnd + 1);
+        if (levelStart < 0) {
+            return null;
+        }
+        int levelEnd = line.indexOf(']', levelStart);
+        if (levelEnd < 0) {
+            return null;
+        }
+        
+        // Source field
+        int sourceStart = openBracket(line, levelEnd + 1);
+        if (sourceStart < 0) {
+            return null;
+        }
+        int sourceEnd = line.indexOf(']', sourceStart);
+        if (sourceEnd < 0) {
+            return null;
+        }
+        
+        // Message field runs up to the closing bracket at the end of the line
+        int messageStart = openBracket(line, sourceEnd + 1);
+        if (messageStart < 0 || messageStart > length - 1) {
+            return null;
+        }
+        int messageEnd = length - 1;
+        
+        LocalDateTime timestamp = TimestampDecoder.decode(line, skipLeading(line, timestampStart, timestampEnd),
+                                                          skipTrailing(line, timestampStart, timestampEnd));
+        if (timestamp == null) {
+            return null;
+        }
+        
+        String level = trimmed(line, levelStart, levelEnd);
+        String source = trimmed(line, sourceStart, sourceEnd);
+        String message = trimmed(line, messageStart, messageEnd);
+        
+        return new FileAwareLogEntry(timestamp, level, source, message, null);
+    }
+    
+    /**
+     * Skips regex whitespace and expects an opening bracket.
+     * 
+     * @param line The log line.
+     * @param index The index to start from.
+     * @return The index after the opening bracket, or -1 if there is none.
+     */
+    private static int openBracket(String line, int index) {
+        int length = line.length();
+        
+        while (index < length && isPatternWhitespace(line.charAt(index))) {
+            index++;
+        }
+        
+        if (index >= length || line.charAt(index) != '[') {
+            return -1;
+        }
+        
+        return index + 1;
+    }
+    
+    /**
+     * Matches the characters of the regular expression class \s.
+     */
+    private static boolean isPatternWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+    
+    /**
+     * Returns the field between start and end with the same trimming as String.trim().
+     */
+    private static String trimmed(String line, int start, int end) {
+        return line.substring(skipLeading(line, start, end), skipTrailing(line, start, end));
+    }
+    
+    private static int skipLeading(String line, int start, int end) {
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+    
+    private static int skipTrailing(String line, int start, int end) {
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+    
+    /**
+     * Parses a log line using the regular expression and the DateTimeFormatter.
+     * 
+     * @param line The log line to parse.
+     * @return A LogEntry object if the parsing succeeds, null otherwise.
+     */
+    private static LogEntry parseWithPattern(String line) {
         System.out.println("Parsing line: " + line);
         Matcher matcher = pattern.matcher(line);
         
@@ -40,7 +169,7 @@ public class LogParser {
             try {
                 LocalDateTime timestamp = LocalDateTime.parse(timestampStr, formatter);
                 System.out.println("Successfully parsed timestamp: " + timestamp);
-                return new FileAwareLogEntry(timestamp, level, source, message, line);
+                return new FileAwareLogEntry(timestamp, level, source, message, null);
             } catch (DateTimeParseException e) {
                 System.out.println("Failed to parse timestamp: " + timestampStr + " - Error: " + e.getMessage());
                 System.out.println("unexpected input " + line);
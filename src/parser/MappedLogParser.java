@@ -0,0 +1,183 @@
+package parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.time.LocalDateTime;
+
+import model.LogEntry;
+import model.MappedLogEntry;
+
+/**
+ * Parser that locates the fields of a [TIMESTAMP] [LEVEL] [SOURCE] [MESSAGE] line directly
+ * in the bytes of a memory-mapped file.
+ *
+ * Only the timestamp is decoded up front; the other fields are recorded as offsets and
+ * decoded by {@link MappedLogEntry} when requested. Lines that cannot be scanned here are
+ * decoded into a String and handed to {@link LogParser}.
+ *
+ * Instances keep a small amount of scratch state and must not be shared between threads.
+ */
+public class MappedLogParser {
+
+    private final Charset charset;
+    private final ByteSequence timestampView;
+
+    /**
+     * Constructor for creating a parser for one reading thread.
+     *
+     * @param charset The charset of the log files.
+     */
+    public MappedLogParser(Charset charset) {
+        this.charset = charset;
+        this.timestampView = new ByteSequence();
+    }
+
+    /**
+     * Parses a line stored in a mapped buffer.
+     *
+     * @param buffer The mapped region.
+     * @param lineStart Offset of the first byte of the line.
+     * @param lineEnd Offset after the last byte of the line, excluding the line terminator.
+     * @param fileName The name of the file this log entry came from.
+     * @return A LogEntry object if the parsing succeeds, null otherwise.
+     */
+    public LogEntry parse(ByteBuffer buffer, int lineStart, int lineEnd, String fileName) {
+        LogEntry entry = scan(buffer, lineStart, lineEnd);
+
+        if (entry == null) {
+            byte[] bytes = new byte[lineEnd - lineStart];
+            buffer.get(lineStart, bytes);
+            return LogParser.parse(new String(bytes, charset), fileName);
+        }
+
+        ((MappedLogEntry) entry).setFileName(fileName);
+        return entry;
+    }
+
+    /**
+     * Scans the brackets of a line and decodes its timestamp.
+     *
+     * @return A MappedLogEntry, or null if the line needs the String-based parser.
+     */
+    private LogEntry scan(ByteBuffer buffer, int lineStart, int lineEnd) {
+        if (lineEnd - lineStart < 8 || buffer.get(lineStart) != '[' || buffer.get(lineEnd - 1) != ']') {
+            return null;
+        }
+
+        int timestampStart = lineStart + 1;
+        int timestampEnd = indexOf(buffer, ']', timestampStart, lineEnd);
+        if (timestampEnd < 0) {
+            return null;
+        }
+
+        int levelStart = openBracket(buffer, timestampEnd + 1, lineEnd);
+        int levelEnd = levelStart < 0 ? -1 : indexOf(buffer, ']', levelStart, lineEnd);
+        if (levelEnd < 0) {
+            return null;
+        }
+
+        int sourceStart = openBracket(buffer, levelEnd + 1, lineEnd);
+        int sourceEnd = sourceStart < 0 ? -1 : indexOf(buffer, ']', sourceStart, lineEnd);
+        if (sourceEnd < 0) {
+            return null;
+        }
+
+        int messageStart = openBracket(buffer, sourceEnd + 1, lineEnd);
+        if (messageStart < 0 || messageStart > lineEnd - 1) {
+            return null;
+        }
+        int messageEnd = lineEnd - 1;
+
+        timestampView.wrap(buffer);
+        LocalDateTime timestamp = TimestampDecoder.decode(timestampView,
+                                                          skipLeading(buffer, timestampStart, timestampEnd),
+                                                          skipTrailing(buffer, timestampStart, timestampEnd));
+        if (timestamp == null) {
+            return null;
+        }
+
+        int[] fieldBounds = {
+            skipLeading(buffer, levelStart, levelEnd), skipTrailing(buffer, levelStart, levelEnd),
+            skipLeading(buffer, sourceStart, sourceEnd), skipTrailing(buffer, sourceStart, sourceEnd),
+            skipLeading(buffer, messageStart, messageEnd), skipTrailing(buffer, messageStart, messageEnd)
+        };
+
+        return new MappedLogEntry(timestamp, buffer, charset, lineStart, lineEnd, fieldBounds);
+    }
+
+    private static int indexOf(ByteBuffer buffer, char c, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (buffer.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Skips regex whitespace and expects an opening bracket.
+     *
+     * @return The offset after the opening bracket, or -1 if there is none.
+     */
+    private static int openBracket(ByteBuffer buffer, int index, int end) {
+        while (index < end && isPatternWhitespace(buffer.get(index))) {
+            index++;
+        }
+
+        if (index >= end || buffer.get(index) != '[') {
+            return -1;
+        }
+
+        return index + 1;
+    }
+
+    private static boolean isPatternWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    // Bytes of multi-byte characters are negative, so only ASCII control characters and spaces are trimmed
+    private static int skipLeading(ByteBuffer buffer, int start, int end) {
+        while (start < end && buffer.get(start) >= 0 && buffer.get(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int skipTrailing(ByteBuffer buffer, int start, int end) {
+        while (end > start && buffer.get(end - 1) >= 0 && buffer.get(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Reusable ASCII view of a byte buffer, so the timestamp decoder can read mapped bytes
+     * without copying them into a String.
+     */
+    private static final class ByteSequence implements CharSequence {
+        private ByteBuffer buffer;
+
+        void wrap(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            StringBuilder builder = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                builder.append(charAt(i));
+            }
+            return builder.toString();
+        }
+    }
+}
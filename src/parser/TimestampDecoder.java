@@ -0,0 +1,131 @@
+package parser;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Decodes timestamps in the fixed format "yyyy-MM-dd HH:mm:ss" using digit arithmetic
+ * instead of a DateTimeFormatter.
+ *
+ * The date part of the last decoded timestamp is cached, since consecutive log lines
+ * almost always share the same day. The cache holder is immutable, so it can be shared
+ * safely between worker threads.
+ */
+public final class TimestampDecoder {
+
+    /** Length of a "yyyy-MM-dd HH:mm:ss" timestamp. */
+    public static final int TIMESTAMP_LENGTH = 19;
+
+    /** Length of the "yyyy-MM-dd" date prefix. */
+    private static final int DATE_LENGTH = 10;
+
+    private static volatile CachedDate lastDate;
+
+    private TimestampDecoder() {
+    }
+
+    /**
+     * Decodes a timestamp from a region of a character sequence.
+     *
+     * @param text The text containing the timestamp.
+     * @param start The index of the first character of the timestamp.
+     * @param end The index after the last character of the timestamp.
+     * @return The decoded timestamp, or null if the region is not a valid fixed-format timestamp.
+     */
+    public static LocalDateTime decode(CharSequence text, int start, int end) {
+        if (end - start != TIMESTAMP_LENGTH
+                || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-'
+                || text.charAt(start + 10) != ' '
+                || text.charAt(start + 13) != ':' || text.charAt(start + 16) != ':') {
+            return null;
+        }
+
+        LocalDate date = decodeDate(text, start);
+        if (date == null) {
+            return null;
+        }
+
+        int hour = twoDigits(text, start + 11);
+        int minute = twoDigits(text, start + 14);
+        int second = twoDigits(text, start + 17);
+
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+
+        return LocalDateTime.of(date, LocalTime.of(hour, minute, second));
+    }
+
+    /**
+     * Decodes the "yyyy-MM-dd" prefix, reusing the cached date when the prefix is unchanged.
+     *
+     * @param text The text containing the date.
+     * @param start The index of the first character of the date.
+     * @return The decoded date, or null if it is not a strictly valid date.
+     */
+    private static LocalDate decodeDate(CharSequence text, int start) {
+        CachedDate cached = lastDate;
+        if (cached != null && cached.matches(text, start)) {
+            return cached.date;
+        }
+
+        int year = twoDigits(text, start) * 100 + twoDigits(text, start + 2);
+        int month = twoDigits(text, start + 5);
+        int day = twoDigits(text, start + 8);
+
+        if (year < 0 || month < 0 || day < 0) {
+            return null;
+        }
+
+        try {
+            LocalDate date = LocalDate.of(year, month, day);
+            lastDate = new CachedDate(text.subSequence(start, start + DATE_LENGTH).toString(), date);
+            return date;
+        } catch (DateTimeException e) {
+            // Out of range values (e.g. day 31 in April) are left to the formatter-based path
+            return null;
+        }
+    }
+
+    /**
+     * Reads two decimal digits.
+     *
+     * @param text The text to read from.
+     * @param index The index of the first digit.
+     * @return The value of the two digits, or a negative number if either character is not a digit.
+     */
+    private static int twoDigits(CharSequence text, int index) {
+        int high = text.charAt(index) - '0';
+        int low = text.charAt(index + 1) - '0';
+
+        if (high < 0 || high > 9 || low < 0 || low > 9) {
+            return -1000;
+        }
+
+        return high * 10 + low;
+    }
+
+    /**
+     * Immutable pair of a date prefix and its decoded value.
+     */
+    private static final class CachedDate {
+        private final String prefix;
+        private final LocalDate date;
+
+        CachedDate(String prefix, LocalDate date) {
+            this.prefix = prefix;
+            this.date = date;
+        }
+
+        boolean matches(CharSequence text, int start) {
+            for (int i = 0; i < DATE_LENGTH; i++) {
+                if (prefix.charAt(i) != text.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package parser.format;
+
+import model.LogEntry;
+import parser.LogParser;
+
+/**
+ * The original format: [yyyy-MM-dd HH:mm:ss] [LEVEL] [SOURCE] [MESSAGE].
+ */
+public class BracketLogFormat implements LogFormat {
+    
+    public static final String NAME = "bracket";
+    
+    @Override
+    public String getName() {
+        return NAME;
+    }
+    
+    @Override
+    public LogEntry parse(String line, String fileName) {
+        return LogParser.parse(line, fileName);
+    }
+    
+    @Override
+    public boolean isRecordStart(String line) {
+        return line.charAt(0) == '[';
+    }
+}
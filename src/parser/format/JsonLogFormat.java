@@ -0,0 +1,79 @@
+package parser.format;
+
+import java.time.LocalDateTime;
+import java.util.Properties;
+
+import model.FileAwareLogEntry;
+import model.LogEntry;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * JSON lines, one object per line.
+ * The field names default to timestamp, level, source and message and can be changed with
+ * log.format.json.field.NAME. Timestamps are parsed with log.format.json.timestamp
+ * (default: iso); numeric timestamps are read as epoch milliseconds.
+ */
+public class JsonLogFormat implements LogFormat {
+    
+    public static final String NAME = "json";
+    
+    private final String timestampField;
+    private final String levelField;
+    private final String sourceField;
+    private final String messageField;
+    private final TimestampFormat timestampFormat;
+    private final TimestampFormat epochFormat;
+    
+    /**
+     * Constructor for creating the JSON format from configuration.
+     * 
+     * @param config Configuration properties.
+     */
+    public JsonLogFormat(Properties config) {
+        this.timestampField = config.getProperty("log.format.json.field.timestamp", "timestamp");
+        this.levelField = config.getProperty("log.format.json.field.level", "level");
+        this.sourceField = config.getProperty("log.format.json.field.source", "source");
+        this.messageField = config.getProperty("log.format.json.field.message", "message");
+        this.timestampFormat = new TimestampFormat(config.getProperty("log.format.json.timestamp", "iso"));
+        this.epochFormat = new TimestampFormat("epoch_millis");
+    }
+    
+    @Override
+    public String getName() {
+        return NAME;
+    }
+    
+    @Override
+    public boolean isRecordStart(String line) {
+        return line.charAt(0) == '{';
+    }
+    
+    @Override
+    public LogEntry parse(String line, String fileName) {
+        try {
+            JSONObject json = new JSONObject(line);
+            Object rawTimestamp = json.get(timestampField);
+            
+            LocalDateTime timestamp = rawTimestamp instanceof Number
+                    ? epochFormat.parse(rawTimestamp.toString())
+                    : timestampFormat.parse(rawTimestamp.toString());
+            
+            if (timestamp == null) {
+                System.out.println("unexpected input " + line);
+                return null;
+            }
+            
+            FileAwareLogEntry entry = new FileAwareLogEntry(timestamp,
+                                                            LogFormat.normalizeLevel(json.optString(levelField, "INFO")),
+                                                            json.optString(sourceField, "").trim(),
+                                                            json.optString(messageField, "").trim(),
+                                                            line);
+            entry.setFileName(fileName);
+            return entry;
+        } catch (JSONException e) {
+            System.out.println("unexpected input " + line);
+            return null;
+        }
+    }
+}
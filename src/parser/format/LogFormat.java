@@ -0,0 +1,58 @@
+package parser.format;
+
+import model.LogEntry;
+
+/**
+ * A log line format that can be turned into LogEntry objects.
+ * Each format is compiled once from configuration and then shared by all workers reading
+ * files of that format, so implementations must be thread-safe.
+ */
+public interface LogFormat {
+    
+    /**
+     * Gets the name of the format, as used in the configuration.
+     * 
+     * @return The name of the format.
+     */
+    String getName();
+    
+    /**
+     * Parses a log line.
+     * 
+     * @param line The log line to parse.
+     * @param fileName The name of the file this log entry came from.
+     * @return A LogEntry object if the parsing succeeds, null otherwise.
+     */
+    LogEntry parse(String line, String fileName);
+    
+    /**
+     * Cheap check whether a line starts a new record. Lines that do not are treated as
+     * continuation lines of the previous record (e.g. stack trace frames) and are not parsed.
+     * 
+     * @param line A non-empty log line.
+     * @return True if the line starts a new record.
+     */
+    default boolean isRecordStart(String line) {
+        return true;
+    }
+    
+    /**
+     * Maps common level spellings of other formats onto the level names of the bracket format,
+     * so that level-based configuration such as log.analysis.anomalies.levels applies to all formats.
+     * 
+     * @param level The level as written in the log.
+     * @return The upper-case level, with WARN mapped to WARNING and ERR to ERROR.
+     */
+    static String normalizeLevel(String level) {
+        String upper = level.trim().toUpperCase();
+        
+        switch (upper) {
+            case "WARN":
+                return "WARNING";
+            case "ERR":
+                return "ERROR";
+            default:
+                return upper;
+        }
+    }
+}
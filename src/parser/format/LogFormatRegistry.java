@@ -0,0 +1,175 @@
+package parser.format;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Registry of log formats and of the rules that select a format for each file.
+ * 
+ * Formats are compiled once when the registry is created and shared by all workers.
+ * Built-in formats are bracket, iso8601, syslog and json; further regex formats are
+ * defined with log.format.NAME.pattern (see {@link PatternLogFormat}).
+ * 
+ * Selection is configured with log.format.select, a comma-separated list of GLOB=FORMAT
+ * rules checked in order. Globs containing '/' are matched against the path relative to
+ * log.directory (e.g. "app/**=iso8601"), other globs against the file name
+ * (e.g. "*.json.log=json"). Files matching no rule use log.format.default.
+ */
+public class LogFormatRegistry {
+    
+    // ISO-8601 timestamp with optional fraction and offset, then LEVEL [SOURCE] MESSAGE or LEVEL SOURCE: MESSAGE
+    private static final String ISO8601_PATTERN =
+        "(?<timestamp>\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}(?:\\.\\d{1,9})?(?:Z|[+-]\\d{2}:\\d{2})?)\\s+"
+        + "\\[?(?<level>[A-Za-z]+)\\]?\\s+\\[?(?<source>[^\\]\\s:]+)\\]?:?\\s*(?<message>.*)";
+    
+    private static final Map<String, Function<Properties, LogFormat>> FORMAT_TYPES = new HashMap<>();
+    
+    static {
+        // Register built-in formats
+        registerFormat(BracketLogFormat.NAME, config -> new BracketLogFormat());
+        registerFormat("iso8601", config -> new PatternLogFormat("iso8601", ISO8601_PATTERN, "iso", "\\d{4}-\\d{2}-\\d{2}T"));
+        registerFormat(SyslogLogFormat.NAME, SyslogLogFormat::new);
+        registerFormat(JsonLogFormat.NAME, JsonLogFormat::new);
+    }
+    
+    private final Properties config;
+    private final Path baseDirectory;
+    private final Map<String, LogFormat> formats;
+    private final List<FormatRule> rules;
+    private final LogFormat defaultFormat;
+    
+    /**
+     * Registers a new format type.
+     * 
+     * @param name The name of the format.
+     * @param factory A function that compiles the format from the configuration.
+     */
+    public static synchronized void registerFormat(String name, Function<Properties, LogFormat> factory) {
+        FORMAT_TYPES.put(name, factory);
+    }
+    
+    /**
+     * Constructor for creating a registry from configuration.
+     * All formats referenced by the configuration are compiled here.
+     * 
+     * @param config Configuration properties.
+     * @throws IllegalArgumentException If a referenced format is unknown or a selection rule is malformed.
+     */
+    public LogFormatRegistry(Properties config) {
+        this.config = config;
+        this.baseDirectory = Paths.get(config.getProperty("log.directory", "logs")).toAbsolutePath().normalize();
+        this.formats = new HashMap<>();
+        this.rules = new ArrayList<>();
+        this.defaultFormat = getFormat(config.getProperty("log.format.default", BracketLogFormat.NAME).trim());
+        
+        String selection = config.getProperty("log.format.select", "").trim();
+        if (!selection.isEmpty()) {
+            for (String rule : selection.split(",")) {
+                int separator = rule.lastIndexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Invalid log.format.select rule: " + rule.trim());
+                }
+                
+                String glob = rule.substring(0, separator).trim();
+                LogFormat format = getFormat(rule.substring(separator + 1).trim());
+                rules.add(new FormatRule(glob, format));
+            }
+        }
+    }
+    
+    /**
+     * Gets the compiled format with the given name, compiling it on first use.
+     * 
+     * @param name The name of the format.
+     * @return The compiled format.
+     * @throws IllegalArgumentException If the format is unknown.
+     */
+    public synchronized LogFormat getFormat(String name) {
+        LogFormat format = formats.get(name);
+        
+        if (format == null) {
+            format = compile(name);
+            formats.put(name, format);
+        }
+        
+        return format;
+    }
+    
+    /**
+     * Selects the format for a log file.
+     * 
+     * @param file The log file.
+     * @return The format of the first matching rule, or the default format.
+     */
+    public LogFormat formatFor(File file) {
+        if (rules.isEmpty()) {
+            return defaultFormat;
+        }
+        
+        Path absolute = file.toPath().toAbsolutePath().normalize();
+        Path relative = absolute.startsWith(baseDirectory) ? baseDirectory.relativize(absolute) : absolute.getFileName();
+        Path name = absolute.getFileName();
+        
+        for (FormatRule rule : rules) {
+            if (rule.matches(relative, name)) {
+                return rule.format;
+            }
+        }
+        
+        return defaultFormat;
+    }
+    
+    /**
+     * Gets the default format.
+     * 
+     * @return The format used for files matching no selection rule.
+     */
+    public LogFormat getDefaultFormat() {
+        return defaultFormat;
+    }
+    
+    private LogFormat compile(String name) {
+        if (config.getProperty("log.format." + name + ".pattern") != null) {
+            return new PatternLogFormat(name, config);
+        }
+        
+        Function<Properties, LogFormat> factory;
+        synchronized (LogFormatRegistry.class) {
+            factory = FORMAT_TYPES.get(name);
+        }
+        
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown log format: " + name);
+        }
+        
+        return factory.apply(config);
+    }
+    
+    /**
+     * A glob selection rule.
+     */
+    private static class FormatRule {
+        private final PathMatcher matcher;
+        private final boolean matchPath;
+        private final LogFormat format;
+        
+        FormatRule(String glob, LogFormat format) {
+            this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            this.matchPath = glob.contains("/");
+            this.format = format;
+        }
+        
+        boolean matches(Path relative, Path name) {
+            return matcher.matches(matchPath ? relative : name);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package parser.format;
+
+import java.time.LocalDateTime;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import model.FileAwareLogEntry;
+import model.LogEntry;
+
+/**
+ * Format defined by a regular expression with the named groups timestamp, level, source and message.
+ * The source group is optional; when it is missing the source defaults to the format name.
+ * 
+ * Configured with:
+ *   log.format.NAME.pattern=REGEX
+ *   log.format.NAME.timestamp=iso | epoch_millis | DateTimeFormatter pattern
+ *   log.format.NAME.record.start=REGEX (optional, matched at the start of a line; lines that
+ *                                 do not match are continuation lines of the previous record)
+ */
+public class PatternLogFormat implements LogFormat {
+    
+    private static final String[] REQUIRED_GROUPS = {"timestamp", "level", "message"};
+    
+    private final String name;
+    private final Pattern pattern;
+    private final TimestampFormat timestampFormat;
+    private final boolean hasSource;
+    private final Pattern recordStart;
+    
+    /**
+     * Constructor for creating a pattern format from explicit values.
+     * 
+     * @param name The name of the format.
+     * @param regex The regular expression with named groups.
+     * @param timestampPattern The timestamp format option.
+     */
+    public PatternLogFormat(String name, String regex, String timestampPattern) {
+        this(name, regex, timestampPattern, null);
+    }
+    
+    /**
+     * Constructor for creating a pattern format with a record start pattern.
+     * 
+     * @param name The name of the format.
+     * @param regex The regular expression with named groups.
+     * @param timestampPattern The timestamp format option.
+     * @param recordStartRegex Regular expression matched at the start of record lines, or null if every line is a record.
+     * @throws IllegalArgumentException If the regular expression is invalid or lacks a required group.
+     */
+    public PatternLogFormat(String name, String regex, String timestampPattern, String recordStartRegex) {
+        // Fail when the configuration is loaded rather than on every line
+        for (String group : REQUIRED_GROUPS) {
+            if (!regex.contains("(?<" + group + ">")) {
+                throw new IllegalArgumentException("Pattern of log format " + name + " has no (?<" + group + ">...) group");
+            }
+        }
+        
+        this.name = name;
+        this.pattern = Pattern.compile(regex);
+        this.timestampFormat = new TimestampFormat(timestampPattern);
+        this.hasSource = regex.contains("(?<source>");
+        this.recordStart = recordStartRegex == null ? null : Pattern.compile(recordStartRegex);
+    }
+    
+    /**
+     * Constructor for creating a pattern format from configuration.
+     * 
+     * @param name The name of the format.
+     * @param config Configuration properties.
+     */
+    public PatternLogFormat(String name, Properties config) {
+        this(name,
+             config.getProperty("log.format." + name + ".pattern"),
+             config.getProperty("log.format." + name + ".timestamp", "iso"),
+             config.getProperty("log.format." + name + ".record.start"));
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public boolean isRecordStart(String line) {
+        return recordStart == null || recordStart.matcher(line).lookingAt();
+    }
+    
+    @Override
+    public LogEntry parse(String line, String fileName) {
+        Matcher matcher = pattern.matcher(line);
+        
+        if (!matcher.matches()) {
+            System.out.println("unexpected input " + line);
+            return null;
+        }
+        
+        LocalDateTime timestamp = timestampFormat.parse(matcher.group("timestamp"));
+        if (timestamp == null) {
+            System.out.println("unexpected input " + line);
+            return null;
+        }
+        
+        String source = hasSource && matcher.group("source") != null ? matcher.group("source").trim() : name;
+        FileAwareLogEntry entry = new FileAwareLogEntry(timestamp, LogFormat.normalizeLevel(matcher.group("level")), source,
+                                                        matcher.group("message").trim(), line);
+        entry.setFileName(fileName);
+        return entry;
+    }
+}
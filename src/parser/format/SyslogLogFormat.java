@@ -0,0 +1,87 @@
+package parser.format;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import model.FileAwareLogEntry;
+import model.LogEntry;
+
+/**
+ * BSD syslog (RFC 3164) lines: [&lt;PRI&gt;]MMM d HH:mm:ss HOST TAG[PID]: MESSAGE.
+ * The level is derived from the severity in PRI (INFO when absent) and the source is the tag.
+ * Syslog timestamps carry no year, so log.format.syslog.year is used (default: current year).
+ */
+public class SyslogLogFormat implements LogFormat {
+    
+    public static final String NAME = "syslog";
+    
+    private static final Pattern SYSLOG_PATTERN = Pattern.compile(
+        "(?:<(\\d{1,3})>)?([A-Z][a-z]{2})\\s+(\\d{1,2}) (\\d{2}:\\d{2}:\\d{2}) (\\S+) ([^:\\[\\s]+)(?:\\[\\d+\\])?:\\s?(.*)");
+    
+    private static final String[] SEVERITY_LEVELS = {
+        "ERROR", "ERROR", "ERROR", "ERROR", "WARNING", "INFO", "INFO", "DEBUG"
+    };
+    
+    private final DateTimeFormatter formatter;
+    
+    /**
+     * Constructor for creating the syslog format from configuration.
+     * 
+     * @param config Configuration properties.
+     */
+    public SyslogLogFormat(Properties config) {
+        int year = Integer.parseInt(config.getProperty("log.format.syslog.year",
+                                                       String.valueOf(Year.now().getValue())).trim());
+        this.formatter = new DateTimeFormatterBuilder()
+                .appendPattern("MMM d HH:mm:ss")
+                .parseDefaulting(ChronoField.YEAR, year)
+                .toFormatter(Locale.ENGLISH);
+    }
+    
+    @Override
+    public String getName() {
+        return NAME;
+    }
+    
+    @Override
+    public boolean isRecordStart(String line) {
+        char first = line.charAt(0);
+        return first == '<' || (first >= 'A' && first <= 'Z');
+    }
+    
+    @Override
+    public LogEntry parse(String line, String fileName) {
+        Matcher matcher = SYSLOG_PATTERN.matcher(line);
+        
+        if (!matcher.matches()) {
+            System.out.println("unexpected input " + line);
+            return null;
+        }
+        
+        LocalDateTime timestamp;
+        try {
+            timestamp = LocalDateTime.parse(matcher.group(2) + " " + matcher.group(3) + " " + matcher.group(4), formatter);
+        } catch (DateTimeException e) {
+            System.out.println("unexpected input " + line);
+            return null;
+        }
+        
+        String level = "INFO";
+        if (matcher.group(1) != null) {
+            level = SEVERITY_LEVELS[Integer.parseInt(matcher.group(1)) % 8];
+        }
+        
+        FileAwareLogEntry entry = new FileAwareLogEntry(timestamp, level, matcher.group(6),
+                                                        matcher.group(7).trim(), line);
+        entry.setFileName(fileName);
+        return entry;
+    }
+}
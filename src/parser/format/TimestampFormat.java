@@ -0,0 +1,53 @@
+package parser.format;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Timestamp parser compiled once from a format option.
+ * Supports "iso" (ISO-8601 with optional fraction and offset), "epoch_millis", and any
+ * DateTimeFormatter pattern. Offsets are dropped, keeping the local date-time as written.
+ */
+public class TimestampFormat {
+    
+    private final DateTimeFormatter formatter;
+    private final boolean epochMillis;
+    
+    /**
+     * Constructor for creating a timestamp format.
+     * 
+     * @param pattern "iso", "epoch_millis", or a DateTimeFormatter pattern.
+     * @throws IllegalArgumentException If the pattern is invalid.
+     */
+    public TimestampFormat(String pattern) {
+        this.epochMillis = pattern.equalsIgnoreCase("epoch_millis");
+        
+        if (epochMillis) {
+            this.formatter = null;
+        } else if (pattern.equalsIgnoreCase("iso")) {
+            this.formatter = DateTimeFormatter.ISO_DATE_TIME;
+        } else {
+            this.formatter = DateTimeFormatter.ofPattern(pattern);
+        }
+    }
+    
+    /**
+     * Parses a timestamp.
+     * 
+     * @param text The timestamp text.
+     * @return The parsed timestamp, or null if the text does not match the format.
+     */
+    public LocalDateTime parse(String text) {
+        try {
+            if (epochMillis) {
+                return LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(text.trim())), ZoneOffset.UTC);
+            }
+            return LocalDateTime.from(formatter.parse(text.trim()));
+        } catch (DateTimeException | NumberFormatException e) {
+            return null;
+        }
+    }
+}